@@ -88,3 +88,15 @@ project(":server") {
 
     jarConfig("$mainPackage.server.Application")
 }
+
+project(":loadgen") {
+    apply(plugin = "application")
+
+    dependencies {
+        implementation(project(":core"))
+        // bundled so that the fusion harness can start servers from its own jar
+        implementation(project(":server"))
+    }
+
+    jarConfig("$mainPackage.loadgen.Application")
+}
@@ -3,6 +3,10 @@ package fr.uge.chatfusion.client;
 import fr.uge.chatfusion.core.base.Sizes;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 
 
@@ -13,6 +17,18 @@ public final class Application {
 
     private static void usage() {
         System.out.println("Usage : ChatFusionClient <host> <port> <filePath> <username>");
+        System.out.println("        ChatFusionClient --unix <socketPath> <filePath> <username>");
+    }
+
+    private static SocketAddress serverAddress(String first, String second) {
+        if (first.equals("--unix")) {
+            return UnixDomainSocketAddress.of(second);
+        }
+        var port = Integer.parseInt(second);
+        if (port < 0 || port > 65535) {
+            throw new NumberFormatException();
+        }
+        return new InetSocketAddress(first, port);
     }
 
     public static void main(String[] args) throws NumberFormatException, IOException {
@@ -22,8 +38,7 @@ public final class Application {
         }
 
         try {
-            var host = args[0];
-            var port = Integer.parseInt(args[1]);
+            var serverAddress = serverAddress(args[0], args[1]);
             var filePath = Path.of(args[2]);
             if (!filePath.toFile().isDirectory()) {
                 System.out.println("File path must be a directory.");
@@ -34,10 +49,12 @@ public final class Application {
                 System.out.println("Username to long (max=" + Sizes.MAX_USERNAME_SIZE + ").");
                 return;
             }
-            var client = new Client(host, port, filePath, login);
+            var client = new Client(serverAddress, filePath, login);
             client.launch();
         } catch (NumberFormatException e) {
             System.err.println("Invalid port number" + args[1]);
+        } catch (InvalidPathException e) {
+            System.err.println("Invalid socket path " + args[1]);
         }
     }
 }
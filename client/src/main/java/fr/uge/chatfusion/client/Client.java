@@ -1,32 +1,33 @@
 package fr.uge.chatfusion.client;
 
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.base.Sizes;
 import fr.uge.chatfusion.core.frame.Frame;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.file.Path;
 import java.util.Objects;
 
 final class Client {
     private final String login;
+    private final EncodedString encodedLogin;
     private final SocketChannelController controller;
-    private final InetSocketAddress serverAddress;
+    private final SocketAddress serverAddress;
     private final FileReceivingController fileReceivingController;
     private ClientKeyController context;
     private String serverName;
+    private EncodedString encodedServerName;
 
-    public Client(String host, int port, Path filePath, String login) throws IOException {
-        Objects.requireNonNull(host);
-        if (port < 0 || port > 65535) {
-            throw new IllegalArgumentException("Invalid port: " + port);
-        }
+    public Client(SocketAddress serverAddress, Path filePath, String login) throws IOException {
+        Objects.requireNonNull(serverAddress);
         Objects.requireNonNull(login);
         Objects.requireNonNull(filePath);
-        this.serverAddress = new InetSocketAddress(host, port);
+        this.serverAddress = serverAddress;
         this.controller = new SocketChannelController(serverAddress, this::shutdown);
         this.fileReceivingController = new FileReceivingController(filePath);
         this.login = login;
+        this.encodedLogin = EncodedString.of(login);
     }
 
     public void launch() throws IOException {
@@ -37,7 +38,7 @@ final class Client {
             System.out.println("An error occurred...");
             shutdown();
         });
-        var data = Frame.AnonymousLogin.buffer(login);
+        var data = Frame.AnonymousLogin.buffer(encodedLogin);
         context.queueData(data);
         key.attach(context);
         controller.launch();
@@ -82,6 +83,7 @@ final class Client {
                 + " You can now start chatting."
         );
         this.serverName = serverName;
+        this.encodedServerName = EncodedString.of(serverName);
         var console = new Thread(new ClientConsole(this), "Client console");
         console.setDaemon(true);
         console.start();
@@ -92,7 +94,7 @@ final class Client {
         if (!checkMessageSize(input)) {
             return;
         }
-        var data = Frame.PublicMessage.buffer(serverName, login, input);
+        var data = Frame.PublicMessage.buffer(encodedServerName, encodedLogin, input);
         controller.addCommand(() -> context.queueData(data));
     }
 
@@ -107,16 +109,26 @@ final class Client {
         if (!checkMessageSize(message)) {
             return;
         }
-        var data = Frame.DirectMessage.buffer(serverName, login, dstSrv, dstUser, message);
+        var data = Frame.DirectMessage.buffer(encodedServerName, encodedLogin, dstSrv, dstUser, message);
         controller.addCommand(() -> context.queueData(data));
     }
 
-    public void receiveFileBlock(Frame.FileSending fileSending) {
-        Objects.requireNonNull(fileSending);
+    public void receiveFileOpen(Frame.FileOpen fileOpen) {
+        Objects.requireNonNull(fileOpen);
         try {
-            fileReceivingController.receiveFileBlock(fileSending);
+            fileReceivingController.receiveFileOpen(fileOpen);
         } catch (IOException e) {
-            fileReceivingController.stopReceiving(fileSending);
+            fileReceivingController.stopReceiving(fileOpen.fileId());
+            System.out.println("Error while receiving file");
+        }
+    }
+
+    public void receiveFileBlock(Frame.FileBlock fileBlock) {
+        Objects.requireNonNull(fileBlock);
+        try {
+            fileReceivingController.receiveFileBlock(fileBlock);
+        } catch (IOException e) {
+            fileReceivingController.stopReceiving(fileBlock.fileId());
             System.out.println("Error while receiving file");
         }
     }
@@ -133,6 +145,19 @@ final class Client {
         System.out.println(message);
     }
 
+    public void receiveUnknownRecipient(Frame.UnknownRecipient unknownRecipient) {
+        Objects.requireNonNull(unknownRecipient);
+        var recipient = unknownRecipient.recipientUsername() + "@" + unknownRecipient.destinationServer();
+        System.out.println(DateTimeUtils.printWithDateTime(recipient + " is not logged in, nothing was delivered."));
+        context.cancelFiles(unknownRecipient.destinationServer(), unknownRecipient.recipientUsername());
+    }
+
+    public void receiveFileRefused(Frame.FileRefused fileRefused) {
+        Objects.requireNonNull(fileRefused);
+        System.out.println(DateTimeUtils.printWithDateTime("The server refused to open a file transfer."));
+        context.cancelFile(fileRefused.fileId());
+    }
+
     public void sendFile(String dstSrv, String dstUser, Path filePath) {
         Objects.requireNonNull(dstSrv);
         Objects.requireNonNull(dstUser);
@@ -145,6 +170,6 @@ final class Client {
             System.out.println("You can't send a file to yourself !");
             return;
         }
-        controller.addCommand(() -> context.queueFile(serverName, login, dstSrv, dstUser, filePath));
+        controller.addCommand(() -> context.queueFile(encodedServerName, encodedLogin, dstSrv, dstUser, filePath));
     }
 }
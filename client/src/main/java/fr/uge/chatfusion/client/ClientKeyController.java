@@ -1,11 +1,12 @@
 package fr.uge.chatfusion.client;
 
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.frame.FrameVisitor;
 import fr.uge.chatfusion.core.selection.SelectionKeyController;
 import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.file.Path;
@@ -17,7 +18,7 @@ final class ClientKeyController implements SelectionKeyController {
     private final FileSendingController fileSendingController = new FileSendingController();
     private final SelectionKeyControllerImpl inner;
 
-    public ClientKeyController(SelectionKey key, InetSocketAddress remoteAddress) {
+    public ClientKeyController(SelectionKey key, SocketAddress remoteAddress) {
         inner = new SelectionKeyControllerImpl(key, remoteAddress, false, false, true);
         inner.setOnSendingAllData(this::processOut);
     }
@@ -55,11 +56,11 @@ final class ClientKeyController implements SelectionKeyController {
     }
 
     @Override
-    public InetSocketAddress remoteAddress() {
+    public SocketAddress remoteAddress() {
         return inner.remoteAddress();
     }
 
-    public void queueFile(String originSrv, String sender, String dstSrv, String dstUser, Path filePath) {
+    public void queueFile(EncodedString originSrv, EncodedString sender, String dstSrv, String dstUser, Path filePath) {
         Objects.requireNonNull(originSrv);
         Objects.requireNonNull(sender);
         Objects.requireNonNull(dstSrv);
@@ -69,6 +70,18 @@ final class ClientKeyController implements SelectionKeyController {
         processOut();
     }
 
+    public void cancelFiles(String dstSrv, String dstUser) {
+        Objects.requireNonNull(dstSrv);
+        Objects.requireNonNull(dstUser);
+        fileSendingController.cancel(dstSrv, dstUser);
+        processOut();
+    }
+
+    public void cancelFile(long fileId) {
+        fileSendingController.cancel(fileId);
+        processOut();
+    }
+
     public void setVisitor(FrameVisitor visitor) {
         inner.setVisitor(visitor);
     }
@@ -34,36 +34,38 @@ final class FileReceivingController {
         System.out.println(message);
     }
 
-    public void receiveFileBlock(Frame.FileSending fileSending) throws IOException {
-        Objects.requireNonNull(fileSending);
-        var data = files.compute(
-            fileSending.fileId(),
-            (__, old) -> {
-                if (old != null) {
-                    if (!old.originalName().equals(fileSending.fileName())) {
-                        throw new IllegalStateException("Cannot receive two different files with the same id");
-                    }
-                    return old;
-                }
-                return createFileData(fileSending);
-            }
-        );
+    public void receiveFileOpen(Frame.FileOpen fileOpen) throws IOException {
+        Objects.requireNonNull(fileOpen);
+        if (files.containsKey(fileOpen.fileId())) {
+            System.out.println("Cannot receive two different files with the same id");
+            return;
+        }
+        var data = createFileData(fileOpen);
         if (data == null) {
             System.out.println("Error while receiving file");
             return;
         }
-        data.receiveBlock(fileSending);
+        files.put(fileOpen.fileId(), data);
+    }
+
+    public void receiveFileBlock(Frame.FileBlock fileBlock) throws IOException {
+        Objects.requireNonNull(fileBlock);
+        var data = files.get(fileBlock.fileId());
+        if (data == null) {
+            return;
+        }
+        data.receiveBlock(fileBlock);
 
         if (data.isComplete()) {
-            files.remove(fileSending.fileId());
-            createFinalFile(data);
+            files.remove(fileBlock.fileId());
             data.close();
+            createFinalFile(data);
         }
     }
 
-    private FileData createFileData(Frame.FileSending fileSending) {
-        printInformation("Start receiving file \"" + fileSending.fileName() + "\" ...");
-        var fileName = fileSending.fileName();
+    private FileData createFileData(Frame.FileOpen fileOpen) {
+        printInformation("Start receiving file \"" + fileOpen.fileName() + "\" ...");
+        var fileName = fileOpen.fileName();
         var file = Path.of(filePath.toString(), fileName + ".part");
         var index = 1;
         while (file.toFile().exists()) { // add an index in case of name collision
@@ -71,7 +73,7 @@ final class FileReceivingController {
             index++;
         }
         try {
-            return new FileData(fileName, file, fileSending.blockCount());
+            return new FileData(fileName, file, fileOpen.blockCount());
         } catch (IOException e) {
             return null;
         }
@@ -91,10 +93,10 @@ final class FileReceivingController {
         Files.move(file, finalFile);
     }
 
-    public void stopReceiving(Frame.FileSending fileSending) {
-        Objects.requireNonNull(fileSending);
-        var data = files.remove(fileSending.fileId());
+    public void stopReceiving(long fileId) {
+        var data = files.remove(fileId);
         if (data != null && !data.isComplete()) {
+            data.close();
             try {
                 data.file.toFile().delete();
             } catch (SecurityException e) {
@@ -123,14 +125,17 @@ final class FileReceivingController {
             this.stream = new FileOutputStream(actualFile);
         }
 
-        public void receiveBlock(Frame.FileSending fileSending) throws IOException {
-            Objects.requireNonNull(fileSending);
+        public void receiveBlock(Frame.FileBlock fileBlock) throws IOException {
+            Objects.requireNonNull(fileBlock);
             if (missingBlocks == 0) {
                 throw new IllegalStateException("File already received");
             }
-            var buffer = fileSending.block();
-            // TODO System.out.println("Received block " + (fileSending.blockCount() - missingBlocks) + " of " + fileSending.blockCount());
-            stream.write(buffer.array(), 0, buffer.limit());
+            var buffer = fileBlock.block().flip();
+            var position = fileBlock.offset();
+            var channel = stream.getChannel();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
             missingBlocks--;
         }
 
@@ -1,6 +1,8 @@
 package fr.uge.chatfusion.client;
 
 
+import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.base.Sizes;
 import fr.uge.chatfusion.core.frame.Frame;
 
@@ -18,6 +20,7 @@ final class FileSendingController {
     private final ArrayDeque<FileData> queuedFiles = new ArrayDeque<>();
     private FileData currentFile;
     private int leftToSend;
+    private long offset;
 
     public Optional<ByteBuffer> nextFileSendingFrame() {
         if (currentFile == null || leftToSend == 0) {
@@ -26,27 +29,28 @@ final class FileSendingController {
             }
             currentFile = queuedFiles.pop();
             leftToSend = currentFile.blockCount();
+            offset = 0;
+            return Optional.of(currentFile.openFrame());
         }
 
         byte[] data;
         try {
             data = currentFile.stream().readNBytes(Sizes.MAX_FILE_BLOCK_SIZE);
-            //currentFile.stream().read(blockBuffer.array());
         } catch (IOException e) {
             System.out.println("Error while reading file " + currentFile.filePath());
             currentFile = null;
             return Optional.empty();
         }
         var blockBuffer = ByteBuffer.wrap(data).compact();
-        // TODO System.out.println("Sending block " + (currentFile.blockCount() - leftToSend) + " of " + currentFile.blockCount());
-        var buffer = currentFile.toFrame(blockBuffer);
+        var buffer = Frame.FileBlock.buffer(currentFile.id(), offset, blockBuffer);
+        offset += data.length;
         leftToSend--;
         return Optional.of(buffer);
     }
 
     public void sendFile(
-        String originServer,
-        String sender,
+        EncodedString originServer,
+        EncodedString sender,
         String destinationServer,
         String recipient,
         Path filePath
@@ -78,9 +82,46 @@ final class FileSendingController {
         }
     }
 
+    // the blocks of a file whose recipient is not logged in would be dropped by the server
+    public void cancel(String destinationServer, String recipient) {
+        Objects.requireNonNull(destinationServer);
+        Objects.requireNonNull(recipient);
+        for (var iterator = queuedFiles.iterator(); iterator.hasNext(); ) {
+            var file = iterator.next();
+            if (file.isFor(destinationServer, recipient)) {
+                iterator.remove();
+                cancel(file);
+            }
+        }
+        if (currentFile != null && leftToSend > 0 && currentFile.isFor(destinationServer, recipient)) {
+            cancel(currentFile);
+            currentFile = null;
+        }
+    }
+
+    // the blocks of a transfer the server refused to open would be dropped
+    public void cancel(long fileId) {
+        queuedFiles.removeIf(file -> {
+            if (file.id() != fileId) {
+                return false;
+            }
+            cancel(file);
+            return true;
+        });
+        if (currentFile != null && leftToSend > 0 && currentFile.id() == fileId) {
+            cancel(currentFile);
+            currentFile = null;
+        }
+    }
+
+    private static void cancel(FileData file) {
+        System.out.println("Sending of " + file.filePath() + " cancelled.");
+        CloseableUtils.silentlyClose(file.stream());
+    }
+
     private record FileData(
-        String originServer,
-        String sender,
+        EncodedString originServer,
+        EncodedString sender,
         String destinationServer,
         String recipient,
         Path filePath,
@@ -88,17 +129,19 @@ final class FileSendingController {
         int blockCount,
         FileInputStream stream
     ) {
-        public ByteBuffer toFrame(ByteBuffer block) {
-            Objects.requireNonNull(block);
-            return Frame.FileSending.buffer(
+        public boolean isFor(String destinationServer, String recipient) {
+            return this.destinationServer.equals(destinationServer) && this.recipient.equals(recipient);
+        }
+
+        public ByteBuffer openFrame() {
+            return Frame.FileOpen.buffer(
                 originServer,
                 sender,
                 destinationServer,
                 recipient,
                 id,
                 filePath.getFileName().toString(),
-                blockCount,
-                block
+                blockCount
             );
         }
     }
@@ -1,12 +1,15 @@
 package fr.uge.chatfusion.client;
 
 import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.selection.ReadyList;
 import fr.uge.chatfusion.core.selection.SelectionKeyController;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.ConnectException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.*;
 import java.util.ArrayDeque;
 import java.util.Objects;
@@ -14,16 +17,19 @@ import java.util.Objects;
 final class SocketChannelController {
     private final ArrayDeque<Runnable> commands = new ArrayDeque<>(1);
     private final Selector selector = Selector.open();
-    private final SocketChannel socketChannel = SocketChannel.open();
-    private final InetSocketAddress serverAddress;
+    private final SocketChannel socketChannel;
+    private final SocketAddress serverAddress;
     private final Runnable onConnectFail;
 
     public SocketChannelController(
-        InetSocketAddress serverAddress,
+        SocketAddress serverAddress,
         Runnable onConnectFail
     ) throws IOException {
         Objects.requireNonNull(serverAddress);
         Objects.requireNonNull(onConnectFail);
+        this.socketChannel = serverAddress instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
         this.serverAddress = serverAddress;
         this.onConnectFail = onConnectFail;
     }
@@ -34,11 +40,20 @@ final class SocketChannelController {
     }
 
     public void launch() throws IOException {
-        socketChannel.connect(serverAddress);
+        if (socketChannel.connect(serverAddress)) {
+            // a Unix domain socket is connected right away, the selector will not tell it
+            ((SelectionKeyController) socketChannel.keyFor(selector).attachment()).doConnect();
+        }
         while (!Thread.interrupted()) {
             try {
-                selector.select(this::treatKey);
+                var ready = ReadyList.current();
+                if (ready.isEmpty()) {
+                    selector.select(this::treatKey);
+                } else {
+                    selector.selectNow(this::treatKey);
+                }
                 processCommands();
+                ready.serve();
             } catch (CancelledKeyException | ClosedSelectorException e) {
                 // ignore exceptions caused by closing
                 break;
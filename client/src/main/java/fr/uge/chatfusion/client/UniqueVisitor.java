@@ -38,8 +38,26 @@ final class UniqueVisitor implements FrameVisitor {
     }
 
     @Override
-    public void visit(Frame.FileSending frame) {
+    public void visit(Frame.FileOpen frame) {
+        Objects.requireNonNull(frame);
+        client.receiveFileOpen(frame);
+    }
+
+    @Override
+    public void visit(Frame.FileBlock frame) {
         Objects.requireNonNull(frame);
         client.receiveFileBlock(frame);
     }
+
+    @Override
+    public void visit(Frame.UnknownRecipient frame) {
+        Objects.requireNonNull(frame);
+        client.receiveUnknownRecipient(frame);
+    }
+
+    @Override
+    public void visit(Frame.FileRefused frame) {
+        Objects.requireNonNull(frame);
+        client.receiveFileRefused(frame);
+    }
 }
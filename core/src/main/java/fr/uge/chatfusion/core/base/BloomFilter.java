@@ -0,0 +1,146 @@
+package fr.uge.chatfusion.core.base;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * A Bloom filter of strings, telling whether a string might be one of the strings it was built from.
+ * <p>
+ * A filter never answers no for a string it was built from, but it may answer yes for another one: with the 10 bits
+ * reserved per string, about 1% of the other strings are false positives. The filter is built once and never
+ * modified, a new filter is built when the strings change.
+ *
+ * @implNote The bits are limited to {@link Sizes#MAX_FILE_BLOCK_SIZE} bytes, so that a filter fits in a frame. Beyond
+ * about 2400 strings the filter gets fuller and the false positives more frequent, but a string it was built from is
+ * still always found. The 7 indexes of a string are derived from a 64-bit hash of its characters, which is the same
+ * in every process.
+ */
+public final class BloomFilter {
+    private static final int BITS_PER_VALUE = 10;
+    private static final int HASH_COUNT = 7;
+    private static final int MIN_SIZE = 8;
+
+    private final byte[] bits;
+
+    private BloomFilter(byte[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Creates a filter containing the given strings.
+     *
+     * @param values the strings
+     * @return the filter
+     */
+    public static BloomFilter of(Collection<String> values) {
+        Objects.requireNonNull(values);
+        var size = (int) Math.min((long) values.size() * BITS_PER_VALUE / Byte.SIZE, Sizes.MAX_FILE_BLOCK_SIZE);
+        var filter = new BloomFilter(new byte[Math.max(size, MIN_SIZE)]);
+        for (var value : values) {
+            filter.add(value);
+        }
+        return filter;
+    }
+
+    /**
+     * Creates a filter from the bits of another one, as given by {@link #toBuffer()}.
+     *
+     * @apiNote The bits are the bytes before the position of the buffer, they are copied and the buffer is left
+     * untouched.
+     *
+     * @param buffer the bits of the filter
+     * @return the filter
+     * @throws IllegalArgumentException if the buffer holds no bits
+     */
+    public static BloomFilter wrap(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        if (buffer.position() == 0) {
+            throw new IllegalArgumentException("A filter holds at least one byte");
+        }
+        var bits = new byte[buffer.position()];
+        buffer.get(0, bits);
+        return new BloomFilter(bits);
+    }
+
+    /**
+     * Tells whether the given string might be one of the strings of the filter.
+     *
+     * @param value the string
+     * @return false if the string is not one of the strings of the filter, true if it probably is
+     */
+    public boolean mightContain(String value) {
+        Objects.requireNonNull(value);
+        var hash = hash(value);
+        for (var i = 0; i < HASH_COUNT; i++) {
+            var index = index(hash, i);
+            if ((bits[index >>> 3] & (1 << (index & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the bits of the filter, as the bytes before the position of a new buffer.
+     *
+     * @return the bits of the filter
+     */
+    public ByteBuffer toBuffer() {
+        return ByteBuffer.allocate(bits.length).put(bits);
+    }
+
+    /**
+     * Gets the size of the bits of the filter.
+     *
+     * @return the size of the filter, in bytes
+     */
+    public int size() {
+        return bits.length;
+    }
+
+    private void add(String value) {
+        var hash = hash(value);
+        for (var i = 0; i < HASH_COUNT; i++) {
+            var index = index(hash, i);
+            bits[index >>> 3] |= (byte) (1 << (index & 7));
+        }
+    }
+
+    // double hashing, the two halves of the hash give all the indexes
+    private int index(long hash, int i) {
+        var combined = (int) hash + i * (int) (hash >>> 32);
+        return Integer.remainderUnsigned(combined, bits.length * Byte.SIZE);
+    }
+
+    // FNV-1a of the characters, then the finalizer of MurmurHash3 so that both halves are well mixed
+    private static long hash(String value) {
+        var hash = 0xcbf29ce484222325L;
+        for (var i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BloomFilter filter && Arrays.equals(bits, filter.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter[size=" + bits.length + "]";
+    }
+}
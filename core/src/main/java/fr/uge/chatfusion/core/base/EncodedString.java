@@ -0,0 +1,96 @@
+package fr.uge.chatfusion.core.base;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link String} kept in its encoded form, using the {@link Charsets#DEFAULT_CHARSET} charset. The string is
+ * only decoded the first time its value is requested, which allows to forward it without decoding it. Short strings
+ * are decoded through the {@link StringCache#defaultCache() default cache}.
+ *
+ * @apiNote The encoded bytes are never exposed, meaning that an instance is immutable and can be shared.
+ */
+public final class EncodedString {
+    private final byte[] bytes;
+    private String value;
+
+    private EncodedString(byte[] bytes, String value) {
+        this.bytes = bytes;
+        this.value = value;
+    }
+
+    /**
+     * Creates an encoded string from the given string.
+     *
+     * @param value the string to encode
+     * @return the encoded string
+     */
+    public static EncodedString of(String value) {
+        Objects.requireNonNull(value);
+        return new EncodedString(value.getBytes(Charsets.DEFAULT_CHARSET), value);
+    }
+
+    /**
+     * Creates an encoded string from the given bytes, which will only be decoded when needed.
+     *
+     * @apiNote The given array is not copied, it must not be modified after the call.
+     *
+     * @param bytes the encoded bytes
+     * @return the encoded string
+     */
+    public static EncodedString wrap(byte[] bytes) {
+        Objects.requireNonNull(bytes);
+        return new EncodedString(bytes, null);
+    }
+
+    /**
+     * Gets the decoded value of the string.
+     *
+     * @return the decoded value of the string
+     */
+    public String value() {
+        var value = this.value;
+        if (value == null) {
+            value = StringCache.defaultCache().decode(bytes, 0, bytes.length);
+            this.value = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the size of the string once encoded.
+     *
+     * @return the size of the string once encoded
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * Writes the string preceded by its length in the given buffer, in the same format as
+     * {@link BufferUtils#encodeString(String, java.nio.charset.Charset)}.
+     *
+     * @param buffer the buffer to write to
+     */
+    public void writeTo(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EncodedString other && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return value();
+    }
+}
@@ -43,6 +43,16 @@ public final class Sizes {
         return checkSize(message, MAX_MESSAGE_SIZE);
     }
 
+    /**
+     * Checks if the size of a message, once encoded, is valid.
+     *
+     * @param encodedSize the size of the encoded message to check
+     * @return true if the size is valid, false otherwise
+     */
+    public static boolean checkMessageSize(int encodedSize) {
+        return checkSize(encodedSize, MAX_MESSAGE_SIZE);
+    }
+
     /**
      * Checks if the size of a username is valid.
      *
@@ -66,7 +76,10 @@ public final class Sizes {
     }
 
     private static boolean checkSize(String string, int maxSize) {
-        var size = string.getBytes(Charsets.DEFAULT_CHARSET).length;
+        return checkSize(string.getBytes(Charsets.DEFAULT_CHARSET).length, maxSize);
+    }
+
+    private static boolean checkSize(int size, int maxSize) {
         return size < maxSize && size > 0;
     }
 }
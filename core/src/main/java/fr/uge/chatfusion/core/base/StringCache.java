@@ -0,0 +1,100 @@
+package fr.uge.chatfusion.core.base;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A bounded cache of decoded {@link String}s, keyed by their bytes encoded with the
+ * {@link Charsets#DEFAULT_CHARSET} charset. It is used to decode the short strings sent in almost every frame
+ * (server names and usernames) into a canonical instance, without allocating anything when the string is already
+ * known.
+ *
+ * @implNote The cache is an open-addressing table: a string is searched in a few consecutive slots starting from
+ * the hash of its bytes and, when all of them are taken, replaces one of them. Entries are immutable, so the table
+ * can be read and updated by several threads without locking, at worst losing an insertion.
+ */
+public final class StringCache {
+    /**
+     * The maximum size, in bytes, of the strings stored in a cache. Longer strings are always decoded.
+     */
+    public static final int MAX_CACHED_SIZE = Sizes.MAX_SERVER_NAME_SIZE;
+
+    private static final int PROBES = 4;
+    private static final StringCache DEFAULT = new StringCache(1_024);
+
+    private final Entry[] table;
+    private final int mask;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the number of strings the cache can hold, must be a power of two
+     */
+    public StringCache(int capacity) {
+        if (capacity < PROBES || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two greater than " + PROBES);
+        }
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gets the cache shared by the whole application.
+     *
+     * @return the default cache
+     */
+    public static StringCache defaultCache() {
+        return DEFAULT;
+    }
+
+    /**
+     * Decodes the given bytes, returning the cached instance if the same bytes have already been decoded.
+     *
+     * @param bytes the array containing the encoded string
+     * @param offset the offset of the string in the array
+     * @param length the size of the encoded string
+     * @return the decoded string
+     */
+    public String decode(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, Objects.requireNonNull(bytes).length);
+        if (length > MAX_CACHED_SIZE) {
+            return new String(bytes, offset, length, Charsets.DEFAULT_CHARSET);
+        }
+
+        var hash = hash(bytes, offset, length);
+        var index = hash & mask;
+        for (var i = 0; i < PROBES; i++) {
+            var entry = table[(index + i) & mask];
+            if (entry == null) {
+                return insert((index + i) & mask, hash, bytes, offset, length);
+            }
+            if (entry.hash == hash && entry.matches(bytes, offset, length)) {
+                return entry.value;
+            }
+        }
+        // all the slots are taken, evicts one of them chosen using the upper bits of the hash
+        var victim = (index + ((hash >>> 16) & (PROBES - 1))) & mask;
+        return insert(victim, hash, bytes, offset, length);
+    }
+
+    private String insert(int slot, int hash, byte[] bytes, int offset, int length) {
+        var key = Arrays.copyOfRange(bytes, offset, offset + length);
+        var value = new String(key, Charsets.DEFAULT_CHARSET);
+        table[slot] = new Entry(hash, key, value);
+        return value;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        var hash = 1;
+        for (var i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private record Entry(int hash, byte[] key, String value) {
+        boolean matches(byte[] bytes, int offset, int length) {
+            return Arrays.equals(key, 0, key.length, bytes, offset, offset + length);
+        }
+    }
+}
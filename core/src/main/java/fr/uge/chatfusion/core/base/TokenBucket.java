@@ -0,0 +1,76 @@
+package fr.uge.chatfusion.core.base;
+
+/**
+ * A token bucket limiting the rate of an operation.
+ * <p>
+ * The bucket holds up to a burst of tokens and is refilled at a constant rate. Taking tokens always succeeds, even
+ * when the bucket does not hold enough of them: the bucket goes into debt, and the caller is told how long to wait
+ * before the debt is paid back. This lets the operation that exceeded the limit complete, the caller slowing down the
+ * next ones.
+ *
+ * @implNote The bucket is not thread-safe. The time is given by the caller, so taking tokens never allocates nor
+ * reads the clock twice when several buckets are checked for the same operation.
+ */
+public final class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructor. The bucket starts full.
+     *
+     * @param ratePerSecond the number of tokens added per second
+     * @param burst the maximal number of tokens held by the bucket
+     * @param now the current time, in nanoseconds, as given by {@link System#nanoTime()}
+     */
+    public TokenBucket(double ratePerSecond, long burst, long now) {
+        if (!(ratePerSecond > 0) || Double.isInfinite(ratePerSecond)) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Takes tokens from the bucket.
+     *
+     * @param count the number of tokens to take
+     * @param now the current time, in nanoseconds, as given by {@link System#nanoTime()}
+     * @return the time to wait before the bucket is out of debt, in nanoseconds, 0 if it is not in debt
+     */
+    public long take(long count, long now) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        refill(now);
+        tokens -= count;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * Gets the number of tokens held by the bucket, negative if it is in debt.
+     *
+     * @param now the current time, in nanoseconds, as given by {@link System#nanoTime()}
+     * @return the number of tokens
+     */
+    public double tokens(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    private void refill(long now) {
+        var elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.base.EncodedString;
+import fr.uge.chatfusion.core.base.Sizes;
+
+/**
+ * The kinds of fields of the frames, describing how each one is encoded. Every number is encoded in big-endian order.
+ * <p>
+ * The fields of a frame are declared by its {@link FrameOpcode}, in the order they are encoded: this declaration is
+ * the schema of the protocol, from which the {@link FrameDecoder} decodes every frame.
+ */
+enum FieldKind {
+    /**
+     * A 4 bytes integer.
+     */
+    INT,
+
+    /**
+     * An 8 bytes integer.
+     */
+    LONG,
+
+    /**
+     * A string encoded in UTF-8, prefixed by its size as an {@link #INT}, of at most {@link Sizes#MAX_MESSAGE_SIZE}
+     * bytes. It is decoded as a {@link String}.
+     */
+    STRING,
+
+    /**
+     * A field encoded as a {@link #STRING}, kept as an {@link EncodedString} to be forwarded without being decoded.
+     */
+    ENCODED_STRING,
+
+    /**
+     * An address: the size of the address as a byte, then for an internet address of 4 or 16 bytes the bytes of the
+     * address and the port as an {@link #INT}, or for a size of 0 the path of a Unix domain socket as a
+     * {@link #STRING}.
+     */
+    ADDRESS,
+
+    /**
+     * A list of {@link #STRING}s prefixed by its size as an {@link #INT}.
+     */
+    STRING_LIST,
+
+    /**
+     * A block of bytes prefixed by its size as an {@link #INT}, of at most {@link Sizes#MAX_FILE_BLOCK_SIZE} bytes.
+     */
+    BYTES,
+}
@@ -1,15 +1,14 @@
 package fr.uge.chatfusion.core.frame;
 
 
+import fr.uge.chatfusion.core.base.BloomFilter;
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.reader.Reader;
-import fr.uge.chatfusion.core.reader.Readers;
 
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
 
 /**
  * Defines the frames used to transfer data in the whole ChatFusion protocol.
@@ -18,26 +17,35 @@ public sealed interface Frame {
     /**
      * Creates a frame reader.
      *
+     * @implNote The frames are decoded by a single state machine, see {@link FrameDecoder}.
+     *
      * @return a new frame reader
      */
     static Reader<Frame> reader() {
-        var byteReader = Readers.byteReader();
-        var opcodeToReader = opcodeToReader(byteReader);
-        return byteReader.compose()
-            .map(b -> {
-                byteReader.reset();
-                return opcodeToReader.apply(b);
-            })
-            .toReader();
+        return new FrameDecoder();
+    }
+
+    private static ByteBuffer encode(Frame frame) {
+        var buffer = ByteBuffer.allocate(frame.encodedSize());
+        frame.encodeTo(buffer);
+        return buffer;
+    }
+
+    private static int fusionDataSize(String serverName, SocketAddress serverAddress, List<String> members) {
+        return Byte.BYTES
+            + FrameBuilder.sizeOf(serverName)
+            + FrameBuilder.sizeOf(serverAddress)
+            + FrameBuilder.sizeOf(members);
     }
 
     private static ByteBuffer fusionDataBuffer(
-        String serverName,
-        InetSocketAddress serverAddress,
+        EncodedString serverName,
+        SocketAddress serverAddress,
         List<String> members,
         FrameOpcode opcode
     ) {
-        return new FrameBuilder(opcode)
+        var size = FrameBuilder.sizeOf(serverName) + FrameBuilder.sizeOf(serverAddress) + FrameBuilder.sizeOf(members);
+        return new FrameBuilder(opcode, size)
             .addString(serverName)
             .addAddress(serverAddress)
             .addStringList(members)
@@ -46,22 +54,6 @@ public sealed interface Frame {
 
     //region Client frames
 
-    private static Function<Byte, Reader<Frame>> opcodeToReader(Reader<Byte> byteReader) {
-        var parts = FrameReaderPart.create(byteReader);
-        @SuppressWarnings("unchecked")
-        var readers = (Reader<Frame>[]) Arrays.stream(FrameOpcode.values())
-            .map(op -> op.reader(parts))
-            .toArray(Reader[]::new);
-
-        return b -> {
-            try {
-                return readers[FrameOpcode.get(b).ordinal()];
-            } catch (IllegalArgumentException e) {
-                throw new IllegalStateException("Unknown opcode: " + b);
-            }
-        };
-    }
-
     /**
      * Accepts a frame visitor.
      *
@@ -69,6 +61,31 @@ public sealed interface Frame {
      */
     void accept(FrameVisitor visitor);
 
+    /**
+     * Gets the opcode of the frame.
+     *
+     * @return the opcode of the frame
+     */
+    FrameOpcode opcode();
+
+    /**
+     * Gets the exact size of the frame once encoded, opcode included, without encoding it.
+     *
+     * @return the size of the encoded frame
+     */
+    int encodedSize();
+
+    /**
+     * Encodes the frame in the given buffer, after its position. This allows to write a frame directly in an
+     * output buffer, without any intermediate buffer.
+     *
+     * @apiNote The buffer must have at least {@link #encodedSize()} remaining bytes, otherwise a
+     * {@link java.nio.BufferOverflowException} is thrown.
+     *
+     * @param buffer the buffer to write to
+     */
+    void encodeTo(ByteBuffer buffer);
+
     /**
      * Frame sent by the client to the server to ask for an anonymous connection.
      */
@@ -87,6 +104,22 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.ANONYMOUS_LOGIN;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(username);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.ANONYMOUS_LOGIN, buffer).addString(username);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
@@ -95,23 +128,30 @@ public sealed interface Frame {
          */
         public static ByteBuffer buffer(String username) {
             Objects.requireNonNull(username);
-            return new FrameBuilder(FrameOpcode.ANONYMOUS_LOGIN)
+            return buffer(EncodedString.of(username));
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param username the already encoded username of the user that wants to connect
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(EncodedString username) {
+            Objects.requireNonNull(username);
+            return new FrameBuilder(FrameOpcode.ANONYMOUS_LOGIN, FrameBuilder.sizeOf(username))
                 .addString(username)
                 .build();
         }
 
         /**
-         * Creates a reader for the anonymous login frame.
+         * Creates the anonymous login frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the anonymous login frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the anonymous login frame
          */
-        static Reader<Frame.AnonymousLogin> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return parts.string()
-                .compose()
-                .andFinally(AnonymousLogin::new)
-                .toReader();
+        static AnonymousLogin fromFields(FrameFields fields) {
+            return new AnonymousLogin(fields.string(0));
         }
     }
     //endregion
@@ -137,6 +177,22 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.LOGIN_ACCEPTED;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(serverName);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.LOGIN_ACCEPTED, buffer).addString(serverName);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
@@ -145,23 +201,30 @@ public sealed interface Frame {
          */
         public static ByteBuffer buffer(String serverName) {
             Objects.requireNonNull(serverName);
-            return new FrameBuilder(FrameOpcode.LOGIN_ACCEPTED)
+            return buffer(EncodedString.of(serverName));
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param serverName the already encoded name of the server
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(EncodedString serverName) {
+            Objects.requireNonNull(serverName);
+            return new FrameBuilder(FrameOpcode.LOGIN_ACCEPTED, FrameBuilder.sizeOf(serverName))
                 .addString(serverName)
                 .build();
         }
 
         /**
-         * Creates a reader for the login accepted frame.
+         * Creates the login accepted frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the login accepted frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the login accepted frame
          */
-        static Reader<Frame.LoginAccepted> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return parts.string()
-                .compose()
-                .andFinally(LoginAccepted::new)
-                .toReader();
+        static LoginAccepted fromFields(FrameFields fields) {
+            return new LoginAccepted(fields.string(0));
         }
     }
 
@@ -175,31 +238,46 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.LOGIN_REFUSED;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES;
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.LOGIN_REFUSED, buffer);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
          * @return the frame as a {@link ByteBuffer}
          */
         public static ByteBuffer buffer() {
-            return new FrameBuilder(FrameOpcode.LOGIN_REFUSED).build();
+            return Frame.encode(new LoginRefused());
         }
 
         /**
-         * Creates a reader for the login refused frame.
+         * Creates the login refused frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the login refused frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the login refused frame
          */
-        static Reader<Frame.LoginRefused> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return Readers.directReader(Frame.LoginRefused::new);
+        static LoginRefused fromFields(FrameFields fields) {
+            return new LoginRefused();
         }
     }
 
     /**
      * Frame sent from a server to another to initiate a fusion.
      */
-    record FusionInit(String serverName, InetSocketAddress serverAddress, List<String> members) implements Frame {
+    record FusionInit(String serverName, SocketAddress serverAddress, List<String> members) implements Frame {
         /**
          * Constructor.
          *
@@ -207,7 +285,7 @@ public sealed interface Frame {
          * @param serverAddress the address of the server
          * @param members the names of the members of the fusion
          */
-        public FusionInit(String serverName, InetSocketAddress serverAddress, List<String> members) {
+        public FusionInit(String serverName, SocketAddress serverAddress, List<String> members) {
             Objects.requireNonNull(serverName);
             Objects.requireNonNull(serverAddress);
             Objects.requireNonNull(members);
@@ -222,6 +300,25 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_INIT;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Frame.fusionDataSize(serverName, serverAddress, members);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_INIT, buffer)
+                .addString(serverName)
+                .addAddress(serverAddress)
+                .addStringList(members);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
@@ -230,7 +327,24 @@ public sealed interface Frame {
          * @param members the names of the members of the server
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(String serverName, InetSocketAddress serverAddress, List<String> members) {
+        public static ByteBuffer buffer(String serverName, SocketAddress serverAddress, List<String> members) {
+            Objects.requireNonNull(serverName);
+            return buffer(EncodedString.of(serverName), serverAddress, members);
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param serverName the already encoded name of the server
+         * @param serverAddress the address of the server
+         * @param members the names of the members of the server
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            EncodedString serverName,
+            SocketAddress serverAddress,
+            List<String> members
+        ) {
             Objects.requireNonNull(serverName);
             Objects.requireNonNull(serverAddress);
             Objects.requireNonNull(members);
@@ -238,31 +352,20 @@ public sealed interface Frame {
         }
 
         /**
-         * Creates a reader for the fusion init frame.
+         * Creates the fusion init frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion init frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion init frame
          */
-        static Reader<Frame.FusionInit> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String serverName;
-                InetSocketAddress serverAddress;
-            };
-
-            return parts.string()
-                .compose()
-                .andThen(parts.address(), s -> ctx.serverName = s)
-                .andThen(parts.stringList(), a -> ctx.serverAddress = a)
-                .andFinally(l -> new Frame.FusionInit(ctx.serverName, ctx.serverAddress, l))
-                .toReader();
+        static FusionInit fromFields(FrameFields fields) {
+            return new FusionInit(fields.string(0), fields.address(1), fields.stringList(2));
         }
     }
 
     /**
      * Frame sent from a server to another to accept a fusion.
      */
-    record FusionInitOk(String serverName, InetSocketAddress serverAddress, List<String> members) implements Frame {
+    record FusionInitOk(String serverName, SocketAddress serverAddress, List<String> members) implements Frame {
         /**
          * Constructor.
          *
@@ -270,7 +373,7 @@ public sealed interface Frame {
          * @param serverAddress the address of the server
          * @param members the names of the members of the fusion
          */
-        public FusionInitOk(String serverName, InetSocketAddress serverAddress, List<String> members) {
+        public FusionInitOk(String serverName, SocketAddress serverAddress, List<String> members) {
             Objects.requireNonNull(serverName);
             Objects.requireNonNull(serverAddress);
             Objects.requireNonNull(members);
@@ -285,6 +388,25 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_INIT_OK;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Frame.fusionDataSize(serverName, serverAddress, members);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_INIT_OK, buffer)
+                .addString(serverName)
+                .addAddress(serverAddress)
+                .addStringList(members);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
@@ -293,7 +415,24 @@ public sealed interface Frame {
          * @param members the names of the members of the server
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(String serverName, InetSocketAddress serverAddress, List<String> members) {
+        public static ByteBuffer buffer(String serverName, SocketAddress serverAddress, List<String> members) {
+            Objects.requireNonNull(serverName);
+            return buffer(EncodedString.of(serverName), serverAddress, members);
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param serverName the already encoded name of the server
+         * @param serverAddress the address of the server
+         * @param members the names of the members of the server
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            EncodedString serverName,
+            SocketAddress serverAddress,
+            List<String> members
+        ) {
             Objects.requireNonNull(serverName);
             Objects.requireNonNull(serverAddress);
             Objects.requireNonNull(members);
@@ -301,24 +440,13 @@ public sealed interface Frame {
         }
 
         /**
-         * Creates a reader for the fusion init ok frame.
+         * Creates the fusion init ok frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion init ok frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion init ok frame
          */
-        static Reader<Frame.FusionInitOk> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String serverName;
-                InetSocketAddress serverAddress;
-            };
-
-            return parts.string()
-                .compose()
-                .andThen(parts.address(), s -> ctx.serverName = s)
-                .andThen(parts.stringList(), a -> ctx.serverAddress = a)
-                .andFinally(l -> new Frame.FusionInitOk(ctx.serverName, ctx.serverAddress, l))
-                .toReader();
+        static FusionInitOk fromFields(FrameFields fields) {
+            return new FusionInitOk(fields.string(0), fields.address(1), fields.stringList(2));
         }
     }
 
@@ -332,31 +460,46 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_INIT_KO;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES;
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_INIT_KO, buffer);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
          * @return the frame as a {@link ByteBuffer}
          */
         public static ByteBuffer buffer() {
-            return new FrameBuilder(FrameOpcode.FUSION_INIT_KO).build();
+            return Frame.encode(new FusionInitKo());
         }
 
         /**
-         * Creates a reader for the fusion init ko frame.
+         * Creates the fusion init ko frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion init ko frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion init ko frame
          */
-        static Reader<Frame.FusionInitKo> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return Readers.directReader(Frame.FusionInitKo::new);
+        static FusionInitKo fromFields(FrameFields fields) {
+            return new FusionInitKo();
         }
     }
 
     /**
      * Frame sent from a server to another in order to redirect to its leader.
      */
-    record FusionInitFwd(InetSocketAddress leaderAddress) implements Frame {
+    record FusionInitFwd(SocketAddress leaderAddress) implements Frame {
         /**
          * Constructor.
          *
@@ -372,38 +515,48 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_INIT_FWD;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(leaderAddress);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_INIT_FWD, buffer).addAddress(leaderAddress);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
          * @param leaderAddress the address of the leader
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(InetSocketAddress leaderAddress) {
+        public static ByteBuffer buffer(SocketAddress leaderAddress) {
             Objects.requireNonNull(leaderAddress);
-            return new FrameBuilder(FrameOpcode.FUSION_INIT_FWD)
-                .addAddress(leaderAddress)
-                .build();
+            return Frame.encode(new FusionInitFwd(leaderAddress));
         }
 
         /**
-         * Creates a reader for the fusion init fwd frame.
+         * Creates the fusion init forward frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion init fwd frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion init forward frame
          */
-        static Reader<Frame.FusionInitFwd> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return parts.address()
-                .compose()
-                .andFinally(FusionInitFwd::new)
-                .toReader();
+        static FusionInitFwd fromFields(FrameFields fields) {
+            return new FusionInitFwd(fields.address(0));
         }
     }
 
     /**
      * Frame sent from a server to its leader to request for a fusion with an other server.
      */
-    record FusionRequest(InetSocketAddress remote) implements Frame {
+    record FusionRequest(SocketAddress remote) implements Frame {
         /**
          * Constructor.
          *
@@ -419,38 +572,48 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_REQUEST;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(remote);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_REQUEST, buffer).addAddress(remote);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
          * @param remote the address of the remote server
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(InetSocketAddress remote) {
+        public static ByteBuffer buffer(SocketAddress remote) {
             Objects.requireNonNull(remote);
-            return new FrameBuilder(FrameOpcode.FUSION_REQUEST)
-                .addAddress(remote)
-                .build();
+            return Frame.encode(new FusionRequest(remote));
         }
 
         /**
-         * Creates a reader for the fusion request frame.
+         * Creates the fusion request frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion request frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion request frame
          */
-        static Reader<Frame.FusionRequest> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return parts.address()
-                .compose()
-                .andFinally(FusionRequest::new)
-                .toReader();
+        static FusionRequest fromFields(FrameFields fields) {
+            return new FusionRequest(fields.address(0));
         }
     }
 
     /**
      * Frame sent from a server leader to its members to inform them that the leader of the group has changed.
      */
-    record FusionChangeLeader(String leaderName, InetSocketAddress leaderAddress) implements Frame {
+    record FusionChangeLeader(String leaderName, SocketAddress leaderAddress) implements Frame {
         /**
          * Constructor.
          *
@@ -468,6 +631,24 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_CHANGE_LEADER;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(leaderName) + FrameBuilder.sizeOf(leaderAddress);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_CHANGE_LEADER, buffer)
+                .addString(leaderName)
+                .addAddress(leaderAddress);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
@@ -475,49 +656,56 @@ public sealed interface Frame {
          * @param leaderAddress the address of the new leader
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(String leaderName, InetSocketAddress leaderAddress) {
-            Objects.requireNonNull(leaderName);
-            Objects.requireNonNull(leaderAddress);
-            return new FrameBuilder(FrameOpcode.FUSION_CHANGE_LEADER)
-                .addString(leaderName)
-                .addAddress(leaderAddress)
-                .build();
+        public static ByteBuffer buffer(String leaderName, SocketAddress leaderAddress) {
+            return Frame.encode(new FusionChangeLeader(leaderName, leaderAddress));
         }
 
         /**
-         * Creates a reader for the fusion change leader frame.
+         * Creates the fusion change leader frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion change leader frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion change leader frame
          */
-        static Reader<Frame.FusionChangeLeader> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String leaderName;
-            };
-
-            return parts.string()
-                .compose()
-                .andThen(parts.address(), s -> ctx.leaderName = s)
-                .andFinally(a -> new FusionChangeLeader(ctx.leaderName, a))
-                .toReader();
+        static FusionChangeLeader fromFields(FrameFields fields) {
+            return new FusionChangeLeader(fields.string(0), fields.address(1));
         }
     }
-    //endregion
-
-    //region Common frames
 
     /**
-     * Frame sent from a server to its new leader to join the server group.
+     * Frame sent from a server to the other servers of its group, through its leader, to announce its users.
      */
-    record FusionMerge(String name) implements Frame {
+    record DirectoryUpdate(String serverName, ByteBuffer filter) implements Frame {
         /**
          * Constructor.
          *
-         * @param name the name of the server that is joining the group
+         * @param serverName the name of the server the users are logged in on
+         * @param filter the bits of the filter of the users, before the position of the buffer
          */
-        public FusionMerge {
-            Objects.requireNonNull(name);
+        public DirectoryUpdate {
+            Objects.requireNonNull(serverName);
+            Objects.requireNonNull(filter);
+            if (filter.position() == 0) {
+                throw new IllegalArgumentException("filter must not be empty");
+            }
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param serverName the name of the server the users are logged in on
+         * @param filter the filter of the users
+         */
+        public DirectoryUpdate(String serverName, BloomFilter filter) {
+            this(serverName, filter.toBuffer());
+        }
+
+        /**
+         * Gets the filter of the users.
+         *
+         * @return the filter of the users
+         */
+        public BloomFilter users() {
+            return BloomFilter.wrap(filter);
         }
 
         @Override
@@ -526,49 +714,70 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.DIRECTORY_UPDATE;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(serverName) + Integer.BYTES + filter.position();
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @implNote The filter of this frame is left untouched.
+         */
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.DIRECTORY_UPDATE, buffer)
+                .addString(serverName)
+                .addBuffer(filter);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @param name the name of the server that will be merged
+         * @param serverName the name of the server the users are logged in on
+         * @param filter the filter of the users
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(String name) {
-            Objects.requireNonNull(name);
-            return new FrameBuilder(FrameOpcode.FUSION_MERGE)
-                .addString(name)
-                .build();
+        public static ByteBuffer buffer(String serverName, BloomFilter filter) {
+            Objects.requireNonNull(filter);
+            return Frame.encode(new DirectoryUpdate(serverName, filter));
         }
 
         /**
-         * Creates a reader for the fusion merge frame.
+         * Creates the directory update frame from its decoded fields.
          *
-         * @param parts the different parts used to create the reader
-         * @return a reader for the fusion merge frame
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the directory update frame, or null if its filter is empty
          */
-        static Reader<Frame.FusionMerge> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            return parts.string()
-                .compose()
-                .andFinally(FusionMerge::new)
-                .toReader();
+        static DirectoryUpdate fromFields(FrameFields fields) {
+            var filter = fields.bytes(1);
+            if (filter.position() == 0) {
+                return null;
+            }
+            return new DirectoryUpdate(fields.string(0), filter);
         }
     }
+    //endregion
+
+    //region Common frames
 
     /**
-     * Frame representing a public message. It can be sent from and to a client or a server.
+     * Frame sent from a server to its new leader to join the server group.
      */
-    record PublicMessage(String originServer, String senderUsername, String message) implements Frame {
+    record FusionMerge(String name) implements Frame {
         /**
          * Constructor.
          *
-         * @param originServer the name of the server of the sender
-         * @param senderUsername the username of the sender
-         * @param message the message
+         * @param name the name of the server that is joining the group
          */
-        public PublicMessage {
-            Objects.requireNonNull(originServer);
-            Objects.requireNonNull(senderUsername);
-            Objects.requireNonNull(message);
+        public FusionMerge {
+            Objects.requireNonNull(name);
         }
 
         @Override
@@ -577,167 +786,440 @@ public sealed interface Frame {
             visitor.visit(this);
         }
 
-        /**
-         * Creates a {@link ByteBuffer} in the frame format.
-         *
-         * @param parts the different parts used to create the buffer
-         * @return the frame as a {@link ByteBuffer}
-         */
-        static Reader<Frame.PublicMessage> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String originServer;
-                String senderUsername;
-            };
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FUSION_MERGE;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(name);
+        }
 
-            return parts.string()
-                .compose()
-                .andThen(parts.string(), s -> ctx.originServer = s)
-                .andThen(parts.string(), s -> ctx.senderUsername = s)
-                .andFinally(s -> new PublicMessage(ctx.originServer, ctx.senderUsername, s))
-                .toReader();
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FUSION_MERGE, buffer).addString(name);
         }
 
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @param originServer the origin server of the message
-         * @param senderUsername the username of the sender
-         * @param message the message
+         * @param name the name of the server that will be merged
          * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(String originServer, String senderUsername, String message) {
-            Objects.requireNonNull(originServer);
-            Objects.requireNonNull(senderUsername);
-            Objects.requireNonNull(message);
-            return new FrameBuilder(FrameOpcode.PUBLIC_MESSAGE)
-                .addString(originServer)
-                .addString(senderUsername)
-                .addString(message)
-                .build();
+        public static ByteBuffer buffer(String name) {
+            Objects.requireNonNull(name);
+            return buffer(EncodedString.of(name));
         }
 
         /**
-         * Creates a reader for the public message frame.
+         * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @return a reader for the public message frame
+         * @param name the already encoded name of the server that will be merged
+         * @return the frame as a {@link ByteBuffer}
          */
-        public ByteBuffer buffer() {
-            return buffer(originServer, senderUsername, message);
+        public static ByteBuffer buffer(EncodedString name) {
+            Objects.requireNonNull(name);
+            return new FrameBuilder(FrameOpcode.FUSION_MERGE, FrameBuilder.sizeOf(name))
+                .addString(name)
+                .build();
         }
 
         /**
-         * Formats the frame message as a string.
+         * Creates the fusion merge frame from its decoded fields.
          *
-         * @return the frame message as a string
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the fusion merge frame
          */
-        public String format() {
-            return "[" + originServer + "] " + senderUsername + ": " + message;
+        static FusionMerge fromFields(FrameFields fields) {
+            return new FusionMerge(fields.string(0));
         }
     }
 
     /**
-     * Frame representing a private message. It can be sent from and to a client or a server.
+     * Frame representing a public message. It can be sent from and to a client or a server.
+     *
+     * @apiNote A public message may carry a {@link Trace}, in which case it is sent with the
+     * {@link FrameOpcode#TRACED_PUBLIC_MESSAGE} opcode and the trace is appended after the message.
+     *
+     * @param originServer the name of the server of the sender
+     * @param senderUsername the username of the sender
+     * @param message the message
+     * @param trace the trace of the message, or null if the message is not traced
      */
-    record DirectMessage(
-        String originServer,
-        String senderUsername,
-        String destinationServer,
-        String recipientUsername,
-        String message
-    ) implements Frame {
+    record PublicMessage(String originServer, String senderUsername, String message, Trace trace) implements Frame {
         /**
          * Constructor.
          *
          * @param originServer the name of the server of the sender
          * @param senderUsername the username of the sender
-         * @param destinationServer the name of the server of the recipient
-         * @param recipientUsername the username of the recipient
          * @param message the message
+         * @param trace the trace of the message, or null if the message is not traced
          */
-        public DirectMessage {
+        public PublicMessage {
             Objects.requireNonNull(originServer);
             Objects.requireNonNull(senderUsername);
-            Objects.requireNonNull(destinationServer);
-            Objects.requireNonNull(recipientUsername);
             Objects.requireNonNull(message);
         }
 
+        /**
+         * Constructor for a message which is not traced.
+         *
+         * @param originServer the name of the server of the sender
+         * @param senderUsername the username of the sender
+         * @param message the message
+         */
+        public PublicMessage(String originServer, String senderUsername, String message) {
+            this(originServer, senderUsername, message, null);
+        }
+
+        /**
+         * Creates the same message with the given trace.
+         *
+         * @param trace the trace, or null to remove the trace
+         * @return the message with the given trace
+         */
+        public PublicMessage withTrace(Trace trace) {
+            return new PublicMessage(originServer, senderUsername, message, trace);
+        }
+
         @Override
         public void accept(FrameVisitor visitor) {
             Objects.requireNonNull(visitor);
             visitor.visit(this);
         }
 
+        @Override
+        public FrameOpcode opcode() {
+            return trace == null ? FrameOpcode.PUBLIC_MESSAGE : FrameOpcode.TRACED_PUBLIC_MESSAGE;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES
+                + FrameBuilder.sizeOf(originServer)
+                + FrameBuilder.sizeOf(senderUsername)
+                + FrameBuilder.sizeOf(message)
+                + (trace == null ? 0 : Long.BYTES + Integer.BYTES);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            var builder = new FrameBuilder(opcode(), buffer)
+                .addString(originServer)
+                .addString(senderUsername)
+                .addString(message);
+            if (trace != null) {
+                builder.addLong(trace.sendTimestamp())
+                    .addInt(trace.hopCount());
+            }
+        }
+
+        /**
+         * Creates the public message frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the public message frame
+         */
+        static PublicMessage fromFields(FrameFields fields) {
+            return new PublicMessage(fields.string(0), fields.string(1), fields.string(2));
+        }
+
+        /**
+         * Creates the traced public message frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the public message frame, or null if its hop count is negative
+         */
+        static PublicMessage fromTracedFields(FrameFields fields) {
+            var hopCount = fields.intValue(4);
+            if (hopCount < 0) {
+                return null;
+            }
+            var trace = new Trace(fields.longValue(3), hopCount);
+            return new PublicMessage(fields.string(0), fields.string(1), fields.string(2), trace);
+        }
+
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @param parts the different parts used to create the buffer
+         * @param originServer the origin server of the message
+         * @param senderUsername the username of the sender
+         * @param message the message
          * @return the frame as a {@link ByteBuffer}
          */
-        static Reader<Frame.DirectMessage> reader(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String originServer;
-                String senderUsername;
-                String destinationServer;
-                String recipientUsername;
-            };
-
-            var str = parts.string();
-            return str.compose()
-                .andThen(str, s -> ctx.originServer = s)
-                .andThen(str, s -> ctx.senderUsername = s)
-                .andThen(str, s -> ctx.destinationServer = s)
-                .andThen(str, s -> ctx.recipientUsername = s)
-                .andFinally(s -> new DirectMessage(
-                    ctx.originServer,
-                    ctx.senderUsername,
-                    ctx.destinationServer,
-                    ctx.recipientUsername,
-                    s
-                ))
-                .toReader();
+        public static ByteBuffer buffer(String originServer, String senderUsername, String message) {
+            Objects.requireNonNull(originServer);
+            Objects.requireNonNull(senderUsername);
+            return buffer(EncodedString.of(originServer), EncodedString.of(senderUsername), message);
         }
 
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @param originServer the origin server of the sender
+         * @param originServer the already encoded origin server of the message
+         * @param senderUsername the already encoded username of the sender
+         * @param message the message
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(EncodedString originServer, EncodedString senderUsername, String message) {
+            Objects.requireNonNull(originServer);
+            Objects.requireNonNull(senderUsername);
+            Objects.requireNonNull(message);
+            var size = FrameBuilder.sizeOf(originServer, senderUsername) + FrameBuilder.sizeOf(message);
+            return new FrameBuilder(FrameOpcode.PUBLIC_MESSAGE, size)
+                .addString(originServer)
+                .addString(senderUsername)
+                .addString(message)
+                .build();
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public ByteBuffer buffer() {
+            return Frame.encode(this);
+        }
+
+        /**
+         * Formats the frame message as a string.
+         *
+         * @return the frame message as a string
+         */
+        public String format() {
+            return "[" + originServer + "] " + senderUsername + ": " + message;
+        }
+    }
+
+    /**
+     * Frame representing a private message. It can be sent from and to a client or a server.
+     *
+     * @implNote The fields of the frame are kept encoded and are only decoded when accessed, so a server that
+     * relays the frame only decodes its {@link #destinationServer()} and forwards the other fields as they were
+     * received.
+     */
+    final class DirectMessage implements Frame {
+        private final EncodedString originServer;
+        private final EncodedString senderUsername;
+        private final EncodedString destinationServer;
+        private final EncodedString recipientUsername;
+        private final EncodedString message;
+
+        /**
+         * Constructor.
+         *
+         * @param originServer the name of the server of the sender
          * @param senderUsername the username of the sender
-         * @param destinationServer the destination server of the recipient
+         * @param destinationServer the name of the server of the recipient
          * @param recipientUsername the username of the recipient
          * @param message the message
-         * @return the frame as a {@link ByteBuffer}
          */
-        public static ByteBuffer buffer(
+        public DirectMessage(
             String originServer,
             String senderUsername,
             String destinationServer,
             String recipientUsername,
             String message
+        ) {
+            this(
+                EncodedString.of(originServer),
+                EncodedString.of(senderUsername),
+                EncodedString.of(destinationServer),
+                EncodedString.of(recipientUsername),
+                EncodedString.of(message)
+            );
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param originServer the encoded name of the server of the sender
+         * @param senderUsername the encoded username of the sender
+         * @param destinationServer the encoded name of the server of the recipient
+         * @param recipientUsername the encoded username of the recipient
+         * @param message the encoded message
+         */
+        DirectMessage(
+            EncodedString originServer,
+            EncodedString senderUsername,
+            EncodedString destinationServer,
+            EncodedString recipientUsername,
+            EncodedString message
         ) {
             Objects.requireNonNull(originServer);
             Objects.requireNonNull(senderUsername);
             Objects.requireNonNull(destinationServer);
             Objects.requireNonNull(recipientUsername);
             Objects.requireNonNull(message);
-            return new FrameBuilder(FrameOpcode.DIRECT_MESSAGE)
+            this.originServer = originServer;
+            this.senderUsername = senderUsername;
+            this.destinationServer = destinationServer;
+            this.recipientUsername = recipientUsername;
+            this.message = message;
+        }
+
+        /**
+         * Gets the name of the server of the sender.
+         *
+         * @return the name of the server of the sender
+         */
+        public String originServer() {
+            return originServer.value();
+        }
+
+        /**
+         * Gets the username of the sender.
+         *
+         * @return the username of the sender
+         */
+        public String senderUsername() {
+            return senderUsername.value();
+        }
+
+        /**
+         * Gets the name of the server of the recipient.
+         *
+         * @return the name of the server of the recipient
+         */
+        public String destinationServer() {
+            return destinationServer.value();
+        }
+
+        /**
+         * Gets the username of the recipient.
+         *
+         * @return the username of the recipient
+         */
+        public String recipientUsername() {
+            return recipientUsername.value();
+        }
+
+        /**
+         * Gets the message.
+         *
+         * @return the message
+         */
+        public String message() {
+            return message.value();
+        }
+
+        /**
+         * Gets the size of the encoded message, without decoding it.
+         *
+         * @return the size of the encoded message
+         */
+        public int messageSize() {
+            return message.size();
+        }
+
+        @Override
+        public void accept(FrameVisitor visitor) {
+            Objects.requireNonNull(visitor);
+            visitor.visit(this);
+        }
+
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.DIRECT_MESSAGE;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES
+                + FrameBuilder.sizeOf(originServer, senderUsername, destinationServer, recipientUsername, message);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @implNote The fields that have not been decoded are written as they were read.
+         */
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.DIRECT_MESSAGE, buffer)
                 .addString(originServer)
                 .addString(senderUsername)
                 .addString(destinationServer)
                 .addString(recipientUsername)
-                .addString(message)
-                .build();
+                .addString(message);
+        }
+
+        /**
+         * Creates the direct message frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the direct message frame
+         */
+        static DirectMessage fromFields(FrameFields fields) {
+            return new DirectMessage(
+                fields.encodedString(0),
+                fields.encodedString(1),
+                fields.encodedString(2),
+                fields.encodedString(3),
+                fields.encodedString(4)
+            );
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param originServer the origin server of the sender
+         * @param senderUsername the username of the sender
+         * @param destinationServer the destination server of the recipient
+         * @param recipientUsername the username of the recipient
+         * @param message the message
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            String originServer,
+            String senderUsername,
+            String destinationServer,
+            String recipientUsername,
+            String message
+        ) {
+            return new DirectMessage(originServer, senderUsername, destinationServer, recipientUsername, message)
+                .buffer();
         }
 
         /**
          * Creates a {@link ByteBuffer} in the frame format.
          *
+         * @param originServer the already encoded origin server of the sender
+         * @param senderUsername the already encoded username of the sender
+         * @param destinationServer the destination server of the recipient
+         * @param recipientUsername the username of the recipient
+         * @param message the message
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            EncodedString originServer,
+            EncodedString senderUsername,
+            String destinationServer,
+            String recipientUsername,
+            String message
+        ) {
+            return new DirectMessage(
+                originServer,
+                senderUsername,
+                EncodedString.of(destinationServer),
+                EncodedString.of(recipientUsername),
+                EncodedString.of(message)
+            ).buffer();
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format. The fields that have not been decoded are written as they
+         * were read.
+         *
          * @return the frame as a {@link ByteBuffer}
          */
         public ByteBuffer buffer() {
-            return buffer(originServer, senderUsername, destinationServer, recipientUsername, message);
+            return Frame.encode(this);
         }
 
         /**
@@ -746,23 +1228,42 @@ public sealed interface Frame {
          * @return the frame message as a string
          */
         public String format() {
-            return "[" + originServer + "] " + senderUsername + " whispers to you: " + message;
+            return "[" + originServer() + "] " + senderUsername() + " whispers to you: " + message();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DirectMessage other
+                && originServer.equals(other.originServer)
+                && senderUsername.equals(other.senderUsername)
+                && destinationServer.equals(other.destinationServer)
+                && recipientUsername.equals(other.recipientUsername)
+                && message.equals(other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(originServer, senderUsername, destinationServer, recipientUsername, message);
         }
-    }
-    //endregion
 
+        @Override
+        public String toString() {
+            return "DirectMessage[originServer=" + originServer
+                + ", senderUsername=" + senderUsername
+                + ", destinationServer=" + destinationServer
+                + ", recipientUsername=" + recipientUsername
+                + ", message=" + message + "]";
+        }
+    }
     /**
-     * Frame representing a file transfer. It can be sent from and to a client or a server.
+     * Frame sent back to the sender of a direct message or of a file whose recipient is not logged in. It is routed
+     * to the server of the sender as a direct message would be.
      */
-    record FileSending(
+    record UnknownRecipient(
         String originServer,
         String senderUsername,
         String destinationServer,
-        String recipientUsername,
-        long fileId,
-        String fileName,
-        int blockCount,
-        ByteBuffer block
+        String recipientUsername
     ) implements Frame {
         /**
          * Constructor.
@@ -771,45 +1272,144 @@ public sealed interface Frame {
          * @param senderUsername the username of the sender
          * @param destinationServer the name of the server of the recipient
          * @param recipientUsername the username of the recipient
-         * @param fileId the file id
-         * @param fileName the file name
-         * @param blockCount the number of blocks
-         * @param block the block
          */
-        public FileSending {
+        public UnknownRecipient {
             Objects.requireNonNull(originServer);
             Objects.requireNonNull(senderUsername);
             Objects.requireNonNull(destinationServer);
             Objects.requireNonNull(recipientUsername);
-            Objects.requireNonNull(fileName);
-            if (blockCount <= 0) {
-                throw new IllegalArgumentException("blockCount must be positive");
-            }
-            Objects.requireNonNull(block);
+        }
+
+        @Override
+        public void accept(FrameVisitor visitor) {
+            Objects.requireNonNull(visitor);
+            visitor.visit(this);
+        }
+
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.UNKNOWN_RECIPIENT;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES
+                + FrameBuilder.sizeOf(originServer)
+                + FrameBuilder.sizeOf(senderUsername)
+                + FrameBuilder.sizeOf(destinationServer)
+                + FrameBuilder.sizeOf(recipientUsername);
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.UNKNOWN_RECIPIENT, buffer)
+                .addString(originServer)
+                .addString(senderUsername)
+                .addString(destinationServer)
+                .addString(recipientUsername);
         }
 
         /**
-         * Creates a {@link Reader} for the frame.
+         * Creates a {@link ByteBuffer} in the frame format.
          *
-         * @param originServer the origin server of the sender
+         * @param originServer the name of the server of the sender
          * @param senderUsername the username of the sender
-         * @param destinationServer the destination server of the recipient
+         * @param destinationServer the name of the server of the recipient
          * @param recipientUsername the username of the recipient
-         * @param fileId the file id
-         * @param fileName the file name
-         * @param blockCount the number of total blocks
-         * @param block the block
-         * @return the frame as a {@link Reader}
+         * @return the frame as a {@link ByteBuffer}
          */
         public static ByteBuffer buffer(
+            String originServer,
+            String senderUsername,
+            String destinationServer,
+            String recipientUsername
+        ) {
+            return Frame.encode(
+                new UnknownRecipient(originServer, senderUsername, destinationServer, recipientUsername)
+            );
+        }
+
+        /**
+         * Creates the unknown recipient frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the unknown recipient frame
+         */
+        static UnknownRecipient fromFields(FrameFields fields) {
+            return new UnknownRecipient(fields.string(0), fields.string(1), fields.string(2), fields.string(3));
+        }
+    }
+    //endregion
+
+    //region File frames
+
+    /**
+     * Frame opening a file transfer. It carries the metadata of the file once, the following
+     * {@link FileBlock} frames only refer to the transfer using its id. It can be sent from and to a client or a
+     * server.
+     *
+     * @implNote As for {@link DirectMessage}, the string fields of the frame are only decoded when accessed.
+     */
+    final class FileOpen implements Frame {
+        private final EncodedString originServer;
+        private final EncodedString senderUsername;
+        private final EncodedString destinationServer;
+        private final EncodedString recipientUsername;
+        private final long fileId;
+        private final EncodedString fileName;
+        private final int blockCount;
+
+        /**
+         * Constructor.
+         *
+         * @param originServer the name of the server of the sender
+         * @param senderUsername the username of the sender
+         * @param destinationServer the name of the server of the recipient
+         * @param recipientUsername the username of the recipient
+         * @param fileId the id of the transfer
+         * @param fileName the file name
+         * @param blockCount the number of blocks
+         */
+        public FileOpen(
             String originServer,
             String senderUsername,
             String destinationServer,
             String recipientUsername,
             long fileId,
             String fileName,
-            int blockCount,
-            ByteBuffer block
+            int blockCount
+        ) {
+            this(
+                EncodedString.of(originServer),
+                EncodedString.of(senderUsername),
+                EncodedString.of(destinationServer),
+                EncodedString.of(recipientUsername),
+                fileId,
+                EncodedString.of(fileName),
+                blockCount
+            );
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param originServer the encoded name of the server of the sender
+         * @param senderUsername the encoded username of the sender
+         * @param destinationServer the encoded name of the server of the recipient
+         * @param recipientUsername the encoded username of the recipient
+         * @param fileId the id of the transfer
+         * @param fileName the encoded file name
+         * @param blockCount the number of blocks
+         */
+        FileOpen(
+            EncodedString originServer,
+            EncodedString senderUsername,
+            EncodedString destinationServer,
+            EncodedString recipientUsername,
+            long fileId,
+            EncodedString fileName,
+            int blockCount
         ) {
             Objects.requireNonNull(originServer);
             Objects.requireNonNull(senderUsername);
@@ -819,81 +1419,403 @@ public sealed interface Frame {
             if (blockCount <= 0) {
                 throw new IllegalArgumentException("blockCount must be positive");
             }
-            Objects.requireNonNull(block);
-            return new FrameBuilder(FrameOpcode.FILE_SENDING)
+            this.originServer = originServer;
+            this.senderUsername = senderUsername;
+            this.destinationServer = destinationServer;
+            this.recipientUsername = recipientUsername;
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.blockCount = blockCount;
+        }
+
+        /**
+         * Gets the name of the server of the sender.
+         *
+         * @return the name of the server of the sender
+         */
+        public String originServer() {
+            return originServer.value();
+        }
+
+        /**
+         * Gets the username of the sender.
+         *
+         * @return the username of the sender
+         */
+        public String senderUsername() {
+            return senderUsername.value();
+        }
+
+        /**
+         * Gets the name of the server of the recipient.
+         *
+         * @return the name of the server of the recipient
+         */
+        public String destinationServer() {
+            return destinationServer.value();
+        }
+
+        /**
+         * Gets the username of the recipient.
+         *
+         * @return the username of the recipient
+         */
+        public String recipientUsername() {
+            return recipientUsername.value();
+        }
+
+        /**
+         * Gets the id of the transfer.
+         *
+         * @return the id of the transfer
+         */
+        public long fileId() {
+            return fileId;
+        }
+
+        /**
+         * Gets the file name.
+         *
+         * @return the file name
+         */
+        public String fileName() {
+            return fileName.value();
+        }
+
+        /**
+         * Gets the number of blocks.
+         *
+         * @return the number of blocks
+         */
+        public int blockCount() {
+            return blockCount;
+        }
+
+        @Override
+        public void accept(FrameVisitor visitor) {
+            Objects.requireNonNull(visitor);
+            visitor.visit(this);
+        }
+
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FILE_OPEN;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES
+                + FrameBuilder.sizeOf(originServer, senderUsername, destinationServer, recipientUsername, fileName)
+                + Long.BYTES
+                + Integer.BYTES;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @implNote The fields that have not been decoded are written as they were read.
+         */
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FILE_OPEN, buffer)
                 .addString(originServer)
                 .addString(senderUsername)
                 .addString(destinationServer)
                 .addString(recipientUsername)
                 .addLong(fileId)
                 .addString(fileName)
-                .addInt(blockCount)
-                .addBuffer(block)
-                .build();
+                .addInt(blockCount);
         }
 
         /**
-         * Creates a {@link Reader} for the frame.
-         *
-         * @param parts the parts of the frame
-         * @return the frame as a {@link Reader}
-         */
-        static Reader<Frame.FileSending> buffer(FrameReaderPart parts) {
-            Objects.requireNonNull(parts);
-            var ctx = new Object() {
-                String originServer;
-                String senderUsername;
-                String destinationServer;
-                String recipientUsername;
-                long fileId;
-                String fileName;
-                int blockCount;
-            };
-
-            var str = parts.string();
-            return str.compose()
-                .andThen(str, s -> ctx.originServer = s)
-                .andThen(str, s -> ctx.senderUsername = s)
-                .andThen(str, s -> ctx.destinationServer = s)
-                .andThen(parts.longInteger(), s -> ctx.recipientUsername = s)
-                .andThen(str, l -> ctx.fileId = l)
-                .andThen(parts.integer(), s -> ctx.fileName = s)
-                .andThen(parts.byteBuffer(), i -> ctx.blockCount = i)
-                .andFinally(b -> new Frame.FileSending(
-                    ctx.originServer,
-                    ctx.senderUsername,
-                    ctx.destinationServer,
-                    ctx.recipientUsername,
-                    ctx.fileId,
-                    ctx.fileName,
-                    ctx.blockCount,
-                    b
-                ))
-                .toReader();
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param originServer the origin server of the sender
+         * @param senderUsername the username of the sender
+         * @param destinationServer the destination server of the recipient
+         * @param recipientUsername the username of the recipient
+         * @param fileId the id of the transfer
+         * @param fileName the file name
+         * @param blockCount the number of total blocks
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            String originServer,
+            String senderUsername,
+            String destinationServer,
+            String recipientUsername,
+            long fileId,
+            String fileName,
+            int blockCount
+        ) {
+            return new FileOpen(
+                originServer,
+                senderUsername,
+                destinationServer,
+                recipientUsername,
+                fileId,
+                fileName,
+                blockCount
+            ).buffer();
         }
 
-        @Override
-        public void accept(FrameVisitor visitor) {
-            Objects.requireNonNull(visitor);
-            visitor.visit(this);
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param originServer the already encoded origin server of the sender
+         * @param senderUsername the already encoded username of the sender
+         * @param destinationServer the destination server of the recipient
+         * @param recipientUsername the username of the recipient
+         * @param fileId the id of the transfer
+         * @param fileName the file name
+         * @param blockCount the number of total blocks
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(
+            EncodedString originServer,
+            EncodedString senderUsername,
+            String destinationServer,
+            String recipientUsername,
+            long fileId,
+            String fileName,
+            int blockCount
+        ) {
+            return new FileOpen(
+                originServer,
+                senderUsername,
+                EncodedString.of(destinationServer),
+                EncodedString.of(recipientUsername),
+                fileId,
+                EncodedString.of(fileName),
+                blockCount
+            ).buffer();
         }
 
         /**
-         * Creates a {@link Reader} for the frame.
+         * Creates a {@link ByteBuffer} in the frame format. The fields that have not been decoded are written as they
+         * were read.
          *
-         * @return the frame as a {@link Reader}
+         * @return the frame as a {@link ByteBuffer}
          */
         public ByteBuffer buffer() {
-            return buffer(
+            return Frame.encode(this);
+        }
+
+        /**
+         * Creates the file open frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the file open frame, or null if its block count is not positive
+         */
+        static FileOpen fromFields(FrameFields fields) {
+            var blockCount = fields.intValue(6);
+            if (blockCount <= 0) {
+                return null;
+            }
+            return new FileOpen(
+                fields.encodedString(0),
+                fields.encodedString(1),
+                fields.encodedString(2),
+                fields.encodedString(3),
+                fields.longValue(4),
+                fields.encodedString(5),
+                blockCount
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileOpen other
+                && originServer.equals(other.originServer)
+                && senderUsername.equals(other.senderUsername)
+                && destinationServer.equals(other.destinationServer)
+                && recipientUsername.equals(other.recipientUsername)
+                && fileId == other.fileId
+                && fileName.equals(other.fileName)
+                && blockCount == other.blockCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
                 originServer,
                 senderUsername,
                 destinationServer,
                 recipientUsername,
                 fileId,
                 fileName,
-                blockCount,
-                block
+                blockCount
             );
         }
+
+        @Override
+        public String toString() {
+            return "FileOpen[originServer=" + originServer
+                + ", senderUsername=" + senderUsername
+                + ", destinationServer=" + destinationServer
+                + ", recipientUsername=" + recipientUsername
+                + ", fileId=" + fileId
+                + ", fileName=" + fileName
+                + ", blockCount=" + blockCount + "]";
+        }
     }
+
+    /**
+     * Frame representing a block of a file transfer previously opened by a {@link FileOpen} frame. It can be sent
+     * from and to a client or a server.
+     */
+    record FileBlock(long fileId, long offset, ByteBuffer block) implements Frame {
+        /**
+         * Constructor.
+         *
+         * @param fileId the id of the transfer
+         * @param offset the offset of the block in the file
+         * @param block the block
+         */
+        public FileBlock {
+            if (offset < 0) {
+                throw new IllegalArgumentException("offset must be positive");
+            }
+            Objects.requireNonNull(block);
+        }
+
+        @Override
+        public void accept(FrameVisitor visitor) {
+            Objects.requireNonNull(visitor);
+            visitor.visit(this);
+        }
+
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FILE_BLOCK;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + block.position();
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @implNote The block of this frame is left untouched.
+         */
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FILE_BLOCK, buffer)
+                .addLong(fileId)
+                .addLong(offset)
+                .addBuffer(block);
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @apiNote The given block is consumed, meaning that after the call its position is 0.
+         *
+         * @param fileId the id of the transfer
+         * @param offset the offset of the block in the file
+         * @param block the block
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(long fileId, long offset, ByteBuffer block) {
+            var buffer = Frame.encode(new FileBlock(fileId, offset, block));
+            block.clear();
+            return buffer;
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @apiNote Unlike {@link #buffer(long, long, ByteBuffer)}, the block of this frame is left untouched.
+         *
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public ByteBuffer buffer() {
+            return Frame.encode(this);
+        }
+
+        /**
+         * Creates the file block frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the file block frame, or null if its offset is negative
+         */
+        static FileBlock fromFields(FrameFields fields) {
+            var offset = fields.longValue(1);
+            if (offset < 0) {
+                return null;
+            }
+            return new FileBlock(fields.longValue(0), offset, fields.bytes(2));
+        }
+    }
+
+    /**
+     * Frame sent back to the sender of a {@link FileOpen} frame whose transfer a server refused to open, because its
+     * id is already used by another transfer or because the sender has too many transfers in progress. It is routed
+     * to the server of the sender as an {@link UnknownRecipient} frame would be.
+     */
+    record FileRefused(String originServer, String senderUsername, long fileId) implements Frame {
+        /**
+         * Constructor.
+         *
+         * @param originServer the name of the server of the sender
+         * @param senderUsername the username of the sender
+         * @param fileId the id of the refused transfer
+         */
+        public FileRefused {
+            Objects.requireNonNull(originServer);
+            Objects.requireNonNull(senderUsername);
+        }
+
+        @Override
+        public void accept(FrameVisitor visitor) {
+            Objects.requireNonNull(visitor);
+            visitor.visit(this);
+        }
+
+        @Override
+        public FrameOpcode opcode() {
+            return FrameOpcode.FILE_REFUSED;
+        }
+
+        @Override
+        public int encodedSize() {
+            return Byte.BYTES + FrameBuilder.sizeOf(originServer) + FrameBuilder.sizeOf(senderUsername) + Long.BYTES;
+        }
+
+        @Override
+        public void encodeTo(ByteBuffer buffer) {
+            Objects.requireNonNull(buffer);
+            new FrameBuilder(FrameOpcode.FILE_REFUSED, buffer)
+                .addString(originServer)
+                .addString(senderUsername)
+                .addLong(fileId);
+        }
+
+        /**
+         * Creates a {@link ByteBuffer} in the frame format.
+         *
+         * @param originServer the name of the server of the sender
+         * @param senderUsername the username of the sender
+         * @param fileId the id of the refused transfer
+         * @return the frame as a {@link ByteBuffer}
+         */
+        public static ByteBuffer buffer(String originServer, String senderUsername, long fileId) {
+            return Frame.encode(new FileRefused(originServer, senderUsername, fileId));
+        }
+
+        /**
+         * Creates the file refused frame from its decoded fields.
+         *
+         * @param fields the fields of the frame, as declared by {@link FrameOpcode#fields()}
+         * @return the file refused frame
+         */
+        static FileRefused fromFields(FrameFields fields) {
+            return new FileRefused(fields.string(0), fields.string(1), fields.longValue(2));
+        }
+    }
+    //endregion
 }
@@ -1,28 +1,120 @@
 package fr.uge.chatfusion.core.frame;
 
-import fr.uge.chatfusion.core.base.BufferUtils;
 import fr.uge.chatfusion.core.base.Charsets;
+import fr.uge.chatfusion.core.base.EncodedString;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Objects;
 
 /**
- * A builder of {@link ByteBuffer}s containing the data of a {@link Frame}.
+ * A builder writing the data of a {@link Frame} in a {@link ByteBuffer}.
+ *
+ * @implNote The builder never grows its buffer: the size of a frame is always computed first, using the
+ * {@code sizeOf} methods, and the frame is then written once, either in a buffer of the exact size (see
+ * {@link #FrameBuilder(FrameOpcode, int)}) or directly in a buffer given by the caller (see
+ * {@link #FrameBuilder(FrameOpcode, ByteBuffer)}). Strings are encoded directly in the buffer.
  */
 final class FrameBuilder {
-    private ByteBuffer buffer = ByteBuffer.allocate(1_024);
+    private final ByteBuffer buffer;
 
     /**
-     * Constructor.
+     * Constructor for a frame written in a new buffer of the exact size of the frame.
      *
      * @param opcode the opcode of the frame
+     * @param payloadSize the size of the frame, without its opcode
      */
-    public FrameBuilder(FrameOpcode opcode) {
+    public FrameBuilder(FrameOpcode opcode, int payloadSize) {
+        Objects.requireNonNull(opcode);
+        if (payloadSize < 0) {
+            throw new IllegalArgumentException("payloadSize must be positive");
+        }
+        buffer = ByteBuffer.allocate(Byte.BYTES + payloadSize);
+        buffer.put(opcode.value());
+    }
+
+    /**
+     * Constructor for a frame written in the given buffer, after its current position.
+     *
+     * @apiNote The buffer must have enough remaining space to hold the whole frame, otherwise a
+     * {@link java.nio.BufferOverflowException} is thrown while writing.
+     *
+     * @param opcode the opcode of the frame
+     * @param buffer the buffer to write to
+     */
+    public FrameBuilder(FrameOpcode opcode, ByteBuffer buffer) {
+        Objects.requireNonNull(opcode);
+        Objects.requireNonNull(buffer);
+        this.buffer = buffer;
         buffer.put(opcode.value());
     }
 
+    /**
+     * Computes the size taken in a frame by the given encoded strings, including their length prefix.
+     *
+     * @param strings the strings
+     * @return the size taken by the strings
+     */
+    public static int sizeOf(EncodedString... strings) {
+        Objects.requireNonNull(strings);
+        var size = 0;
+        for (var string : strings) {
+            size += Integer.BYTES + string.size();
+        }
+        return size;
+    }
+
+    /**
+     * Computes the size taken in a frame by the given string, including its length prefix, without encoding it.
+     *
+     * @param string the string
+     * @return the size taken by the string
+     */
+    public static int sizeOf(String string) {
+        Objects.requireNonNull(string);
+        return Integer.BYTES + encodedLength(string);
+    }
+
+    /**
+     * Computes the size taken in a frame by the given list of strings, including its length prefix.
+     *
+     * @param strings the strings
+     * @return the size taken by the list
+     */
+    public static int sizeOf(List<String> strings) {
+        Objects.requireNonNull(strings);
+        var size = Integer.BYTES;
+        for (var string : strings) {
+            size += sizeOf(string);
+        }
+        return size;
+    }
+
+    /**
+     * Computes the size taken in a frame by the given address.
+     *
+     * @param address the address, an {@link InetSocketAddress} or a {@link UnixDomainSocketAddress}
+     * @return the size taken by the address
+     * @throws IllegalArgumentException if the address is of another type or is unresolved
+     */
+    public static int sizeOf(SocketAddress address) {
+        Objects.requireNonNull(address);
+        if (address instanceof UnixDomainSocketAddress unix) {
+            return Byte.BYTES + sizeOf(unix.getPath().toString());
+        }
+        return Byte.BYTES + inetAddress(address).length + Integer.BYTES;
+    }
+
+    private static byte[] inetAddress(SocketAddress address) {
+        if (!(address instanceof InetSocketAddress inet) || inet.isUnresolved()) {
+            throw new IllegalArgumentException("Unsupported address: " + address);
+        }
+        return inet.getAddress().getAddress();
+    }
+
     /**
      * Adds an integer to the buffer
      *
@@ -30,9 +122,6 @@ final class FrameBuilder {
      * @return this
      */
     public FrameBuilder addInt(int i) {
-        if (Integer.BYTES > buffer.remaining()) {
-            grow();
-        }
         buffer.putInt(i);
         return this;
     }
@@ -48,33 +137,46 @@ final class FrameBuilder {
      */
     public FrameBuilder addString(String string) {
         Objects.requireNonNull(string);
-        var bb = BufferUtils.encodeString(string, Charsets.DEFAULT_CHARSET);
-        bb.flip();
-        if (bb.remaining() > buffer.remaining()) {
-            grow();
-        }
-        buffer.put(bb);
+        buffer.putInt(encodedLength(string));
+        encode(string, buffer);
         return this;
     }
 
     /**
-     * Adds a {@link InetSocketAddress} to the buffer.
+     * Adds an already encoded {@link String} to the buffer, prefixed with its length.
      *
-     * @param address the address to add
+     * @param string the string to add
      * @return this
      */
-    public FrameBuilder addAddress(InetSocketAddress address) {
+    public FrameBuilder addString(EncodedString string) {
+        Objects.requireNonNull(string);
+        string.writeTo(buffer);
+        return this;
+    }
+
+    /**
+     * Adds an address to the buffer.
+     *
+     * @apiNote An {@link InetSocketAddress} is prefixed with the length of its address, 4 or 16, and followed by its
+     * port. A {@link UnixDomainSocketAddress} is prefixed with 0 and its path is added as a {@link String}.
+     *
+     * @param address the address to add, an {@link InetSocketAddress} or a {@link UnixDomainSocketAddress}
+     * @return this
+     * @throws IllegalArgumentException if the address is of another type or is unresolved
+     */
+    public FrameBuilder addAddress(SocketAddress address) {
         Objects.requireNonNull(address);
-        var inet = address.getAddress().getAddress();
+        if (address instanceof UnixDomainSocketAddress unix) {
+            buffer.put((byte) 0);
+            return addString(unix.getPath().toString());
+        }
+        var inet = inetAddress(address);
         if (inet.length != 4 && inet.length != 16) {
             throw new AssertionError("Impossible address length");
         }
-        if (Byte.BYTES + inet.length + Integer.BYTES > buffer.remaining()) {
-            grow();
-        }
         buffer.put((byte) inet.length);
         buffer.put(inet);
-        buffer.putInt(address.getPort());
+        buffer.putInt(((InetSocketAddress) address).getPort());
         return this;
     }
 
@@ -86,32 +188,27 @@ final class FrameBuilder {
      */
     public FrameBuilder addStringList(List<String> strings) {
         Objects.requireNonNull(strings);
-        if (Integer.BYTES > buffer.remaining()) {
-            grow();
-        }
         buffer.putInt(strings.size());
         strings.forEach(this::addString);
         return this;
     }
 
     /**
-     * Adds a {@link ByteBuffer} to the buffer.
+     * Adds the content of a {@link ByteBuffer} to the buffer, prefixed with its length.
      *
-     * @apiNote The given buffer content is consumed meaning that after the call its position will be equal to its
-     * limit.
+     * @apiNote The given buffer is in write mode, its content being located before its position. It is left
+     * untouched.
      *
      * @param buffer the buffer to add
      * @return this
      */
     public FrameBuilder addBuffer(ByteBuffer buffer) {
         Objects.requireNonNull(buffer);
-        while (buffer.position() > this.buffer.remaining()) {
-            grow();
-        }
-        buffer.flip();
-        this.buffer.putInt(buffer.remaining());
-        this.buffer.put(buffer);
-        buffer.compact();
+        var length = buffer.position();
+        var position = this.buffer.position();
+        this.buffer.putInt(length);
+        this.buffer.put(position + Integer.BYTES, buffer, 0, length);
+        this.buffer.position(position + Integer.BYTES + length);
         return this;
     }
 
@@ -122,26 +219,67 @@ final class FrameBuilder {
      * @return this
      */
     public FrameBuilder addLong(long l) {
-        if (Long.BYTES > buffer.remaining()) {
-            grow();
-        }
         buffer.putLong(l);
         return this;
     }
 
     /**
-     * Creates a {@link Frame} from the content of this builder.
+     * Gets the buffer the frame has been written to.
      *
-     * @return the created buffer
+     * @return the buffer
      */
     public ByteBuffer build() {
-        return BufferUtils.copy(buffer);
+        return buffer;
     }
 
-    private void grow() {
-        var bigger = ByteBuffer.allocate(buffer.capacity() * 2);
-        buffer.flip();
-        bigger.put(buffer);
-        buffer = bigger;
+    // both methods below implement the UTF-8 encoding of Charsets.DEFAULT_CHARSET, replacing unpaired surrogates
+    // with '?' as String.getBytes does
+
+    private static int encodedLength(String string) {
+        var length = 0;
+        for (var i = 0; i < string.length(); i++) {
+            var c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)
+                && i + 1 < string.length()
+                && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void encode(String string, ByteBuffer buffer) {
+        for (var i = 0; i < string.length(); i++) {
+            var c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c)
+                && i + 1 < string.length()
+                && Character.isLowSurrogate(string.charAt(i + 1))) {
+                var codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
     }
 }
@@ -0,0 +1,382 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.base.EncodedString;
+import fr.uge.chatfusion.core.base.Sizes;
+import fr.uge.chatfusion.core.base.StringCache;
+import fr.uge.chatfusion.core.reader.Reader;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.InvalidPathException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A reader decoding every frame with a single state machine.
+ * <p>
+ * The decoder reads the opcode, then each field declared by the {@link FrameOpcode#fields() schema} of the frame in
+ * turn: a number is read directly from the buffer when it is complete and byte by byte otherwise, and the bytes of a
+ * string are copied as they arrive, so a frame can be split anywhere between two reads. The fields are kept in two
+ * arrays until the frame is {@link FrameOpcode#frame(FrameFields) created}, without intermediate readers, context
+ * objects nor boxing.
+ * <p>
+ * The schema is shared by every decoder, and the state of a frame being decoded is kept in a scratch taken from a pool
+ * when its first byte is read and given back as soon as it is decoded. A decoder between two frames, as the decoder of
+ * an idle connection, only holds the last frame decoded.
+ *
+ * @implNote Any frame that cannot be built is reported as {@link ProcessStatus#ERROR} rather than with an exception:
+ * an unknown opcode, a negative or too large size, an address of another length than 0, 4 or 16 bytes, an invalid
+ * port or path, a negative offset or hop count. A file block is limited to {@link Sizes#MAX_FILE_BLOCK_SIZE} bytes
+ * before its bytes are read.
+ * <p>
+ * The scratches are pooled per thread, as the decoders of the connections of a selector are all used by its thread.
+ * A scratch given back on another thread than the one it was taken from simply joins the pool of that thread.
+ */
+final class FrameDecoder implements Reader<Frame> {
+    private static final int MAX_FIELDS;
+    static {
+        var maxFields = 0;
+        for (var opcode : FrameOpcode.values()) {
+            maxFields = Math.max(maxFields, opcode.fields().length);
+        }
+        MAX_FIELDS = maxFields;
+    }
+    private static final int MAX_POOLED_SCRATCHES = 64;
+    private static final ThreadLocal<ArrayDeque<Scratch>> SCRATCHES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private Scratch scratch; // only while a frame is partially received
+    private Frame frame;
+    private boolean error;
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        if (frame != null || error) {
+            throw new IllegalStateException("Reader is already done or in error state.");
+        }
+        if (scratch == null && buffer.position() == 0) {
+            return ProcessStatus.REFILL;
+        }
+        buffer.flip();
+        try {
+            if (scratch == null) {
+                scratch = borrow();
+            }
+            var status = scratch.decode(buffer);
+            if (status == ProcessStatus.REFILL) {
+                return status;
+            }
+            frame = scratch.frame;
+            error = status == ProcessStatus.ERROR;
+            release();
+            return status;
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private static Scratch borrow() {
+        var scratch = SCRATCHES.get().pollLast();
+        return scratch == null ? new Scratch() : scratch;
+    }
+
+    private void release() {
+        scratch.clear();
+        var scratches = SCRATCHES.get();
+        if (scratches.size() < MAX_POOLED_SCRATCHES) {
+            scratches.addLast(scratch);
+        }
+        scratch = null;
+    }
+
+    @Override
+    public Frame get() {
+        if (frame == null) {
+            throw new IllegalStateException("Reader is not done.");
+        }
+        return frame;
+    }
+
+    @Override
+    public void reset() {
+        if (scratch != null) {
+            release();
+        }
+        frame = null;
+        error = false;
+    }
+
+    // the state of a frame being decoded, which gives its fields to its opcode once they are all read
+    private static final class Scratch implements FrameFields {
+        private final byte[] text = new byte[Sizes.MAX_MESSAGE_SIZE];
+        private final Object[] objects = new Object[MAX_FIELDS];
+        private final long[] numbers = new long[MAX_FIELDS];
+        private FrameOpcode opcode;
+        private FieldKind[] layout;
+        private int field;
+        private boolean sized; // whether the size of the current field has been read
+        private boolean path; // whether the current address is the path of a Unix domain socket
+        private long number;
+        private long partial;
+        private int partialBytes;
+        private byte[] bytes;
+        private int size;
+        private int filled;
+        private ArrayList<String> strings;
+        private int remainingStrings;
+        private Object value;
+        private Frame frame;
+
+        private ProcessStatus decode(ByteBuffer buffer) {
+            if (opcode == null) {
+                if (!buffer.hasRemaining()) {
+                    return ProcessStatus.REFILL;
+                }
+                opcode = FrameOpcode.lookup(buffer.get());
+                if (opcode == null) {
+                    return ProcessStatus.ERROR;
+                }
+                layout = opcode.fields();
+            }
+
+            while (field < layout.length) {
+                var status = switch (layout[field]) {
+                    case INT -> number(buffer, Integer.BYTES);
+                    case LONG -> number(buffer, Long.BYTES);
+                    case STRING -> string(buffer, true);
+                    case ENCODED_STRING -> string(buffer, false);
+                    case ADDRESS -> address(buffer);
+                    case STRING_LIST -> stringList(buffer);
+                    case BYTES -> bytes(buffer);
+                };
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                objects[field] = value;
+                numbers[field] = number;
+                value = null;
+                sized = false;
+                field++;
+            }
+
+            frame = opcode.frame(this);
+            return frame == null ? ProcessStatus.ERROR : ProcessStatus.DONE;
+        }
+
+        // reads a big-endian number, byte by byte if it is split between several buffers
+        private ProcessStatus number(ByteBuffer buffer, int length) {
+            if (partialBytes == 0 && buffer.remaining() >= length) {
+                number = switch (length) {
+                    case Byte.BYTES -> buffer.get();
+                    case Integer.BYTES -> buffer.getInt();
+                    default -> buffer.getLong();
+                };
+                return ProcessStatus.DONE;
+            }
+            while (partialBytes < length) {
+                if (!buffer.hasRemaining()) {
+                    return ProcessStatus.REFILL;
+                }
+                partial = partial << Byte.SIZE | Byte.toUnsignedInt(buffer.get());
+                partialBytes++;
+            }
+            number = switch (length) {
+                case Byte.BYTES -> (byte) partial;
+                case Integer.BYTES -> (int) partial;
+                default -> partial;
+            };
+            partial = 0;
+            partialBytes = 0;
+            return ProcessStatus.DONE;
+        }
+
+        // reads a string prefixed by its size, decoded with the default cache as the string readers do
+        private ProcessStatus string(ByteBuffer buffer, boolean decode) {
+            if (bytes == null) {
+                var status = number(buffer, Integer.BYTES);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                if (number < 0 || number > Sizes.MAX_MESSAGE_SIZE) {
+                    return ProcessStatus.ERROR;
+                }
+                // the array of an encoded string is handed to it, so it is allocated with the exact size
+                startBytes(decode ? text : new byte[(int) number], (int) number);
+            }
+            if (!fill(buffer)) {
+                return ProcessStatus.REFILL;
+            }
+            value = decode ? StringCache.defaultCache().decode(bytes, 0, size) : EncodedString.wrap(bytes);
+            bytes = null;
+            return ProcessStatus.DONE;
+        }
+
+        private ProcessStatus address(ByteBuffer buffer) {
+            if (!sized) {
+                var status = number(buffer, Byte.BYTES);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                if (number == 0) {
+                    path = true;
+                } else if (number == 4 || number == 16) {
+                    startBytes(new byte[(int) number], (int) number);
+                } else {
+                    return ProcessStatus.ERROR;
+                }
+                sized = true;
+            }
+            if (path) {
+                var status = string(buffer, true);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                path = false;
+                try {
+                    value = UnixDomainSocketAddress.of((String) value);
+                } catch (InvalidPathException e) {
+                    return ProcessStatus.ERROR;
+                }
+                return ProcessStatus.DONE;
+            }
+            if (bytes != null) {
+                if (!fill(buffer)) {
+                    return ProcessStatus.REFILL;
+                }
+                try {
+                    value = InetAddress.getByAddress(bytes);
+                } catch (UnknownHostException e) {
+                    throw new AssertionError(e); // the length has been checked
+                }
+                bytes = null;
+            }
+            var status = number(buffer, Integer.BYTES);
+            if (status != ProcessStatus.DONE) {
+                return status;
+            }
+            if (number < 0 || number > 0xFFFF) {
+                return ProcessStatus.ERROR;
+            }
+            value = new InetSocketAddress((InetAddress) value, (int) number);
+            return ProcessStatus.DONE;
+        }
+
+        private ProcessStatus stringList(ByteBuffer buffer) {
+            if (!sized) {
+                var status = number(buffer, Integer.BYTES);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                if (number < 0) {
+                    return ProcessStatus.ERROR;
+                }
+                // the list grows with the strings actually received, whatever the announced count
+                strings = new ArrayList<>();
+                remainingStrings = (int) number;
+                sized = true;
+            }
+            while (remainingStrings > 0) {
+                var status = string(buffer, true);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                strings.add((String) value);
+                remainingStrings--;
+            }
+            value = strings;
+            strings = null;
+            return ProcessStatus.DONE;
+        }
+
+        private ProcessStatus bytes(ByteBuffer buffer) {
+            if (bytes == null) {
+                var status = number(buffer, Integer.BYTES);
+                if (status != ProcessStatus.DONE) {
+                    return status;
+                }
+                if (number < 0 || number > Sizes.MAX_FILE_BLOCK_SIZE) {
+                    return ProcessStatus.ERROR;
+                }
+                startBytes(new byte[(int) number], (int) number);
+            }
+            if (!fill(buffer)) {
+                return ProcessStatus.REFILL;
+            }
+            // in write mode, as the buffers of the frames
+            value = ByteBuffer.wrap(bytes).position(size);
+            bytes = null;
+            return ProcessStatus.DONE;
+        }
+
+        private void startBytes(byte[] destination, int length) {
+            bytes = destination;
+            size = length;
+            filled = 0;
+        }
+
+        private boolean fill(ByteBuffer buffer) {
+            var count = Math.min(size - filled, buffer.remaining());
+            buffer.get(bytes, filled, count);
+            filled += count;
+            return filled == size;
+        }
+
+        @Override
+        public int intValue(int index) {
+            return (int) numbers[index];
+        }
+
+        @Override
+        public long longValue(int index) {
+            return numbers[index];
+        }
+
+        @Override
+        public String string(int index) {
+            return (String) objects[index];
+        }
+
+        @Override
+        public EncodedString encodedString(int index) {
+            return (EncodedString) objects[index];
+        }
+
+        @Override
+        public SocketAddress address(int index) {
+            return (SocketAddress) objects[index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<String> stringList(int index) {
+            return (List<String>) objects[index];
+        }
+
+        @Override
+        public ByteBuffer bytes(int index) {
+            return (ByteBuffer) objects[index];
+        }
+
+        private void clear() {
+            Arrays.fill(objects, null);
+            opcode = null;
+            layout = null;
+            field = 0;
+            sized = false;
+            path = false;
+            partial = 0;
+            partialBytes = 0;
+            bytes = null;
+            strings = null;
+            value = null;
+            frame = null;
+        }
+    }
+}
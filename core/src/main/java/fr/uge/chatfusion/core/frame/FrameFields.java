@@ -0,0 +1,69 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.base.EncodedString;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The decoded fields of a frame, accessed by their index in the fields declared by its {@link FrameOpcode}. Each
+ * field must be accessed with the method of its {@link FieldKind}.
+ */
+interface FrameFields {
+    /**
+     * Gets an {@link FieldKind#INT} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    int intValue(int index);
+
+    /**
+     * Gets a {@link FieldKind#LONG} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    long longValue(int index);
+
+    /**
+     * Gets a {@link FieldKind#STRING} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    String string(int index);
+
+    /**
+     * Gets an {@link FieldKind#ENCODED_STRING} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    EncodedString encodedString(int index);
+
+    /**
+     * Gets an {@link FieldKind#ADDRESS} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    SocketAddress address(int index);
+
+    /**
+     * Gets a {@link FieldKind#STRING_LIST} field.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    List<String> stringList(int index);
+
+    /**
+     * Gets a {@link FieldKind#BYTES} field, as a buffer in write mode.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    ByteBuffer bytes(int index);
+}
@@ -1,95 +1,245 @@
 package fr.uge.chatfusion.core.frame;
 
 
-import fr.uge.chatfusion.core.reader.Reader;
-
-import java.util.Arrays;
-import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * The opcodes representing the different frames used in the Chatfusion protocol.
+ * <p>
+ * Each opcode declares the schema of its frame: the {@link FieldKind kinds} of its fields in the order they are
+ * encoded, and how the frame is created from them. The {@link FrameDecoder} decodes every frame from its schema.
  */
-enum FrameOpcode {
+public enum FrameOpcode {
     /**
      * The opcode for the {@link Frame.AnonymousLogin} frame.
      */
-    ANONYMOUS_LOGIN(0, Frame.AnonymousLogin::reader),
+    ANONYMOUS_LOGIN(
+        0,
+        Frame.AnonymousLogin.class,
+        Frame.AnonymousLogin::fromFields,
+        FieldKind.STRING
+    ),
 
     /**
      * The opcode for the {@link Frame.LoginAccepted} frame.
      */
-    LOGIN_ACCEPTED(2, Frame.LoginAccepted::reader),
+    LOGIN_ACCEPTED(
+        2,
+        Frame.LoginAccepted.class,
+        Frame.LoginAccepted::fromFields,
+        FieldKind.STRING
+    ),
 
     /**
      * The opcode for the {@link Frame.LoginRefused} frame.
      */
-    LOGIN_REFUSED(3, Frame.LoginRefused::reader),
+    LOGIN_REFUSED(3, Frame.LoginRefused.class, Frame.LoginRefused::fromFields),
 
     /**
      * The opcode for the {@link Frame.PublicMessage} frame.
      */
-    PUBLIC_MESSAGE(4, Frame.PublicMessage::reader),
+    PUBLIC_MESSAGE(
+        4,
+        Frame.PublicMessage.class,
+        Frame.PublicMessage::fromFields,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.STRING
+    ),
 
     /**
      * The opcode for the {@link Frame.DirectMessage} frame.
      */
-    DIRECT_MESSAGE(5, Frame.DirectMessage::reader),
+    DIRECT_MESSAGE(
+        5,
+        Frame.DirectMessage.class,
+        Frame.DirectMessage::fromFields,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING
+    ),
 
     /**
-     * The opcode for the {@link Frame.FileSending} frame.
+     * The opcode for the {@link Frame.FileOpen} frame.
      */
-    FILE_SENDING(6, Frame.FileSending::buffer),
+    FILE_OPEN(
+        6,
+        Frame.FileOpen.class,
+        Frame.FileOpen::fromFields,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.ENCODED_STRING,
+        FieldKind.LONG,
+        FieldKind.ENCODED_STRING,
+        FieldKind.INT
+    ),
+
+    /**
+     * The opcode for the {@link Frame.FileBlock} frame.
+     */
+    FILE_BLOCK(
+        7,
+        Frame.FileBlock.class,
+        Frame.FileBlock::fromFields,
+        FieldKind.LONG,
+        FieldKind.LONG,
+        FieldKind.BYTES
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionInit} frame.
      */
-    FUSION_INIT(8, Frame.FusionInit::reader),
+    FUSION_INIT(
+        8,
+        Frame.FusionInit.class,
+        Frame.FusionInit::fromFields,
+        FieldKind.STRING,
+        FieldKind.ADDRESS,
+        FieldKind.STRING_LIST
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionInitOk} frame.
      */
-    FUSION_INIT_OK(9, Frame.FusionInitOk::reader),
+    FUSION_INIT_OK(
+        9,
+        Frame.FusionInitOk.class,
+        Frame.FusionInitOk::fromFields,
+        FieldKind.STRING,
+        FieldKind.ADDRESS,
+        FieldKind.STRING_LIST
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionInitKo} frame.
      */
-    FUSION_INIT_KO(10, Frame.FusionInitKo::reader),
+    FUSION_INIT_KO(10, Frame.FusionInitKo.class, Frame.FusionInitKo::fromFields),
 
     /**
      * The opcode for the {@link Frame.FusionInitOk} frame.
      */
-    FUSION_INIT_FWD(11, Frame.FusionInitFwd::reader),
+    FUSION_INIT_FWD(
+        11,
+        Frame.FusionInitFwd.class,
+        Frame.FusionInitFwd::fromFields,
+        FieldKind.ADDRESS
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionRequest} frame.
      */
-    FUSION_REQUEST(12, Frame.FusionRequest::reader),
+    FUSION_REQUEST(
+        12,
+        Frame.FusionRequest.class,
+        Frame.FusionRequest::fromFields,
+        FieldKind.ADDRESS
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionChangeLeader} frame.
      */
-    FUSION_CHANGE_LEADER(14, Frame.FusionChangeLeader::reader),
+    FUSION_CHANGE_LEADER(
+        14,
+        Frame.FusionChangeLeader.class,
+        Frame.FusionChangeLeader::fromFields,
+        FieldKind.STRING,
+        FieldKind.ADDRESS
+    ),
 
     /**
      * The opcode for the {@link Frame.FusionMerge} frame.
      */
-    FUSION_MERGE(15, Frame.FusionMerge::reader),
+    FUSION_MERGE(
+        15,
+        Frame.FusionMerge.class,
+        Frame.FusionMerge::fromFields,
+        FieldKind.STRING
+    ),
+
+    /**
+     * The opcode for a {@link Frame.PublicMessage} frame carrying a {@link Trace}.
+     */
+    TRACED_PUBLIC_MESSAGE(
+        16,
+        Frame.PublicMessage.class,
+        Frame.PublicMessage::fromTracedFields,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.LONG,
+        FieldKind.INT
+    ),
+
+    /**
+     * The opcode for the {@link Frame.DirectoryUpdate} frame.
+     */
+    DIRECTORY_UPDATE(
+        17,
+        Frame.DirectoryUpdate.class,
+        Frame.DirectoryUpdate::fromFields,
+        FieldKind.STRING,
+        FieldKind.BYTES
+    ),
+
+    /**
+     * The opcode for the {@link Frame.UnknownRecipient} frame.
+     */
+    UNKNOWN_RECIPIENT(
+        18,
+        Frame.UnknownRecipient.class,
+        Frame.UnknownRecipient::fromFields,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.STRING
+    ),
+
+    /**
+     * The opcode for the {@link Frame.FileRefused} frame.
+     */
+    FILE_REFUSED(
+        19,
+        Frame.FileRefused.class,
+        Frame.FileRefused::fromFields,
+        FieldKind.STRING,
+        FieldKind.STRING,
+        FieldKind.LONG
+    ),
 
     ;
 
+    private static final FrameOpcode[] BY_VALUE = new FrameOpcode[256];
+    static {
+        for (var opcode : values()) {
+            BY_VALUE[Byte.toUnsignedInt(opcode.value)] = opcode;
+        }
+    }
+
     private final byte value;
-    private final Function<FrameReaderPart, Reader<? extends Frame>> readerConstructor;
+    private final Class<? extends Frame> type;
+    private final Function<FrameFields, ? extends Frame> factory;
+    private final FieldKind[] fields;
 
-    FrameOpcode(int value, Function<FrameReaderPart, Reader<? extends Frame>> readerConstructor) {
+    FrameOpcode(
+        int value,
+        Class<? extends Frame> type,
+        Function<FrameFields, ? extends Frame> factory,
+        FieldKind... fields
+    ) {
         if (value < 0 || value > 255) {
             throw new IllegalArgumentException("Opcode must be between 0 and 255");
         }
-        Objects.requireNonNull(readerConstructor);
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(fields);
         this.value = (byte) value;
-        this.readerConstructor = readerConstructor;
+        this.type = type;
+        this.factory = factory;
+        this.fields = fields;
     }
 
     /**
@@ -99,7 +249,7 @@ enum FrameOpcode {
      * @return the enum label corresponding to the given byte opcode
      */
     public static FrameOpcode get(byte value) {
-        var code = map.get(value);
+        var code = lookup(value);
         if (code == null) {
             throw new IllegalArgumentException("Unknown opcode: " + value);
         }
@@ -107,20 +257,46 @@ enum FrameOpcode {
     }
 
     /**
-     * Creates a reader which reads the frame of the given opcode.
+     * Gets the enum label corresponding to the given byte opcode, without throwing for an unknown opcode.
+     *
+     * @implNote The labels are looked up in a table indexed by the 256 byte values.
      *
-     * @param part the different parts used to create the reader
-     * @return a reader which reads the frame of the given opcode
+     * @param value the byte opcode
+     * @return the enum label corresponding to the given byte opcode, or null if the opcode is unknown
      */
-    @SuppressWarnings("unchecked")
-    public Reader<Frame> reader(FrameReaderPart part) {
-        Objects.requireNonNull(part);
-        return (Reader<Frame>) readerConstructor.apply(part);
+    public static FrameOpcode lookup(byte value) {
+        return BY_VALUE[Byte.toUnsignedInt(value)];
     }
 
-    private static final Map<Byte, FrameOpcode> map;
-    static {
-        map = Arrays.stream(FrameOpcode.values()).collect(Collectors.toUnmodifiableMap(e -> e.value, e -> e));
+    /**
+     * Gets the class of the frames of the opcode.
+     *
+     * @return the class of the frames
+     */
+    Class<? extends Frame> type() {
+        return type;
+    }
+
+    /**
+     * Gets the kinds of the fields of the frame, in the order they are encoded.
+     *
+     * @apiNote The array is not copied, it must not be modified.
+     *
+     * @return the kinds of the fields of the frame
+     */
+    FieldKind[] fields() {
+        return fields;
+    }
+
+    /**
+     * Creates the frame of the opcode from its decoded fields.
+     *
+     * @param fields the fields of the frame, as declared by {@link #fields()}
+     * @return the frame, or null if the fields do not make a valid frame
+     */
+    Frame frame(FrameFields fields) {
+        Objects.requireNonNull(fields);
+        return factory.apply(fields);
     }
 
     /**
@@ -118,7 +118,43 @@ public interface FrameVisitor {
      *
      * @param frame the frame to visit
      */
-    default void visit(Frame.FileSending frame) {
+    default void visit(Frame.FileOpen frame) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Visits the given frame.
+     *
+     * @param frame the frame to visit
+     */
+    default void visit(Frame.FileBlock frame) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Visits the given frame.
+     *
+     * @param frame the frame to visit
+     */
+    default void visit(Frame.DirectoryUpdate frame) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Visits the given frame.
+     *
+     * @param frame the frame to visit
+     */
+    default void visit(Frame.UnknownRecipient frame) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Visits the given frame.
+     *
+     * @param frame the frame to visit
+     */
+    default void visit(Frame.FileRefused frame) {
         throw new UnsupportedOperationException();
     }
 }
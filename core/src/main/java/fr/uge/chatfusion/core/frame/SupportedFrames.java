@@ -0,0 +1,55 @@
+package fr.uge.chatfusion.core.frame;
+
+import java.util.Objects;
+
+/**
+ * The frames supported by a {@link FrameVisitor}: those whose {@code visit} method it overrides, the default methods
+ * throwing an {@link UnsupportedOperationException}.
+ * <p>
+ * Knowing whether a frame is supported is an array access, which allows to reject the frames a visitor does not
+ * support without visiting them and catching the exception.
+ *
+ * @implNote The supported frames are found by reflection the first time a class of visitor is given, then cached.
+ */
+public final class SupportedFrames {
+    private static final ClassValue<SupportedFrames> CACHE = new ClassValue<>() {
+        @Override
+        protected SupportedFrames computeValue(Class<?> type) {
+            return new SupportedFrames(type);
+        }
+    };
+
+    private final boolean[] supported = new boolean[FrameOpcode.values().length];
+
+    private SupportedFrames(Class<?> visitorClass) {
+        for (var opcode : FrameOpcode.values()) {
+            try {
+                var method = visitorClass.getMethod("visit", opcode.type());
+                supported[opcode.ordinal()] = method.getDeclaringClass() != FrameVisitor.class;
+            } catch (NoSuchMethodException e) {
+                throw new AssertionError("No visit method for " + opcode, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the frames supported by the given visitor.
+     *
+     * @param visitor the visitor
+     * @return the frames supported by the visitor
+     */
+    public static SupportedFrames of(FrameVisitor visitor) {
+        Objects.requireNonNull(visitor);
+        return CACHE.get(visitor.getClass());
+    }
+
+    /**
+     * Tells whether the frames of the given opcode are supported.
+     *
+     * @param opcode the opcode of the frames
+     * @return true if the visitor overrides the method visiting the frames of the opcode
+     */
+    public boolean contains(FrameOpcode opcode) {
+        return supported[opcode.ordinal()];
+    }
+}
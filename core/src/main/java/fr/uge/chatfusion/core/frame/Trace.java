@@ -0,0 +1,71 @@
+package fr.uge.chatfusion.core.frame;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The optional trace extension of a {@link Frame.PublicMessage}: the time at which the message was sent and the
+ * number of servers it went through since.
+ *
+ * @apiNote The timestamps are wall-clock times, so the latencies measured between two machines are only as precise
+ * as the synchronization of their clocks.
+ *
+ * @param sendTimestamp the time at which the message was sent, in microseconds since the epoch
+ * @param hopCount the number of servers the message went through since it was sent
+ */
+public record Trace(long sendTimestamp, int hopCount) {
+    // the wall clock is only read once, the current time is then derived from the monotonic clock without allocating
+    private static final long ORIGIN_MICROS = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param sendTimestamp the time at which the message was sent, in microseconds since the epoch
+     * @param hopCount the number of servers the message went through since it was sent
+     */
+    public Trace {
+        if (hopCount < 0) {
+            throw new IllegalArgumentException("hopCount must be positive");
+        }
+    }
+
+    /**
+     * Creates the trace of a message sent now.
+     *
+     * @return the trace
+     */
+    public static Trace start() {
+        return new Trace(currentTimeMicros(), 0);
+    }
+
+    /**
+     * Gets the current time, in microseconds since the epoch.
+     *
+     * @return the current time
+     */
+    public static long currentTimeMicros() {
+        return ORIGIN_MICROS + (System.nanoTime() - ORIGIN_NANOS) / 1_000;
+    }
+
+    /**
+     * Creates the trace of the message once it reached the next server.
+     *
+     * @return the trace with one more hop, or this trace if its hop count is already {@link Integer#MAX_VALUE}
+     */
+    public Trace nextHop() {
+        if (hopCount == Integer.MAX_VALUE) {
+            return this;
+        }
+        return new Trace(sendTimestamp, hopCount + 1);
+    }
+
+    /**
+     * Gets the time elapsed since the message was sent.
+     *
+     * @return the elapsed time, in microseconds, or 0 if the clock of the sender is ahead
+     */
+    public long elapsedMicros() {
+        return Math.max(0, currentTimeMicros() - sendTimestamp);
+    }
+}
@@ -0,0 +1,236 @@
+package fr.uge.chatfusion.core.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Writes log entries from a background thread.
+ * <p>
+ * The entries are stored in a fixed-size ring buffer of reusable slots, so publishing an entry never allocates and
+ * never waits for the output: when the buffer is full, the entry is dropped and the number of dropped entries is
+ * logged once there is room again.
+ *
+ * @implNote The background thread copies the published entries under the lock and formats them after releasing it,
+ * so the publishers are only ever blocked by a few field copies.
+ */
+public final class AsyncAppender {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final AsyncAppender DEFAULT = createDefault();
+
+    private final Object lock = new Object();
+    private final Entry[] entries;
+    private final Consumer<? super String> sink;
+    private long head;
+    private long tail;
+    private long written;
+    private long dropped;
+
+    /**
+     * Creates an appender and starts its background thread.
+     *
+     * @param capacity the maximal number of entries waiting to be written
+     * @param sink the consumer of the formatted entries, called by the background thread
+     */
+    public AsyncAppender(int capacity, Consumer<? super String> sink) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        Objects.requireNonNull(sink);
+        this.entries = newEntries(capacity);
+        this.sink = sink;
+        var thread = new Thread(this::run, "Log appender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the appender used by default, writing to the standard error. The pending entries are flushed when the
+     * virtual machine shuts down.
+     *
+     * @return the default appender
+     */
+    public static AsyncAppender defaultAppender() {
+        return DEFAULT;
+    }
+
+    private static AsyncAppender createDefault() {
+        var appender = new AsyncAppender(DEFAULT_CAPACITY, System.err::println);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> appender.flush(1_000), "Log appender flush"));
+        return appender;
+    }
+
+    private static Entry[] newEntries(int capacity) {
+        var entries = new Entry[capacity];
+        for (var i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+        }
+        return entries;
+    }
+
+    /**
+     * Waits until every entry published before the call has been written.
+     *
+     * @param timeoutMillis the maximal time to wait, in milliseconds
+     * @return true if every entry has been written, false if the timeout elapsed before
+     */
+    public boolean flush(long timeoutMillis) {
+        var deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            var target = tail;
+            while (written < target) {
+                var remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    boolean publish(
+        Level level,
+        String logger,
+        String message,
+        Throwable error,
+        String key1,
+        Object value1,
+        String key2,
+        Object value2
+    ) {
+        var timestamp = System.currentTimeMillis();
+        synchronized (lock) {
+            if (tail - head == entries.length) {
+                dropped++;
+                return false;
+            }
+            entries[(int) (tail % entries.length)].set(
+                timestamp, level, logger, message, error, key1, value1, key2, value2);
+            if (tail++ == head) {
+                lock.notifyAll();
+            }
+            return true;
+        }
+    }
+
+    private void run() {
+        var batch = newEntries(entries.length);
+        var builder = new StringBuilder();
+        for (;;) {
+            int count;
+            long lost;
+            synchronized (lock) {
+                while (head == tail && dropped == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                count = (int) (tail - head);
+                for (var i = 0; i < count; i++) {
+                    var entry = entries[(int) ((head + i) % entries.length)];
+                    batch[i].copy(entry);
+                    entry.clear();
+                }
+                head = tail;
+                lost = dropped;
+                dropped = 0;
+            }
+
+            for (var i = 0; i < count; i++) {
+                builder.setLength(0);
+                batch[i].format(builder);
+                batch[i].clear();
+                sink.accept(builder.toString());
+            }
+            // the entries were dropped after the ones of the batch were published
+            if (lost != 0) {
+                sink.accept(Instant.now() + " WARNING AsyncAppender: " + lost + " log entries dropped");
+            }
+
+            synchronized (lock) {
+                written += count;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private long timestamp;
+        private Level level;
+        private String logger;
+        private String message;
+        private Throwable error;
+        private String key1;
+        private Object value1;
+        private String key2;
+        private Object value2;
+
+        void set(
+            long timestamp,
+            Level level,
+            String logger,
+            String message,
+            Throwable error,
+            String key1,
+            Object value1,
+            String key2,
+            Object value2
+        ) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.message = message;
+            this.error = error;
+            this.key1 = key1;
+            this.value1 = value1;
+            this.key2 = key2;
+            this.value2 = value2;
+        }
+
+        void copy(Entry entry) {
+            set(entry.timestamp, entry.level, entry.logger, entry.message, entry.error,
+                entry.key1, entry.value1, entry.key2, entry.value2);
+        }
+
+        void clear() {
+            set(0, null, null, null, null, null, null, null, null);
+        }
+
+        void format(StringBuilder builder) {
+            builder.append(Instant.ofEpochMilli(timestamp)).append(' ')
+                .append(level).append(' ')
+                .append(logger).append(": ")
+                .append(message);
+            appendField(builder, key1, value1);
+            appendField(builder, key2, value2);
+            if (error != null) {
+                var writer = new StringWriter();
+                error.printStackTrace(new PrintWriter(writer));
+                builder.append('\n').append(writer.toString().stripTrailing());
+            }
+        }
+
+        private static void appendField(StringBuilder builder, String key, Object value) {
+            if (key == null) {
+                return;
+            }
+            var text = String.valueOf(value);
+            builder.append(' ').append(key).append('=');
+            if (text.isEmpty() || text.chars().anyMatch(c -> c == ' ' || c == '"' || c == '=')) {
+                builder.append('"').append(text.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                builder.append(text);
+            }
+        }
+    }
+}
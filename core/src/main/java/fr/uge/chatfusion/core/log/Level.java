@@ -0,0 +1,38 @@
+package fr.uge.chatfusion.core.log;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The levels of the log entries, from the least to the most important.
+ */
+public enum Level {
+    /**
+     * Detailed information, only useful while debugging.
+     */
+    FINE,
+    /**
+     * Normal events of the application.
+     */
+    INFO,
+    /**
+     * Unexpected events the application recovers from.
+     */
+    WARNING,
+    /**
+     * Errors, usually caused by a misbehaving remote.
+     */
+    SEVERE;
+
+    /**
+     * Parses a level from its name, ignoring the case.
+     *
+     * @param name the name of the level
+     * @return the level
+     * @throws IllegalArgumentException if no level has the given name
+     */
+    public static Level parse(String name) {
+        Objects.requireNonNull(name);
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,136 @@
+package fr.uge.chatfusion.core.log;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A logger publishing its entries to an {@link AsyncAppender}.
+ * <p>
+ * The level is checked before anything else, so logging at a disabled level does not allocate nor format anything.
+ * Variable parts of a message are given as key/value fields rather than concatenated to it: the values are only
+ * converted to strings by the thread of the appender.
+ * <pre>{@code
+ * LOGGER.log(Level.INFO, "Connection closed", "remote", address);
+ * }</pre>
+ * The levels enabled by default are {@link Level#INFO} and above, this can be changed with the
+ * {@value #LEVEL_PROPERTY} system property or with {@link #setLevel(Level)}.
+ *
+ * @apiNote The values of the fields are kept until the entry is written, they should be immutable.
+ */
+public final class Logger {
+    /**
+     * The name of the system property giving the minimal level of the entries to log.
+     */
+    public static final String LEVEL_PROPERTY = "fr.uge.chatfusion.log.level";
+
+    private static volatile Level threshold = Level.parse(System.getProperty(LEVEL_PROPERTY, Level.INFO.name()));
+
+    private final String name;
+    private final AsyncAppender appender;
+
+    Logger(String name, AsyncAppender appender) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(appender);
+        this.name = name;
+        this.appender = appender;
+    }
+
+    /**
+     * Gets a logger named after the given class, publishing to the {@link AsyncAppender#defaultAppender() default
+     * appender}.
+     *
+     * @param type the class using the logger
+     * @return the logger
+     */
+    public static Logger getLogger(Class<?> type) {
+        Objects.requireNonNull(type);
+        return new Logger(type.getSimpleName(), AsyncAppender.defaultAppender());
+    }
+
+    /**
+     * Sets the minimal level of the entries to log, for every logger.
+     *
+     * @param level the minimal level
+     */
+    public static void setLevel(Level level) {
+        Objects.requireNonNull(level);
+        threshold = level;
+    }
+
+    /**
+     * Checks whether the entries of the given level are logged.
+     *
+     * @param level the level
+     * @return true if the entries of the given level are logged
+     */
+    public boolean isLoggable(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    /**
+     * Logs a message.
+     *
+     * @param level the level of the entry
+     * @param message the message
+     */
+    public void log(Level level, String message) {
+        if (isLoggable(level)) {
+            appender.publish(level, name, message, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a message with one field.
+     *
+     * @param level the level of the entry
+     * @param message the message
+     * @param key the name of the field
+     * @param value the value of the field
+     */
+    public void log(Level level, String message, String key, Object value) {
+        if (isLoggable(level)) {
+            appender.publish(level, name, message, null, key, value, null, null);
+        }
+    }
+
+    /**
+     * Logs a message with two fields.
+     *
+     * @param level the level of the entry
+     * @param message the message
+     * @param key1 the name of the first field
+     * @param value1 the value of the first field
+     * @param key2 the name of the second field
+     * @param value2 the value of the second field
+     */
+    public void log(Level level, String message, String key1, Object value1, String key2, Object value2) {
+        if (isLoggable(level)) {
+            appender.publish(level, name, message, null, key1, value1, key2, value2);
+        }
+    }
+
+    /**
+     * Logs a message and the exception that caused it.
+     *
+     * @param level the level of the entry
+     * @param message the message
+     * @param error the exception
+     */
+    public void log(Level level, String message, Throwable error) {
+        if (isLoggable(level)) {
+            appender.publish(level, name, message, error, null, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a message built by the given supplier, which is only called if the level is enabled.
+     *
+     * @param level the level of the entry
+     * @param message the supplier of the message
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (isLoggable(level)) {
+            appender.publish(level, name, message.get(), null, null, null, null, null);
+        }
+    }
+}
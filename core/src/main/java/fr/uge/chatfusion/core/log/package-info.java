@@ -0,0 +1,6 @@
+/**
+ * Defines a small logging facade meant to be used on the selection threads: disabled levels cost a single check, the
+ * messages are structured as a constant text and key/value fields formatted later, and the entries are written by
+ * a background thread.
+ */
+package fr.uge.chatfusion.core.log;
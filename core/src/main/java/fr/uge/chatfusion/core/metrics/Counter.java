@@ -0,0 +1,44 @@
+package fr.uge.chatfusion.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter.
+ *
+ * @implNote The counter is backed by a {@link LongAdder}, so it can be updated by several threads without
+ * contention and without allocating.
+ */
+public final class Counter {
+    private final LongAdder adder = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        adder.increment();
+    }
+
+    /**
+     * Adds the given amount to the counter.
+     *
+     * @param amount the amount to add, must be positive
+     */
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        adder.add(amount);
+    }
+
+    /**
+     * Gets the current value of the counter.
+     *
+     * @return the current value of the counter
+     */
+    public long value() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,47 @@
+package fr.uge.chatfusion.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that can go up and down, such as the number of open connections.
+ *
+ * @implNote As {@link Counter}, the gauge is backed by a {@link LongAdder}.
+ */
+public final class Gauge {
+    private final LongAdder adder = new LongAdder();
+
+    Gauge() {
+    }
+
+    /**
+     * Increments the gauge by one.
+     */
+    public void increment() {
+        adder.increment();
+    }
+
+    /**
+     * Decrements the gauge by one.
+     */
+    public void decrement() {
+        adder.decrement();
+    }
+
+    /**
+     * Adds the given amount, which may be negative, to the gauge.
+     *
+     * @param amount the amount to add
+     */
+    public void add(long amount) {
+        adder.add(amount);
+    }
+
+    /**
+     * Gets the current value of the gauge.
+     *
+     * @return the current value of the gauge
+     */
+    public long value() {
+        return adder.sum();
+    }
+}
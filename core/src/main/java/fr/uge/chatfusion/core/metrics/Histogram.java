@@ -0,0 +1,117 @@
+package fr.uge.chatfusion.core.metrics;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram counting values in fixed buckets.
+ *
+ * @implNote A bucket is identified by its inclusive upper bound, the last bucket counting the values greater than
+ * every bound. Each bucket is a {@link LongAdder}, so recording a value never allocates.
+ */
+public final class Histogram {
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    Histogram(long[] bounds) {
+        Objects.requireNonNull(bounds);
+        for (var i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("bounds must be strictly increasing");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (var i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates the bounds 1, 2, 4, ... up to 2^(count - 1), suitable for sizes and counts.
+     *
+     * @param count the number of bounds
+     * @return the bounds
+     */
+    public static long[] exponentialBounds(int count) {
+        if (count <= 0 || count >= Long.SIZE) {
+            throw new IllegalArgumentException("count must be between 1 and " + (Long.SIZE - 1));
+        }
+        var bounds = new long[count];
+        for (var i = 0; i < count; i++) {
+            bounds[i] = 1L << i;
+        }
+        return bounds;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        var index = 0;
+        while (index < bounds.length && value > bounds[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Gets a snapshot of the current state of the histogram.
+     *
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        var counts = new long[buckets.length];
+        for (var i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(bounds.clone(), counts, sum.sum());
+    }
+
+    /**
+     * A snapshot of a histogram.
+     *
+     * @param bounds the inclusive upper bounds of the buckets
+     * @param counts the number of values of each bucket, the last one counting the values greater than every bound
+     * @param sum the sum of the recorded values
+     */
+    public record Snapshot(long[] bounds, long[] counts, long sum) {
+        /**
+         * Constructor.
+         *
+         * @param bounds the inclusive upper bounds of the buckets
+         * @param counts the number of values of each bucket
+         * @param sum the sum of the recorded values
+         */
+        public Snapshot {
+            Objects.requireNonNull(bounds);
+            Objects.requireNonNull(counts);
+            if (counts.length != bounds.length + 1) {
+                throw new IllegalArgumentException("There must be one more count than bounds");
+            }
+        }
+
+        /**
+         * Gets the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long count() {
+            return Arrays.stream(counts).sum();
+        }
+
+        @Override
+        public String toString() {
+            var builder = new StringBuilder("count=").append(count()).append(" sum=").append(sum);
+            for (var i = 0; i < counts.length; i++) {
+                builder.append(i < bounds.length ? " le" + bounds[i] : " inf").append('=').append(counts[i]);
+            }
+            return builder.toString();
+        }
+    }
+}
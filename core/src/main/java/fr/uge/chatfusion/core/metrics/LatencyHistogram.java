@@ -0,0 +1,107 @@
+package fr.uge.chatfusion.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies able to compute percentiles, in the spirit of HdrHistogram.
+ *
+ * @implNote The values are counted in log-linear buckets: values below {@code 2^SUB_BITS} have their own bucket,
+ * then each power of two is split in {@code 2^(SUB_BITS - 1)} buckets, so a percentile is known with a relative
+ * error below 2^-(SUB_BITS - 1), about 3%, whatever the magnitude of the values. The buckets are an
+ * {@link AtomicLongArray}, so recording is lock-free and never allocates.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_SUB_COUNT = SUB_COUNT / 2;
+    private static final int BUCKET_COUNT = indexOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        buckets.incrementAndGet(indexOf(Math.max(0, value)));
+    }
+
+    /**
+     * Gets a snapshot of the current state of the histogram.
+     *
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        var counts = new long[BUCKET_COUNT];
+        var total = 0L;
+        var max = 0L;
+        for (var i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+            if (counts[i] != 0) {
+                max = highestValueOf(i);
+            }
+        }
+        return new Snapshot(
+            total,
+            max,
+            valueAt(counts, total, 0.5),
+            valueAt(counts, total, 0.99),
+            valueAt(counts, total, 0.999)
+        );
+    }
+
+    private static long valueAt(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        var rank = Math.max(1, (long) Math.ceil(percentile * total));
+        var seen = 0L;
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        throw new AssertionError("rank greater than total");
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        var shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * HALF_SUB_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        var shift = index / HALF_SUB_COUNT - 1;
+        var mantissa = index % HALF_SUB_COUNT + HALF_SUB_COUNT;
+        return ((mantissa + 1L) << shift) - 1;
+    }
+
+    /**
+     * A snapshot of a latency histogram.
+     *
+     * @apiNote The values are the highest values of the buckets they fall in.
+     *
+     * @param count the number of recorded values
+     * @param max the maximum recorded value
+     * @param p50 the median
+     * @param p99 the 99th percentile
+     * @param p999 the 99.9th percentile
+     */
+    public record Snapshot(long count, long max, long p50, long p99, long p999) {
+        @Override
+        public String toString() {
+            return "count=" + count + " p50=" + p50 + " p99=" + p99 + " p999=" + p999 + " max=" + max;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package fr.uge.chatfusion.core.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A registry of named metrics.
+ *
+ * @apiNote Metrics are meant to be looked up once, when the component recording them is created, and then kept in a
+ * field: recording a value does not go through the registry.
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the registry shared by the whole application.
+     *
+     * @return the default registry
+     */
+    public static MetricsRegistry defaultRegistry() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the counter of the given name, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public Counter counter(String name) {
+        Objects.requireNonNull(name);
+        return counters.computeIfAbsent(name, __ -> new Counter());
+    }
+
+    /**
+     * Gets the gauge of the given name, creating it if needed.
+     *
+     * @param name the name of the gauge
+     * @return the gauge
+     */
+    public Gauge gauge(String name) {
+        Objects.requireNonNull(name);
+        return gauges.computeIfAbsent(name, __ -> new Gauge());
+    }
+
+    /**
+     * Gets the histogram of the given name, creating it with the given bounds if needed.
+     *
+     * @apiNote If the histogram already exists, the given bounds are ignored.
+     *
+     * @param name the name of the histogram
+     * @param bounds the inclusive upper bounds of the buckets, in increasing order
+     * @return the histogram
+     */
+    public Histogram histogram(String name, long... bounds) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(bounds);
+        return histograms.computeIfAbsent(name, __ -> new Histogram(bounds));
+    }
+
+    /**
+     * Gets the latency histogram of the given name, creating it if needed.
+     *
+     * @param name the name of the latency histogram
+     * @return the latency histogram
+     */
+    public LatencyHistogram latency(String name) {
+        Objects.requireNonNull(name);
+        return latencies.computeIfAbsent(name, __ -> new LatencyHistogram());
+    }
+
+    /**
+     * Takes a snapshot of every metric of the registry.
+     *
+     * @apiNote The metrics are read one after another, so the snapshot is not atomic.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(
+            snapshotOf(counters, Counter::value),
+            snapshotOf(gauges, Gauge::value),
+            snapshotOf(histograms, Histogram::snapshot),
+            snapshotOf(latencies, LatencyHistogram::snapshot)
+        );
+    }
+
+    private static <M, V> Map<String, V> snapshotOf(Map<String, M> metrics, Function<M, V> value) {
+        var snapshot = new HashMap<String, V>();
+        metrics.forEach((name, metric) -> snapshot.put(name, value.apply(metric)));
+        return snapshot;
+    }
+
+    /**
+     * A snapshot of the metrics of a registry, sorted by name.
+     *
+     * @param counters the values of the counters
+     * @param gauges the values of the gauges
+     * @param histograms the snapshots of the histograms
+     * @param latencies the snapshots of the latency histograms
+     */
+    public record Snapshot(
+        Map<String, Long> counters,
+        Map<String, Long> gauges,
+        Map<String, Histogram.Snapshot> histograms,
+        Map<String, LatencyHistogram.Snapshot> latencies
+    ) {
+        /**
+         * Constructor.
+         *
+         * @param counters the values of the counters
+         * @param gauges the values of the gauges
+         * @param histograms the snapshots of the histograms
+         * @param latencies the snapshots of the latency histograms
+         */
+        public Snapshot {
+            counters = Collections.unmodifiableMap(new TreeMap<>(counters));
+            gauges = Collections.unmodifiableMap(new TreeMap<>(gauges));
+            histograms = Collections.unmodifiableMap(new TreeMap<>(histograms));
+            latencies = Collections.unmodifiableMap(new TreeMap<>(latencies));
+        }
+
+        /**
+         * Formats the snapshot, one metric per line.
+         *
+         * @return the snapshot as a string
+         */
+        public String format() {
+            var builder = new StringBuilder();
+            counters.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+            gauges.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+            histograms.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+            latencies.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+            return builder.toString();
+        }
+
+        /**
+         * Formats the snapshot in the Prometheus text exposition format. Dots in the metric names are replaced by
+         * underscores, histograms are exposed with cumulative buckets and latency histograms as summaries.
+         *
+         * @return the snapshot in the Prometheus text format
+         */
+        public String formatPrometheus() {
+            var builder = new StringBuilder();
+            counters.forEach((name, value) -> {
+                var metric = prometheusName(name);
+                builder.append("# TYPE ").append(metric).append(" counter\n");
+                builder.append(metric).append(' ').append(value).append('\n');
+            });
+            gauges.forEach((name, value) -> {
+                var metric = prometheusName(name);
+                builder.append("# TYPE ").append(metric).append(" gauge\n");
+                builder.append(metric).append(' ').append(value).append('\n');
+            });
+            histograms.forEach((name, value) -> {
+                var metric = prometheusName(name);
+                builder.append("# TYPE ").append(metric).append(" histogram\n");
+                var cumulative = 0L;
+                var counts = value.counts();
+                for (var i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    var bound = i < value.bounds().length ? Long.toString(value.bounds()[i]) : "+Inf";
+                    builder.append(metric).append("_bucket{le=\"").append(bound).append("\"} ")
+                        .append(cumulative).append('\n');
+                }
+                builder.append(metric).append("_sum ").append(value.sum()).append('\n');
+                builder.append(metric).append("_count ").append(cumulative).append('\n');
+            });
+            latencies.forEach((name, value) -> {
+                var metric = prometheusName(name);
+                builder.append("# TYPE ").append(metric).append(" summary\n");
+                builder.append(metric).append("{quantile=\"0.5\"} ").append(value.p50()).append('\n');
+                builder.append(metric).append("{quantile=\"0.99\"} ").append(value.p99()).append('\n');
+                builder.append(metric).append("{quantile=\"0.999\"} ").append(value.p999()).append('\n');
+                builder.append(metric).append("_count ").append(value.count()).append('\n');
+                builder.append("# TYPE ").append(metric).append("_max gauge\n");
+                builder.append(metric).append("_max ").append(value.max()).append('\n');
+            });
+            return builder.toString();
+        }
+
+        private static String prometheusName(String name) {
+            var builder = new StringBuilder(name.length());
+            for (var i = 0; i < name.length(); i++) {
+                var c = name.charAt(i);
+                var valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == ':'
+                    || c >= '0' && c <= '9' && i > 0;
+                builder.append(valid ? c : '_');
+            }
+            return builder.toString();
+        }
+    }
+}
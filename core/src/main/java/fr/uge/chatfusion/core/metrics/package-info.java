@@ -0,0 +1,4 @@
+/**
+ * Defines lightweight metrics used to observe the Chatfusion applications.
+ */
+package fr.uge.chatfusion.core.metrics;
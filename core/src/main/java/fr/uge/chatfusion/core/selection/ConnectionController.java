@@ -0,0 +1,37 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.frame.FrameVisitor;
+
+/**
+ * Defines a {@link SelectionKeyController} dispatching the frames it receives to a {@link FrameVisitor}, whatever
+ * transport carries them: a {@link java.nio.channels.SocketChannel} with {@link SelectionKeyControllerImpl}, or the
+ * memory of the process with {@link Loopback}.
+ */
+public interface ConnectionController extends SelectionKeyController {
+
+    /**
+     * Sets the visitor to which the frames received are dispatched. The frames it does not support close the
+     * connection, see {@link fr.uge.chatfusion.core.frame.SupportedFrames}.
+     *
+     * @param visitor the visitor
+     */
+    void setVisitor(FrameVisitor visitor);
+
+    /**
+     * Sets the action run when the connection is closed.
+     *
+     * @param onClose the action
+     */
+    void setOnClose(Runnable onClose);
+
+    /**
+     * Stops dispatching the frames received until {@link #resumeReads()} is called. The frames received in the
+     * meantime are kept.
+     */
+    void pauseReads();
+
+    /**
+     * Resumes dispatching the frames received, starting with the frames kept while reads were paused.
+     */
+    void resumeReads();
+}
@@ -0,0 +1,139 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.frame.FrameOpcode;
+import fr.uge.chatfusion.core.metrics.Counter;
+import fr.uge.chatfusion.core.metrics.Gauge;
+import fr.uge.chatfusion.core.metrics.Histogram;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The metrics recorded by the {@link SelectionKeyControllerImpl}s, shared by every connection of an application.
+ *
+ * @implNote The metrics are looked up in the registry once, at construction, and the frames are counted in arrays
+ * indexed by the ordinal of their opcode, so recording a metric never allocates.
+ */
+public final class ConnectionMetrics {
+    private static final ConnectionMetrics DEFAULT = new ConnectionMetrics(MetricsRegistry.defaultRegistry());
+
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final Counter[] framesIn;
+    private final Counter[] framesOut;
+    private final Counter writeStalls;
+    private final Counter readStashes;
+    private final Counter writesThrough;
+    private final Counter interestOpsChanges;
+    private final Counter readBudgetsExhausted;
+    private final Counter writeBudgetsExhausted;
+    private final Histogram queueDepth;
+    private final Gauge queuedChunks;
+    private final Histogram[] laneDepths;
+    private final Gauge[] laneChunks;
+
+    /**
+     * Constructor.
+     *
+     * @param registry the registry in which the metrics are created
+     */
+    public ConnectionMetrics(MetricsRegistry registry) {
+        Objects.requireNonNull(registry);
+        bytesIn = registry.counter("connection.bytes.in");
+        bytesOut = registry.counter("connection.bytes.out");
+        writeStalls = registry.counter("connection.write.stalls");
+        readStashes = registry.counter("connection.read.stashes");
+        writesThrough = registry.counter("connection.writes.through");
+        interestOpsChanges = registry.counter("connection.interest.changes");
+        readBudgetsExhausted = registry.counter("connection.read.budget.exhausted");
+        writeBudgetsExhausted = registry.counter("connection.write.budget.exhausted");
+        queueDepth = registry.histogram("connection.queue.depth", Histogram.exponentialBounds(11));
+        queuedChunks = registry.gauge("connection.queue.chunks");
+        var lanes = OutputLanes.Lane.values();
+        laneDepths = new Histogram[lanes.length];
+        laneChunks = new Gauge[lanes.length];
+        for (var lane : lanes) {
+            var name = lane.name().toLowerCase(Locale.ROOT);
+            laneDepths[lane.ordinal()] = registry.histogram(
+                "connection.queue." + name + ".depth",
+                Histogram.exponentialBounds(11)
+            );
+            laneChunks[lane.ordinal()] = registry.gauge("connection.queue." + name + ".chunks");
+        }
+        var opcodes = FrameOpcode.values();
+        framesIn = new Counter[opcodes.length];
+        framesOut = new Counter[opcodes.length];
+        for (var opcode : opcodes) {
+            var name = opcode.name().toLowerCase(Locale.ROOT);
+            framesIn[opcode.ordinal()] = registry.counter("connection.frames.in." + name);
+            framesOut[opcode.ordinal()] = registry.counter("connection.frames.out." + name);
+        }
+    }
+
+    /**
+     * Gets the metrics recorded in the {@link MetricsRegistry#defaultRegistry() default registry}.
+     *
+     * @return the default connection metrics
+     */
+    public static ConnectionMetrics defaultMetrics() {
+        return DEFAULT;
+    }
+
+    void bytesRead(int count) {
+        bytesIn.add(count);
+    }
+
+    void bytesWritten(int count) {
+        bytesOut.add(count);
+    }
+
+    void frameRead(FrameOpcode opcode) {
+        framesIn[opcode.ordinal()].increment();
+    }
+
+    void frameQueued(FrameOpcode opcode) {
+        framesOut[opcode.ordinal()].increment();
+    }
+
+    void writeStalled() {
+        writeStalls.increment();
+    }
+
+    void readStashed() {
+        readStashes.increment();
+    }
+
+    void wroteThrough() {
+        writesThrough.increment();
+    }
+
+    void interestOpsChanged() {
+        interestOpsChanges.increment();
+    }
+
+    void readBudgetExhausted() {
+        readBudgetsExhausted.increment();
+    }
+
+    void writeBudgetExhausted() {
+        writeBudgetsExhausted.increment();
+    }
+
+    // a frame encoded directly in the output buffer is recorded with a depth of 0
+    void queued(int depth) {
+        queueDepth.record(depth);
+    }
+
+    void queued(OutputLanes.Lane lane, int depth, int addedChunks) {
+        queueDepth.record(depth);
+        queuedChunks.add(addedChunks);
+        laneDepths[lane.ordinal()].record(depth);
+        laneChunks[lane.ordinal()].add(addedChunks);
+    }
+
+    void dequeued(OutputLanes.Lane lane, int removedChunks) {
+        queuedChunks.add(-removedChunks);
+        laneChunks[lane.ordinal()].add(-removedChunks);
+    }
+}
@@ -0,0 +1,34 @@
+package fr.uge.chatfusion.core.selection;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event measuring a write of the output buffer of a connection to its channel.
+ */
+@Name("fr.uge.chatfusion.Flush")
+@Label("Flush")
+@Category({"ChatFusion", "Connection"})
+@Description("The output buffer of a connection has been written to its channel")
+@StackTrace(false)
+final class FlushEvent extends Event {
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Bytes Written")
+    @DataAmount
+    int written;
+
+    @Label("Bytes Left")
+    @DataAmount
+    int remaining;
+
+    @Label("Partial")
+    @Description("Whether the channel did not accept the whole output buffer")
+    boolean partial;
+}
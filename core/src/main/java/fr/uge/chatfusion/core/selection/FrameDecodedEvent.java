@@ -0,0 +1,29 @@
+package fr.uge.chatfusion.core.selection;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when a frame has been decoded.
+ */
+@Name("fr.uge.chatfusion.FrameDecoded")
+@Label("Frame Decoded")
+@Category({"ChatFusion", "Connection"})
+@Description("A frame has been decoded from a connection")
+@StackTrace(false)
+final class FrameDecodedEvent extends Event {
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Opcode")
+    String opcode;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+}
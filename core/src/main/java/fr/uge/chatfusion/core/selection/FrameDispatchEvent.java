@@ -0,0 +1,24 @@
+package fr.uge.chatfusion.core.selection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event measuring the dispatch of a decoded frame to the visitor of a connection.
+ */
+@Name("fr.uge.chatfusion.FrameDispatch")
+@Label("Frame Dispatch")
+@Category({"ChatFusion", "Connection"})
+@Description("A decoded frame has been handled by the visitor of its connection")
+@StackTrace(false)
+final class FrameDispatchEvent extends Event {
+    @Label("Opcode")
+    String opcode;
+
+    @Label("Visitor")
+    Class<?> visitor;
+}
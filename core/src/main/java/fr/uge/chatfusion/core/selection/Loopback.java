@@ -0,0 +1,108 @@
+package fr.uge.chatfusion.core.selection;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * An in-memory transport linking {@link LoopbackController}s of the same process, which plays the role of the
+ * selector of their connections.
+ * <p>
+ * A frame queued on a controller is handed over to its peer without being encoded nor copied, only the views of its
+ * buffers are, and the peer is added to the list of the controllers ready to read. The frames are only dispatched
+ * when the list is served by {@link #run()} or {@link #step()}, one read budget per ready controller in a round-robin
+ * fashion, as {@link ReadyList} does for sockets. A topology of servers and clients linked this way runs in a single
+ * thread with a deterministic scheduling, which allows to measure the routing of the frames without the kernel.
+ *
+ * @implNote The transport and its controllers are not thread-safe, they must be used by a single thread.
+ */
+public final class Loopback {
+    private final ArrayDeque<LoopbackController> ready = new ArrayDeque<>();
+    private long dispatched;
+
+    /**
+     * Links two new controllers, each one being the peer of the other.
+     *
+     * @param firstAddress the address of the first end, the remote address of the second one
+     * @param secondAddress the address of the second end, the remote address of the first one
+     * @return the link
+     */
+    public Link link(SocketAddress firstAddress, SocketAddress secondAddress) {
+        Objects.requireNonNull(firstAddress);
+        Objects.requireNonNull(secondAddress);
+        var first = new LoopbackController(this, secondAddress);
+        var second = new LoopbackController(this, firstAddress);
+        first.linkTo(second);
+        second.linkTo(first);
+        return new Link(first, second);
+    }
+
+    /**
+     * Tells whether no controller has frames left to dispatch.
+     *
+     * @return true if no controller is ready
+     */
+    public boolean isIdle() {
+        return ready.isEmpty();
+    }
+
+    /**
+     * Gives one read budget to every controller ready. The controllers that still have frames left, and the ones
+     * that receive frames meanwhile, are served by the next step.
+     *
+     * @return false if no controller was ready
+     */
+    public boolean step() {
+        if (ready.isEmpty()) {
+            return false;
+        }
+        for (var count = ready.size(); count > 0; count--) {
+            ready.pollFirst().doRead();
+        }
+        return true;
+    }
+
+    /**
+     * Serves the controllers ready until none is, that is until every frame sent has been dispatched or is kept by a
+     * controller whose reads are paused.
+     *
+     * @return the number of steps
+     */
+    public int run() {
+        var steps = 0;
+        while (step()) {
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Gets the number of frames dispatched by the controllers of this transport since it was created.
+     *
+     * @return the number of frames dispatched
+     */
+    public long dispatched() {
+        return dispatched;
+    }
+
+    void ready(LoopbackController controller) {
+        ready.addLast(controller);
+    }
+
+    void dispatched(int count) {
+        dispatched += count;
+    }
+
+    /**
+     * The two ends of a link.
+     *
+     * @param first the first end
+     * @param second the second end
+     */
+    public record Link(LoopbackController first, LoopbackController second) {
+        public Link {
+            Objects.requireNonNull(first);
+            Objects.requireNonNull(second);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.FrameVisitor;
+import fr.uge.chatfusion.core.frame.SupportedFrames;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+import fr.uge.chatfusion.core.reader.Reader;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * An end of a {@link Loopback} link, behaving as a connection whose peer is in the same process.
+ * <p>
+ * The frames queued are handed over to the peer without being encoded, the peer dispatches them when its
+ * {@link Loopback} is served. As with a socket, closing an end drops what its peer did not dispatch yet, and its peer
+ * is closed once it has dispatched the frames sent before.
+ *
+ * @implNote The frames are shared by both ends, so a frame must not be modified once queued. The buffers of the
+ * {@link Frame.FileBlock} and {@link Frame.DirectoryUpdate} frames are read through their position, so the peer gets
+ * a duplicate of them: their bytes are still shared, but reading them does not move the position seen by the sender
+ * nor by the other peers the frame is forwarded to. The controller has nothing to connect nor to write,
+ * {@link #doConnect()} and {@link #doWrite()} do nothing.
+ */
+public final class LoopbackController implements ConnectionController {
+    private static final int READ_BUDGET = 64; // as the default read budget of the sockets
+    private static final Logger LOGGER = Logger.getLogger(LoopbackController.class);
+
+    private final Loopback loopback;
+    private final SocketAddress remoteAddress;
+    private final ArrayDeque<Frame> inbox = new ArrayDeque<>();
+    private LoopbackController peer;
+    private Runnable onClose = () -> {
+    };
+    private FrameVisitor visitor = new FrameVisitor() {
+    };
+    private SupportedFrames supported = SupportedFrames.of(visitor);
+    private boolean closed;
+    private boolean remoteClosed;
+    private boolean readPaused;
+    private boolean scheduled;
+
+    LoopbackController(Loopback loopback, SocketAddress remoteAddress) {
+        this.loopback = Objects.requireNonNull(loopback);
+        this.remoteAddress = Objects.requireNonNull(remoteAddress);
+    }
+
+    void linkTo(LoopbackController peer) {
+        this.peer = Objects.requireNonNull(peer);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote At most 64 frames are dispatched, the controller stays ready to dispatch the others on the next
+     * {@link Loopback#step() step}. The controller is closed once the frames sent by a closed peer are dispatched.
+     */
+    @Override
+    public void doRead() {
+        scheduled = false;
+        var count = 0;
+        Frame frame;
+        while (!closed && !readPaused && count < READ_BUDGET && (frame = inbox.pollFirst()) != null) {
+            count++;
+            if (!supported.contains(frame.opcode())) {
+                LOGGER.log(Level.SEVERE, "Unsupported frame. Closing connection...", "frame", frame.opcode());
+                close();
+                break;
+            }
+            frame.accept(visitor);
+        }
+        loopback.dispatched(count);
+        if (!closed && !readPaused && inbox.isEmpty() && remoteClosed) {
+            close();
+            return;
+        }
+        schedule();
+    }
+
+    @Override
+    public void doWrite() {
+    }
+
+    @Override
+    public void doConnect() {
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The data is decoded in frames, which are queued as with {@link #queueFrame(Frame)}. The data must hold
+     * whole frames.
+     *
+     * @throws IllegalArgumentException if the data does not hold whole frames
+     */
+    @Override
+    public void queueData(ByteBuffer data) {
+        Objects.requireNonNull(data);
+        var reader = Frame.reader();
+        while (data.position() > 0) {
+            var status = reader.process(data);
+            if (status == Reader.ProcessStatus.ERROR) {
+                throw new IllegalArgumentException("Malformed frame");
+            }
+            if (status == Reader.ProcessStatus.REFILL) {
+                reader.reset();
+                throw new IllegalArgumentException("The data does not hold whole frames");
+            }
+            queueFrame(reader.get());
+            reader.reset();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The frame is handed over to the peer as is, except for its buffers which are duplicated. It is
+     * dropped if the peer is closed, as the data written to a socket closed remotely.
+     */
+    @Override
+    public void queueFrame(Frame frame) {
+        Objects.requireNonNull(frame);
+        if (closed) {
+            throw new IllegalStateException("Connection is closing or closed.");
+        }
+        peer.receive(detach(frame));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The frames queued are already in the hands of the peer, so the controller is closed right away.
+     */
+    @Override
+    public void closeWhenAllSent() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inbox.clear();
+        peer.receiveClose();
+        onClose.run();
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public void setVisitor(FrameVisitor visitor) {
+        Objects.requireNonNull(visitor);
+        this.visitor = visitor;
+        supported = SupportedFrames.of(visitor);
+    }
+
+    @Override
+    public void setOnClose(Runnable onClose) {
+        Objects.requireNonNull(onClose);
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void pauseReads() {
+        readPaused = true;
+    }
+
+    @Override
+    public void resumeReads() {
+        if (!readPaused) {
+            return;
+        }
+        readPaused = false;
+        schedule();
+    }
+
+    // the views of the bytes the peer reads, the bytes themselves are not copied
+    private static Frame detach(Frame frame) {
+        if (frame instanceof Frame.FileBlock fileBlock) {
+            return new Frame.FileBlock(fileBlock.fileId(), fileBlock.offset(), fileBlock.block().duplicate());
+        }
+        if (frame instanceof Frame.DirectoryUpdate directoryUpdate) {
+            return new Frame.DirectoryUpdate(directoryUpdate.serverName(), directoryUpdate.filter().duplicate());
+        }
+        return frame;
+    }
+
+    private void receive(Frame frame) {
+        if (closed) {
+            return;
+        }
+        inbox.addLast(frame);
+        schedule();
+    }
+
+    private void receiveClose() {
+        if (closed) {
+            return;
+        }
+        remoteClosed = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled || closed || readPaused || inbox.isEmpty() && !remoteClosed) {
+            return;
+        }
+        scheduled = true;
+        loopback.ready(this);
+    }
+}
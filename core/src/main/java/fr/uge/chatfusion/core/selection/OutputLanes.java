@@ -0,0 +1,238 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.base.BufferUtils;
+import fr.uge.chatfusion.core.frame.FrameOpcode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The output queue of a connection, split in lanes so that the fusion and login frames are not stuck behind the blocks
+ * of a file, nor the messages behind a whole file.
+ * <p>
+ * Each lane is a queue of chunks holding whole frames: a frame is never split across two chunks, so the output buffer
+ * only switches from a lane to another between two frames. The lanes are drained with a deficit round-robin: each
+ * turn, a lane is credited with its {@link Lane#weight() weight} in kilobytes and sends the chunks its credit covers,
+ * so a busy lane gets its share of the connection without starving the others.
+ *
+ * @implNote The buffers of the chunks are in write mode, their position being the number of bytes queued.
+ */
+final class OutputLanes {
+    /**
+     * The lanes of the output queue, in the order they are drained.
+     */
+    enum Lane {
+        /**
+         * The frames of the fusion protocol and the replies to the logins.
+         */
+        CONTROL(8),
+
+        /**
+         * The public and direct messages, the announces of the files, and the replies to undeliverable ones.
+         */
+        INTERACTIVE(4),
+
+        /**
+         * The blocks of the files.
+         */
+        BULK(1);
+
+        private static final Lane[] BY_OPCODE = new Lane[FrameOpcode.values().length];
+        static {
+            for (var opcode : FrameOpcode.values()) {
+                BY_OPCODE[opcode.ordinal()] = of(opcode);
+            }
+        }
+
+        private final int weight;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Gets the lane of the frames of the given opcode.
+         *
+         * @param opcode the opcode of the frames
+         * @return the lane of the frames
+         */
+        static Lane of(FrameOpcode opcode) {
+            return switch (opcode) {
+                case PUBLIC_MESSAGE, TRACED_PUBLIC_MESSAGE, DIRECT_MESSAGE, FILE_OPEN, UNKNOWN_RECIPIENT,
+                    FILE_REFUSED -> INTERACTIVE;
+                case FILE_BLOCK -> BULK;
+                default -> CONTROL;
+            };
+        }
+
+        /**
+         * Gets the lane of an encoded frame from its first byte. The bytes that are not an opcode go to the
+         * {@link #CONTROL} lane.
+         *
+         * @param value the opcode byte
+         * @return the lane of the frame
+         */
+        static Lane of(byte value) {
+            var opcode = FrameOpcode.lookup(value);
+            return opcode == null ? CONTROL : BY_OPCODE[opcode.ordinal()];
+        }
+
+        /**
+         * Gets the relative share of the connection given to the lane.
+         *
+         * @return the weight of the lane
+         */
+        int weight() {
+            return weight;
+        }
+    }
+
+    private static final Lane[] LANES = Lane.values();
+    private static final int QUANTUM = 1_024; // bytes per unit of weight
+
+    private final int chunkSize;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<ByteBuffer>[] lanes = new ArrayDeque[LANES.length];
+    private final int[] deficits = new int[LANES.length];
+    private ByteBuffer current;
+    private int currentLane;
+    private int turn;
+    private boolean credited;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param chunkSize the size of the chunks, a larger chunk is allocated for a larger frame
+     */
+    OutputLanes(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        for (var i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Tells whether no frame is waiting to be drained.
+     *
+     * @return true if every lane is empty
+     */
+    boolean isEmpty() {
+        return size == 0 && current == null;
+    }
+
+    /**
+     * Gets the number of chunks of a lane.
+     *
+     * @param lane the lane
+     * @return the number of chunks waiting in the lane
+     */
+    int depth(Lane lane) {
+        return lanes[lane.ordinal()].size();
+    }
+
+    /**
+     * Gets a chunk of the lane with room for a frame of the given size, the last chunk of the lane if it has enough
+     * room, otherwise a new chunk added at the end of the lane.
+     *
+     * @param lane the lane of the frame
+     * @param frameSize the size of the frame
+     * @param metrics the metrics recording the depth of the lane
+     * @return a chunk in which the frame can be written
+     */
+    ByteBuffer chunkFor(Lane lane, int frameSize, ConnectionMetrics metrics) {
+        Objects.requireNonNull(lane);
+        Objects.requireNonNull(metrics);
+        var chunks = lanes[lane.ordinal()];
+        var last = chunks.peekLast();
+        if (last != null && last.remaining() >= frameSize) {
+            metrics.queued(lane, chunks.size(), 0);
+            return last;
+        }
+        var chunk = ByteBuffer.allocate(Math.max(chunkSize, frameSize));
+        chunks.addLast(chunk);
+        size++;
+        metrics.queued(lane, chunks.size(), 1);
+        return chunk;
+    }
+
+    /**
+     * Moves the queued frames to the output buffer until it is full or every lane is empty. A chunk partially moved
+     * is finished before any other.
+     *
+     * @param bufferOut the output buffer, in write mode
+     * @param metrics the metrics recording the chunks emptied
+     */
+    void drainTo(ByteBuffer bufferOut, ConnectionMetrics metrics) {
+        Objects.requireNonNull(bufferOut);
+        Objects.requireNonNull(metrics);
+        while (bufferOut.hasRemaining()) {
+            if (current == null) {
+                current = next();
+                if (current == null) {
+                    return;
+                }
+            }
+            BufferUtils.transferTo(current, bufferOut);
+            if (current.position() == 0) {
+                current = null;
+                metrics.dequeued(LANES[currentLane], 1);
+            }
+        }
+    }
+
+    /**
+     * Drops every queued frame.
+     *
+     * @param metrics the metrics recording the chunks dropped
+     */
+    void clear(ConnectionMetrics metrics) {
+        Objects.requireNonNull(metrics);
+        if (current != null) {
+            metrics.dequeued(LANES[currentLane], 1);
+            current = null;
+        }
+        for (var lane : LANES) {
+            var chunks = lanes[lane.ordinal()];
+            metrics.dequeued(lane, chunks.size());
+            chunks.clear();
+        }
+        Arrays.fill(deficits, 0);
+        credited = false;
+        size = 0;
+    }
+
+    // the next chunk the credit of the current lane covers, a lane being credited when its turn comes
+    private ByteBuffer next() {
+        if (size == 0) {
+            return null;
+        }
+        for (;;) {
+            var chunks = lanes[turn];
+            if (chunks.isEmpty()) {
+                // an empty lane does not save credit for later
+                deficits[turn] = 0;
+            } else {
+                if (!credited) {
+                    deficits[turn] += LANES[turn].weight() * QUANTUM;
+                    credited = true;
+                }
+                var chunk = chunks.peekFirst();
+                if (deficits[turn] >= chunk.position()) {
+                    deficits[turn] -= chunk.position();
+                    chunks.removeFirst();
+                    size--;
+                    currentLane = turn;
+                    return chunk;
+                }
+            }
+            turn = (turn + 1) % lanes.length;
+            credited = false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fr.uge.chatfusion.core.selection;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * The connections of a selector thread waiting for their output to be written at the end of the dispatch of the frames
+ * read from a connection.
+ * <p>
+ * Writing a connection as soon as a frame is queued makes a write per frame when a read holds several frames for the
+ * same connections, while waiting for the selector adds a selection round trip and two changes of interest ops. The
+ * connections that were idle are instead written once every frame of the read has been dispatched.
+ *
+ * @implNote The connections are confined to the selector thread: each thread gets its own instance through
+ * {@link #current()}.
+ */
+final class PendingWrites {
+    private static final ThreadLocal<PendingWrites> CURRENT = ThreadLocal.withInitial(PendingWrites::new);
+
+    private final ArrayDeque<SelectionKeyControllerImpl> controllers = new ArrayDeque<>();
+    private int depth;
+
+    private PendingWrites() {
+    }
+
+    /**
+     * Gets the pending writes of the current thread.
+     *
+     * @return the pending writes of the current thread
+     */
+    static PendingWrites current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts the dispatch of frames, the writes requested until the matching {@link #end()} are delayed.
+     */
+    void begin() {
+        depth++;
+    }
+
+    /**
+     * Ends the dispatch of frames, writing the pending connections if it was the outermost one.
+     */
+    void end() {
+        if (--depth > 0) {
+            return;
+        }
+        SelectionKeyControllerImpl controller;
+        while ((controller = controllers.pollFirst()) != null) {
+            controller.writePending();
+        }
+    }
+
+    /**
+     * Tells whether frames are being dispatched.
+     *
+     * @return true if the writes are delayed
+     */
+    boolean isDispatching() {
+        return depth > 0;
+    }
+
+    /**
+     * Adds a connection to write at the end of the dispatch.
+     *
+     * @param controller the connection
+     */
+    void add(SelectionKeyControllerImpl controller) {
+        Objects.requireNonNull(controller);
+        controllers.addLast(controller);
+    }
+}
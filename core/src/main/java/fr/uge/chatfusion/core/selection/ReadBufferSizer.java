@@ -0,0 +1,63 @@
+package fr.uge.chatfusion.core.selection;
+
+/**
+ * Computes the number of bytes a connection reads at once from the size of its previous reads.
+ * <p>
+ * A read filling the allowed size means more data was waiting, so the size is doubled. A run of reads using at most a
+ * quarter of it means the connection does not need it anymore, so the size is halved. The size always stays between
+ * {@link #MIN_SIZE} and {@link #MAX_SIZE}.
+ *
+ * @implNote The run of small reads is required before shrinking so that a connection alternating large and small
+ * frames does not change its size on every read.
+ */
+final class ReadBufferSizer {
+    static final int MIN_SIZE = 512;
+    static final int MAX_SIZE = 16_384; // 16 KB
+    static final int SHRINK_AFTER = 8;
+
+    private int size;
+    private int smallReads;
+
+    /**
+     * Constructor.
+     *
+     * @param initialSize the initial size, between {@link #MIN_SIZE} and {@link #MAX_SIZE}
+     */
+    ReadBufferSizer(int initialSize) {
+        if (initialSize < MIN_SIZE || initialSize > MAX_SIZE) {
+            throw new IllegalArgumentException("initialSize must be between " + MIN_SIZE + " and " + MAX_SIZE);
+        }
+        this.size = initialSize;
+    }
+
+    /**
+     * Gets the number of bytes to read at once.
+     *
+     * @return the number of bytes to read
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Records a read.
+     *
+     * @param read the number of bytes read
+     * @param filled whether the read filled the allowed size
+     * @return the number of bytes to read next
+     */
+    int record(int read, boolean filled) {
+        if (filled) {
+            smallReads = 0;
+            size = Math.min(size << 1, MAX_SIZE);
+        } else if (read <= size >> 2 && size > MIN_SIZE) {
+            if (++smallReads >= SHRINK_AFTER) {
+                smallReads = 0;
+                size = Math.max(size >> 1, MIN_SIZE);
+            }
+        } else {
+            smallReads = 0;
+        }
+        return size;
+    }
+}
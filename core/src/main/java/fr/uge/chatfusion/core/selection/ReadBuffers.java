@@ -0,0 +1,78 @@
+package fr.uge.chatfusion.core.selection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * The buffers in which the connections of a selector thread read from their channels.
+ * <p>
+ * Every connection reads in the same large direct buffer and decodes its frames from it, so an idle connection does
+ * not keep any input buffer. The bytes left once a connection has decoded what it could are copied in a stash, taken
+ * from a pool of small buffers and given back on the next read of the connection.
+ *
+ * @implNote The buffers are confined to the selector thread: each thread gets its own instance through
+ * {@link #current()}.
+ */
+final class ReadBuffers {
+    static final int SHARED_SIZE = 65_536; // 64 KB
+    static final int STASH_SIZE = 512;
+    private static final int MAX_POOLED_STASHES = 256;
+    private static final ThreadLocal<ReadBuffers> CURRENT = ThreadLocal.withInitial(ReadBuffers::new);
+
+    private final ByteBuffer shared = ByteBuffer.allocateDirect(SHARED_SIZE);
+    private final ArrayDeque<ByteBuffer> stashes = new ArrayDeque<>();
+
+    private ReadBuffers() {
+    }
+
+    /**
+     * Gets the buffers of the current thread.
+     *
+     * @return the buffers of the current thread
+     */
+    static ReadBuffers current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Gets the shared buffer, cleared.
+     *
+     * @return the shared buffer
+     */
+    ByteBuffer shared() {
+        return shared.clear();
+    }
+
+    /**
+     * Moves the content of a buffer in a stash.
+     *
+     * @param buffer the buffer to empty, in writing mode
+     * @return the stash, in writing mode
+     */
+    ByteBuffer stash(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        var size = buffer.position();
+        var stash = size <= STASH_SIZE && !stashes.isEmpty() ? stashes.pollLast() : null;
+        if (stash == null) {
+            stash = ByteBuffer.allocate(Math.max(size, STASH_SIZE));
+        }
+        buffer.flip();
+        stash.put(buffer);
+        buffer.clear();
+        return stash;
+    }
+
+    /**
+     * Gives back a stash, once its content has been read.
+     *
+     * @param stash the stash
+     */
+    void release(ByteBuffer stash) {
+        Objects.requireNonNull(stash);
+        // larger stashes are only needed for unusual remainders, they are left to the garbage collector
+        if (stash.capacity() == STASH_SIZE && stashes.size() < MAX_POOLED_STASHES) {
+            stashes.addLast(stash.clear());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.uge.chatfusion.core.selection;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * The connections of a selector thread that have frames left to dispatch after spending their read budget.
+ * <p>
+ * A connection dispatches a bounded number of frames each time it is read, see
+ * {@link SelectionKeyControllerImpl#setReadBudget(int)}, and keeps the frames it did not dispatch. It then stops
+ * reading from its channel and waits in this list, which the selection loop serves in a round-robin fashion once the
+ * selected keys have been handled: a busy connection gets a budget per loop iteration, like every other connection.
+ * <p>
+ * A selection loop using {@link SelectionKeyControllerImpl} must call {@link #serve()} after each selection, and must
+ * not block in the selection while the list is not empty.
+ *
+ * @implNote The connections are confined to the selector thread: each thread gets its own instance through
+ * {@link #current()}.
+ */
+public final class ReadyList {
+    private static final ThreadLocal<ReadyList> CURRENT = ThreadLocal.withInitial(ReadyList::new);
+
+    private final ArrayDeque<SelectionKeyControllerImpl> controllers = new ArrayDeque<>();
+
+    private ReadyList() {
+    }
+
+    /**
+     * Gets the ready list of the current thread.
+     *
+     * @return the ready list of the current thread
+     */
+    public static ReadyList current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Tells whether no connection is waiting to dispatch its frames.
+     *
+     * @return true if the list is empty
+     */
+    public boolean isEmpty() {
+        return controllers.isEmpty();
+    }
+
+    /**
+     * Gives one read budget to every connection of the list. The connections that still have frames left go back at
+     * the end of the list.
+     */
+    public void serve() {
+        for (var count = controllers.size(); count > 0; count--) {
+            controllers.pollFirst().serveBacklog();
+        }
+    }
+
+    void add(SelectionKeyControllerImpl controller) {
+        Objects.requireNonNull(controller);
+        controllers.addLast(controller);
+    }
+}
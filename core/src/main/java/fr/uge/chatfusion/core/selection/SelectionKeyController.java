@@ -1,8 +1,11 @@
 package fr.uge.chatfusion.core.selection;
 
+import fr.uge.chatfusion.core.frame.Frame;
+
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.Objects;
 
 /**
  * Defines the class that manages {@link java.nio.channels.SocketChannel} in non-blocking mode.
@@ -37,6 +40,21 @@ public interface SelectionKeyController {
      */
     void queueData(ByteBuffer data);
 
+    /**
+     * Queues a frame to be written to the channel.
+     *
+     * @implSpec The default implementation encodes the frame in a buffer of its exact size and queues it using
+     * {@link #queueData(ByteBuffer)}.
+     *
+     * @param frame the frame to be written
+     */
+    default void queueFrame(Frame frame) {
+        Objects.requireNonNull(frame);
+        var data = ByteBuffer.allocate(frame.encodedSize());
+        frame.encodeTo(data);
+        queueData(data);
+    }
+
     /**
      * Closes the channel when all data has been written to the channel.
      */
@@ -52,5 +70,5 @@ public interface SelectionKeyController {
      *
      * @return the remote address of the channel
      */
-    InetSocketAddress remoteAddress();
+    SocketAddress remoteAddress();
 }
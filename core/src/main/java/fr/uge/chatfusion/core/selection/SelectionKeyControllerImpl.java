@@ -1,31 +1,33 @@
 package fr.uge.chatfusion.core.selection;
 
-import fr.uge.chatfusion.core.base.BufferUtils;
 import fr.uge.chatfusion.core.base.CloseableUtils;
 import fr.uge.chatfusion.core.frame.Frame;
 import fr.uge.chatfusion.core.frame.FrameVisitor;
+import fr.uge.chatfusion.core.frame.SupportedFrames;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
 import fr.uge.chatfusion.core.reader.Reader;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayDeque;
 import java.util.Objects;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-public final class SelectionKeyControllerImpl implements SelectionKeyController {
+public final class SelectionKeyControllerImpl implements ConnectionController {
     private static final int BUFFER_SIZE = 2_048; // 2 KB
-    private static final Logger LOGGER = Logger.getLogger(SelectionKeyControllerImpl.class.getName());
+    private static final int DEFAULT_READ_BUDGET = Integer.getInteger("fr.uge.chatfusion.read.budget", 64);
+    private static final int DEFAULT_WRITE_BUDGET = Integer.getInteger("fr.uge.chatfusion.write.budget", 65_536);
+    private static final Logger LOGGER = Logger.getLogger(SelectionKeyControllerImpl.class);
 
     private final SelectionKey key;
     private final SocketChannel sc;
-    private final InetSocketAddress remoteAddress;
-    private final ByteBuffer bufferIn;
+    private final SocketAddress remoteAddress;
+    private final ReadBufferSizer readSizer = new ReadBufferSizer(ReadBufferSizer.MIN_SIZE);
+    private ByteBuffer stash;
     private final ByteBuffer bufferOut;
-    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private final OutputLanes lanes = new OutputLanes(BUFFER_SIZE);
     private final Reader<Frame> reader = Frame.reader();
     private final boolean logging;
     private Runnable onClose = () -> {
@@ -34,12 +36,21 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
     };
     private FrameVisitor visitor = new FrameVisitor() {
     };
+    private SupportedFrames supported = SupportedFrames.of(visitor);
+    private ConnectionMetrics metrics = ConnectionMetrics.defaultMetrics();
     private boolean closing;
     private boolean connected;
+    private boolean readPaused;
+    private boolean backlogged;
+    private boolean writing;
+    private boolean writePending;
+    private int readBudget = DEFAULT_READ_BUDGET;
+    private int writeBudget = DEFAULT_WRITE_BUDGET;
+    private int interestOps = -1;
 
     public SelectionKeyControllerImpl(
         SelectionKey key,
-        InetSocketAddress remoteAddress,
+        SocketAddress remoteAddress,
         boolean isConnected,
         boolean logging,
         boolean isDirect
@@ -51,38 +62,115 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
         this.remoteAddress = remoteAddress;
         this.connected = isConnected;
         this.logging = logging;
-        if (isDirect) {
-            bufferIn = ByteBuffer.allocateDirect(BUFFER_SIZE);
-            bufferOut = ByteBuffer.allocateDirect(BUFFER_SIZE);
-        } else {
-            bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-            bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
-        }
+        bufferOut = isDirect ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
         updateInterestOps();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The connection reads in the buffer shared by the connections of the selector thread, see
+     * {@link ReadBuffers}, and only keeps the bytes it could not decode in a stash. The number of bytes read at once
+     * follows the size of the reads: it grows when a read fills what was allowed and shrinks back after a run of
+     * small reads, see {@link ReadBufferSizer}. At most {@link #setReadBudget(int) the read budget} of frames is
+     * dispatched, the connection waits in the {@link ReadyList} to dispatch the others.
+     */
     @Override
     public void doRead() throws IOException {
-        if (sc.read(bufferIn) == -1) {
-            logAndClose(Level.INFO, " Connection closed remotely.");
+        var buffers = ReadBuffers.current();
+        var bufferIn = unstash(buffers);
+        bufferIn.limit(Math.min(bufferIn.position() + readSizer.size(), bufferIn.capacity()));
+        var read = sc.read(bufferIn);
+        if (read == -1) {
+            logAndClose(Level.INFO, "Connection closed remotely.");
             return;
         }
+        metrics.bytesRead(read);
+        var filled = !bufferIn.hasRemaining();
 
-        processIn();
+        var exhausted = dispatch(bufferIn);
+        if (!key.isValid()) {
+            // closed by a visitor, the bytes left are dropped rather than stashed for a connection never read again
+            bufferIn.clear();
+            return;
+        }
+        stash(buffers, bufferIn);
+        readSizer.record(read, filled);
+        if (exhausted) {
+            backlog();
+        }
         updateInterestOps();
     }
 
+    /**
+     * Stops reading from the channel until {@link #resumeReads()} is called. The frames already read but not decoded
+     * yet are kept, the frame being dispatched when reads are paused is the last one decoded.
+     */
     @Override
-    public void doWrite() throws IOException {
-        bufferOut.flip();
-        sc.write(bufferOut);
-        bufferOut.compact();
+    public void pauseReads() {
+        if (readPaused) {
+            return;
+        }
+        readPaused = true;
+        updateInterestOps();
+    }
 
-        processOut();
-        if (bufferOut.position() == 0) {
-            onSendingAllData.run();
-            processOut();
+    /**
+     * Resumes reading from the channel, decoding first the frames kept when reads were paused.
+     *
+     * @apiNote This method must be called by the selector thread, outside the dispatch of a frame.
+     */
+    @Override
+    public void resumeReads() {
+        if (!readPaused) {
+            return;
         }
+        readPaused = false;
+        if (!key.isValid()) {
+            return;
+        }
+        dispatchStash();
+        if (key.isValid()) {
+            updateInterestOps();
+        }
+    }
+
+    /**
+     * Sets the maximal number of frames dispatched each time the connection is read or served by the
+     * {@link ReadyList}. The default budget is given by the {@code fr.uge.chatfusion.read.budget} system property,
+     * 64 frames if it is not set.
+     *
+     * @param frames the number of frames
+     */
+    public void setReadBudget(int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("The read budget must be positive");
+        }
+        readBudget = frames;
+    }
+
+    /**
+     * Sets the number of bytes after which the connection stops writing until the next selection. The default budget
+     * is given by the {@code fr.uge.chatfusion.write.budget} system property, 64 KB if it is not set.
+     *
+     * @param bytes the number of bytes
+     */
+    public void setWriteBudget(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("The write budget must be positive");
+        }
+        writeBudget = bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The output buffer is refilled from the queue and written again until the channel does not accept more
+     * or {@link #setWriteBudget(int) the write budget} is spent.
+     */
+    @Override
+    public void doWrite() throws IOException {
+        write();
         updateInterestOps();
     }
 
@@ -93,6 +181,15 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
         updateInterestOps();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote When nothing was waiting to be sent, the data is written to the channel without waiting for the
+     * selector, and {@link SelectionKey#OP_WRITE} is only registered for what the channel did not accept. The data
+     * queued while the frames of a read are dispatched is written once they all have been, see {@link PendingWrites}.
+     * <p>
+     * The data must hold whole frames, it is queued in the lane of its first frame, see {@link OutputLanes}.
+     */
     @Override
     public void queueData(ByteBuffer data) {
         Objects.requireNonNull(data);
@@ -100,19 +197,50 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
             throw new IllegalStateException("Connection is closing or closed.");
         }
 
-        if (queue.isEmpty()) {
-            queue.addLast(ByteBuffer.allocate(BUFFER_SIZE));
+        var idle = isIdle();
+        if (data.position() > 0) {
+            var lane = OutputLanes.Lane.of(data.get(0));
+            var dest = lanes.chunkFor(lane, data.position(), metrics);
+            data.flip();
+            dest.put(data);
+            data.compact();
         }
 
-        while (data.position() > 0) {
-            var dest = queue.getLast();
-            BufferUtils.transferTo(data, dest);
-            if (!dest.hasRemaining()) {
-                queue.addLast(ByteBuffer.allocate(BUFFER_SIZE));
-            }
+        processOut();
+        if (idle) {
+            requestWrite();
+        }
+        updateInterestOps();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implNote The frame is encoded directly in the output buffer when nothing is waiting to be sent before it and
+     * it fits, otherwise in the last queued chunk of its lane if it fits or in a new chunk large enough to hold it, see
+     * {@link OutputLanes}. No intermediate buffer is created nor copied. As with {@link #queueData(ByteBuffer)}, the
+     * frame is written without waiting for the selector when nothing was waiting to be sent.
+     */
+    @Override
+    public void queueFrame(Frame frame) {
+        Objects.requireNonNull(frame);
+        if (closing) {
+            throw new IllegalStateException("Connection is closing or closed.");
         }
 
-        processOut();
+        metrics.frameQueued(frame.opcode());
+        var idle = isIdle();
+        var size = frame.encodedSize();
+        if (lanes.isEmpty() && bufferOut.remaining() >= size) {
+            frame.encodeTo(bufferOut);
+            metrics.queued(0);
+        } else {
+            frame.encodeTo(lanes.chunkFor(OutputLanes.Lane.of(frame.opcode()), size, metrics));
+            processOut();
+        }
+        if (idle) {
+            requestWrite();
+        }
         updateInterestOps();
     }
 
@@ -125,28 +253,35 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
     @Override
     public void close() {
         CloseableUtils.silentlyClose(sc);
+        dropQueue();
         onClose.run();
     }
 
     @Override
-    public InetSocketAddress remoteAddress() {
+    public SocketAddress remoteAddress() {
         return remoteAddress;
     }
 
+    @Override
     public void setVisitor(FrameVisitor visitor) {
         Objects.requireNonNull(visitor);
         this.visitor = visitor;
+        supported = SupportedFrames.of(visitor);
     }
 
     private void updateInterestOps() {
+        if (writing || writePending) {
+            // the interest ops are updated once the data is written
+            return;
+        }
         if (!connected) {
-            key.interestOps(SelectionKey.OP_CONNECT);
+            setInterestOps(SelectionKey.OP_CONNECT);
             return;
         }
 
         var op = 0;
 
-        if (!closing && bufferIn.hasRemaining()) {
+        if (!closing && !readPaused && !backlogged) {
             op |= SelectionKey.OP_READ;
         }
 
@@ -154,14 +289,172 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
             op |= SelectionKey.OP_WRITE;
         }
 
-        if (op == 0) {
+        // a connection whose reads are paused or that has frames left waits to read again
+        if (op == 0 && (closing || !readPaused && !backlogged)) {
             logAndClose(Level.INFO, "No more interest ops. Closing connection.");
             return;
         }
 
+        setInterestOps(op);
+    }
+
+    // an unchanged mask does not reach the selector
+    private void setInterestOps(int op) {
+        if (op == interestOps) {
+            return;
+        }
         key.interestOps(op);
+        interestOps = op;
+        metrics.interestOpsChanged();
+    }
+
+    private boolean isIdle() {
+        return connected && lanes.isEmpty() && bufferOut.position() == 0;
+    }
+
+    private int flush() throws IOException {
+        var event = new FlushEvent();
+        event.begin();
+        bufferOut.flip();
+        int written;
+        try {
+            written = sc.write(bufferOut);
+        } finally {
+            bufferOut.compact();
+        }
+        metrics.bytesWritten(written);
+        var remaining = bufferOut.position();
+        if (remaining > 0) {
+            metrics.writeStalled();
+        }
+        if (event.shouldCommit()) {
+            event.remoteAddress = remoteAddress.toString();
+            event.written = written;
+            event.remaining = remaining;
+            event.partial = remaining > 0;
+            event.commit();
+        }
+        return written;
+    }
+
+    private void requestWrite() {
+        var pending = PendingWrites.current();
+        if (!pending.isDispatching()) {
+            writeThrough();
+            return;
+        }
+        if (!writePending) {
+            writePending = true;
+            pending.add(this);
+        }
     }
 
+    void writePending() {
+        writePending = false;
+        if (!key.isValid()) {
+            return;
+        }
+        writeThrough();
+        updateInterestOps();
+    }
+
+    void serveBacklog() {
+        backlogged = false;
+        if (!key.isValid()) {
+            return;
+        }
+        dispatchStash();
+        if (key.isValid()) {
+            updateInterestOps();
+        }
+    }
+
+    private void dispatchStash() {
+        if (stash == null) {
+            return;
+        }
+        var buffers = ReadBuffers.current();
+        var bufferIn = unstash(buffers);
+        var exhausted = dispatch(bufferIn);
+        if (!key.isValid()) {
+            bufferIn.clear();
+            return;
+        }
+        stash(buffers, bufferIn);
+        if (exhausted) {
+            backlog();
+        }
+    }
+
+    private void backlog() {
+        if (stash == null || readPaused || backlogged || !key.isValid()) {
+            return;
+        }
+        backlogged = true;
+        metrics.readBudgetExhausted();
+        ReadyList.current().add(this);
+    }
+
+    private boolean dispatch(ByteBuffer bufferIn) {
+        var pending = PendingWrites.current();
+        pending.begin();
+        try {
+            return processIn(bufferIn);
+        } finally {
+            pending.end();
+        }
+    }
+
+    // writes what was queued on an idle connection without waiting for the selector
+    private void writeThrough() {
+        if (writing) {
+            return;
+        }
+        metrics.wroteThrough();
+        try {
+            write();
+        } catch (IOException e) {
+            // left to the next doWrite, closing here could change the connections the caller is iterating over
+        }
+    }
+
+    /*
+     * Writes until the channel does not accept more or the budget is spent. The data queued by onSendingAllData is
+     * written by the same loop, the nested calls only queue it.
+     */
+    private void write() throws IOException {
+        writing = true;
+        try {
+            var budget = writeBudget;
+            while (bufferOut.position() > 0) {
+                budget -= flush();
+                var stalled = bufferOut.position() > 0;
+                processOut();
+                if (bufferOut.position() == 0) {
+                    onSendingAllData.run();
+                    processOut();
+                }
+                if (stalled) {
+                    break;
+                }
+                if (budget <= 0) {
+                    if (bufferOut.position() > 0) {
+                        metrics.writeBudgetExhausted();
+                    }
+                    break;
+                }
+            }
+        } finally {
+            writing = false;
+        }
+    }
+
+    public void setMetrics(ConnectionMetrics metrics) {
+        Objects.requireNonNull(metrics);
+        this.metrics = metrics;
+    }
+
+    @Override
     public void setOnClose(Runnable onClose) {
         Objects.requireNonNull(onClose);
         this.onClose = onClose;
@@ -172,8 +465,31 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
         this.onSendingAllData = onSendingAllData;
     }
 
-    private void processIn() {
-        while (true) {
+    private ByteBuffer unstash(ReadBuffers buffers) {
+        var bufferIn = buffers.shared();
+        if (stash != null) {
+            stash.flip();
+            bufferIn.put(stash);
+            buffers.release(stash);
+            stash = null;
+        }
+        return bufferIn;
+    }
+
+    private void stash(ReadBuffers buffers, ByteBuffer bufferIn) {
+        if (bufferIn.position() > 0) {
+            stash = buffers.stash(bufferIn);
+            metrics.readStashed();
+        }
+    }
+
+    // returns whether the budget was spent before the frames of the buffer
+    private boolean processIn(ByteBuffer bufferIn) {
+        var budget = readBudget;
+        while (!readPaused) {
+            if (budget-- == 0) {
+                return bufferIn.position() > 0;
+            }
             try {
                 var status = reader.process(bufferIn);
                 if (status != Reader.ProcessStatus.DONE) {
@@ -183,40 +499,64 @@ public final class SelectionKeyControllerImpl implements SelectionKeyController
                     break;
                 }
 
-                reader.get().accept(visitor);
+                var frame = reader.get();
+                metrics.frameRead(frame.opcode());
+                decoded(frame);
+                if (!supported.contains(frame.opcode())) {
+                    logAndClose(Level.SEVERE, "Unsupported frame. Closing connection...", "frame", frame.opcode());
+                    break;
+                }
+                var event = new FrameDispatchEvent();
+                event.begin();
+                frame.accept(visitor);
+                if (event.shouldCommit()) {
+                    event.opcode = frame.opcode().name();
+                    event.visitor = visitor.getClass();
+                    event.commit();
+                }
                 reader.reset();
             } catch (IllegalStateException e) {
-                logAndClose(Level.SEVERE, "Error while reading. Closing connection...\n" + e.getMessage());
-                break;
-            } catch (UnsupportedOperationException e) {
-                logAndClose(
-                    Level.SEVERE,
-                    "Reader cannot read "
-                        + reader.get().getClass().getSimpleName()
-                        + ". Closing connection...\n"
-                );
+                logAndClose(Level.SEVERE, "Error while reading. Closing connection...", "error", e.getMessage());
                 break;
             }
         }
+        return false;
     }
 
-    private void processOut() {
-        while (!queue.isEmpty() && bufferOut.hasRemaining()) {
-            var data = queue.peekFirst();
-            if (data.position() == 0) {
-                queue.removeFirst();
-                continue;
-            }
-            BufferUtils.transferTo(data, bufferOut);
+    private void decoded(Frame frame) {
+        // the event is only filled when a recording asks for it, so a disabled event costs nothing
+        var event = new FrameDecodedEvent();
+        if (event.isEnabled()) {
+            event.remoteAddress = remoteAddress.toString();
+            event.opcode = frame.opcode().name();
+            event.size = frame.encodedSize();
+            event.commit();
         }
     }
 
+    private void processOut() {
+        lanes.drainTo(bufferOut, metrics);
+    }
+
     private void logAndClose(Level level, String message) {
+        logAndClose(level, message, null, null);
+    }
+
+    private void logAndClose(Level level, String message, String key, Object value) {
         if (logging) {
-            LOGGER.log(level, remoteAddress + " : " + message);
+            LOGGER.log(level, message, "remote", remoteAddress, key, value);
         }
         CloseableUtils.silentlyClose(sc);
+        dropQueue();
         onClose.run();
     }
 
+    private void dropQueue() {
+        lanes.clear(metrics);
+        if (stash != null) {
+            ReadBuffers.current().release(stash);
+            stash = null;
+        }
+        reader.reset(); // gives back the state of a frame partially received
+    }
 }
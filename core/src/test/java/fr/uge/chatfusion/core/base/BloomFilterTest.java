@@ -0,0 +1,70 @@
+package fr.uge.chatfusion.core.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BloomFilterTest {
+
+    private static List<String> names(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).toList();
+    }
+
+    @Test
+    public void noFalseNegativeTest() {
+        var names = new ArrayList<>(names("user", 1_000));
+        names.add("a\u00e9\u20ac\ud83d\ude00!");
+        names.add("");
+        var filter = BloomFilter.of(names);
+        for (var name : names) {
+            assertTrue(filter.mightContain(name), name);
+        }
+    }
+
+    @Test
+    public void falsePositiveRateTest() {
+        var filter = BloomFilter.of(names("user", 1_000));
+        var falsePositives = names("other", 10_000).stream().filter(filter::mightContain).count();
+        assertTrue(falsePositives < 300, falsePositives + " false positives");
+    }
+
+    @Test
+    public void emptyFilterTest() {
+        var filter = BloomFilter.of(List.of());
+        assertEquals(8, filter.size());
+        for (var name : names("user", 100)) {
+            assertFalse(filter.mightContain(name));
+        }
+    }
+
+    @Test
+    public void sizeLimitTest() {
+        var names = names("user", 10_000);
+        var filter = BloomFilter.of(names);
+        assertEquals(Sizes.MAX_FILE_BLOCK_SIZE, filter.size());
+        for (var name : names) {
+            assertTrue(filter.mightContain(name));
+        }
+    }
+
+    @Test
+    public void wrapTest() {
+        var filter = BloomFilter.of(names("user", 50));
+        var buffer = filter.toBuffer();
+        assertEquals(filter.size(), buffer.position());
+        var copy = BloomFilter.wrap(buffer);
+        assertEquals(filter, copy);
+        assertTrue(copy.mightContain("user7"));
+        assertEquals(filter.size(), buffer.position());
+
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.wrap(ByteBuffer.allocate(8)));
+    }
+}
@@ -0,0 +1,46 @@
+package fr.uge.chatfusion.core.base;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void burstThenDebtTest() {
+        var bucket = new TokenBucket(10, 5, 0);
+        for (var i = 0; i < 5; i++) {
+            assertEquals(0, bucket.take(1, 0));
+        }
+        assertEquals(SECOND / 10, bucket.take(1, 0));
+        assertEquals(3 * SECOND / 10, bucket.take(2, 0));
+    }
+
+    @Test
+    public void refillTest() {
+        var bucket = new TokenBucket(10, 5, 0);
+        bucket.take(5, 0);
+        assertEquals(0, bucket.take(1, SECOND / 10));
+        assertEquals(5.0, bucket.tokens(10 * SECOND));
+        assertEquals(SECOND / 10, bucket.take(6, 10 * SECOND));
+    }
+
+    @Test
+    public void debtIsPaidBackTest() {
+        var bucket = new TokenBucket(1_000, 100, 0);
+        var wait = bucket.take(300, 0);
+        assertEquals(SECOND / 5, wait);
+        assertEquals(0, bucket.take(0, wait));
+        assertEquals(0, bucket.take(1, wait + SECOND / 1_000));
+    }
+
+    @Test
+    public void invalidArgumentsTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Double.NaN, 5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 1, 0).take(-1, 0));
+    }
+}
@@ -0,0 +1,91 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.reader.Reader;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Measures the {@link FrameDecoder}, decoding the frames of {@link FrameDecoderTest} from buffers filled as a
+ * connection would be, by reads of the given size.
+ * <p>
+ * Run with {@code java -cp <core classes>:<core test classes> fr.uge.chatfusion.core.frame.FrameDecoderBenchmark
+ * [read size] [rounds]}.
+ */
+public final class FrameDecoderBenchmark {
+    private FrameDecoderBenchmark() {
+    }
+
+    private static int decode(Reader<Frame> reader, byte[] stream, ByteBuffer buffer, int readSize) {
+        var frames = 0;
+        buffer.clear();
+        for (var offset = 0; offset < stream.length; ) {
+            var count = Math.min(readSize, Math.min(buffer.remaining(), stream.length - offset));
+            buffer.put(stream, offset, count);
+            offset += count;
+            for (;;) {
+                var status = reader.process(buffer);
+                if (status != Reader.ProcessStatus.DONE) {
+                    if (status == Reader.ProcessStatus.ERROR) {
+                        throw new AssertionError("Malformed frame");
+                    }
+                    break;
+                }
+                reader.get();
+                reader.reset();
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    private static void run(String name, Supplier<Reader<Frame>> readers, byte[] stream, int readSize, int rounds) {
+        var reader = readers.get();
+        var buffer = ByteBuffer.allocate(64 * 1024);
+        for (var i = 0; i < rounds / 2; i++) { // warm up
+            decode(reader, stream, buffer, readSize);
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var thread = Thread.currentThread().getId();
+        var allocated = threads.getThreadAllocatedBytes(thread);
+        var start = System.nanoTime();
+        var frames = 0L;
+        for (var i = 0; i < rounds; i++) {
+            frames += decode(reader, stream, buffer, readSize);
+        }
+        var elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.out.printf(
+            "%-9s %8.1f ns/frame %8.1f MB/s %8d B/frame%n",
+            name,
+            (double) elapsed / frames,
+            (double) stream.length * rounds * 1_000 / elapsed,
+            allocated / frames
+        );
+    }
+
+    public static void main(String[] args) {
+        var readSize = args.length > 0 ? Integer.parseInt(args[0]) : 16 * 1024;
+        var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        // mostly messages, as the traffic of a server, with a few file blocks
+        var traffic = new ArrayList<Frame>();
+        for (var frame : FrameDecoderTest.frames()) {
+            var copies = switch (frame.opcode()) {
+                case PUBLIC_MESSAGE, DIRECT_MESSAGE -> 20;
+                default -> 1;
+            };
+            for (var i = 0; i < copies; i++) {
+                traffic.add(frame);
+            }
+        }
+        var stream = ByteBuffer.allocate(traffic.stream().mapToInt(Frame::encodedSize).sum());
+        traffic.forEach(frame -> frame.encodeTo(stream));
+
+        for (var i = 0; i < 3; i++) {
+            run("decoder", FrameDecoder::new, stream.array(), readSize, rounds);
+        }
+    }
+}
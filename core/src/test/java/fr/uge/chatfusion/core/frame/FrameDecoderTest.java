@@ -0,0 +1,252 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.base.BloomFilter;
+import fr.uge.chatfusion.core.base.Sizes;
+import fr.uge.chatfusion.core.reader.Reader;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class FrameDecoderTest {
+
+    static List<Frame> frames() {
+        var text = "a\u00e9\u20ac\ud83d\ude00!";
+        var v4 = new InetSocketAddress("127.0.0.1", 7777);
+        var v6 = new InetSocketAddress("::1", 65535);
+        var unix = UnixDomainSocketAddress.of("/tmp/chatfusion.sock");
+        var block = ByteBuffer.allocate(Sizes.MAX_FILE_BLOCK_SIZE);
+        for (var i = 0; i < block.capacity(); i++) {
+            block.put((byte) i);
+        }
+        return List.of(
+            new Frame.AnonymousLogin("alice"),
+            new Frame.LoginAccepted(text),
+            new Frame.LoginRefused(),
+            new Frame.PublicMessage("srv1", "alice", text),
+            new Frame.PublicMessage("srv1", "alice", "", new Trace(-42L, 3)),
+            new Frame.DirectMessage("srv1", "alice", "srv2", "bob", text.repeat(90)),
+            new Frame.FileOpen("srv1", "alice", "srv2", "bob", Long.MIN_VALUE, "file.txt", 3),
+            new Frame.FileBlock(-1, 6_000, block),
+            new Frame.FileBlock(1, 0, ByteBuffer.allocate(0)),
+            new Frame.FusionInit("srv1", v4, List.of("srv2", text)),
+            new Frame.FusionInitOk("srv2", v6, List.of()),
+            new Frame.FusionInitKo(),
+            new Frame.FusionInitFwd(v6),
+            new Frame.FusionRequest(v4),
+            new Frame.FusionRequest(unix),
+            new Frame.FusionChangeLeader(text, v4),
+            new Frame.FusionMerge("srv3"),
+            new Frame.DirectoryUpdate("srv2", BloomFilter.of(List.of("alice", text))),
+            new Frame.UnknownRecipient("srv1", "alice", "srv2", text),
+            new Frame.FileRefused("srv1", text, Long.MAX_VALUE)
+        );
+    }
+
+    private static byte[] encode(Frame frame) {
+        var buffer = ByteBuffer.allocate(frame.encodedSize());
+        frame.encodeTo(buffer);
+        return buffer.array();
+    }
+
+    // feeds the bytes to the reader in chunks of the given size
+    private static Frame read(Reader<Frame> reader, byte[] bytes, int chunk) {
+        var buffer = ByteBuffer.allocate(bytes.length);
+        for (var i = 0; i < bytes.length; i += chunk) {
+            buffer.put(bytes, i, Math.min(chunk, bytes.length - i));
+            var status = reader.process(buffer);
+            if (i + chunk < bytes.length) {
+                assertEquals(Reader.ProcessStatus.REFILL, status);
+            } else {
+                assertEquals(Reader.ProcessStatus.DONE, status);
+            }
+        }
+        assertEquals(0, buffer.position());
+        return reader.get();
+    }
+
+    private static void assertSameFrame(Frame expected, Frame actual) {
+        assertEquals(expected, actual);
+        assertArrayEquals(encode(expected), encode(actual));
+        if (expected instanceof Frame.FileBlock expectedBlock) {
+            var block = ((Frame.FileBlock) actual).block();
+            assertEquals(expectedBlock.block().position(), block.position());
+            assertEquals(block.capacity(), block.limit());
+        }
+    }
+
+    @Test
+    public void everyOpcodeIsCoveredTest() {
+        var opcodes = EnumSet.noneOf(FrameOpcode.class);
+        frames().forEach(frame -> opcodes.add(frame.opcode()));
+        assertEquals(EnumSet.allOf(FrameOpcode.class), opcodes);
+    }
+
+    // skips a field as described by its kind, independently of the encoder and of the decoder
+    private static void skip(FieldKind kind, ByteBuffer buffer) {
+        switch (kind) {
+            case INT -> buffer.getInt();
+            case LONG -> buffer.getLong();
+            case STRING, ENCODED_STRING, BYTES -> {
+                var size = buffer.getInt();
+                buffer.position(buffer.position() + size);
+            }
+            case ADDRESS -> {
+                var size = buffer.get();
+                if (size == 0) {
+                    skip(FieldKind.STRING, buffer);
+                } else {
+                    buffer.position(buffer.position() + size + Integer.BYTES);
+                }
+            }
+            case STRING_LIST -> {
+                for (var count = buffer.getInt(); count > 0; count--) {
+                    skip(FieldKind.STRING, buffer);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void encodingFollowsTheSchemaTest() {
+        for (var frame : frames()) {
+            var opcode = frame.opcode();
+            assertTrue(opcode.type().isInstance(frame), frame.toString());
+            var buffer = ByteBuffer.wrap(encode(frame));
+            assertEquals(opcode, FrameOpcode.get(buffer.get()));
+            for (var kind : opcode.fields()) {
+                skip(kind, buffer);
+            }
+            assertFalse(buffer.hasRemaining(), frame.toString());
+        }
+    }
+
+    @Test
+    public void roundTripTest() {
+        for (var frame : frames()) {
+            var bytes = encode(frame);
+            var decoded = read(new FrameDecoder(), bytes, bytes.length);
+            assertSameFrame(frame, decoded);
+            assertEquals(frame.encodedSize(), decoded.encodedSize());
+        }
+    }
+
+    @Test
+    public void splitFramesTest() {
+        for (var frame : frames()) {
+            var bytes = encode(frame);
+            for (var chunk = 1; chunk <= Math.min(bytes.length, 64); chunk++) {
+                assertSameFrame(frame, read(new FrameDecoder(), bytes, chunk));
+            }
+        }
+    }
+
+    // more decoders than scratches pooled, each one in the middle of a frame while the others decode theirs
+    @Test
+    public void interleavedDecodersTest() {
+        for (var frame : frames()) {
+            var bytes = encode(frame);
+            var decoders = new FrameDecoder[100];
+            var buffers = new ByteBuffer[decoders.length];
+            for (var i = 0; i < decoders.length; i++) {
+                decoders[i] = new FrameDecoder();
+                buffers[i] = ByteBuffer.allocate(bytes.length);
+            }
+            for (var offset = 0; offset < bytes.length; offset++) {
+                var expected = offset == bytes.length - 1 ? Reader.ProcessStatus.DONE : Reader.ProcessStatus.REFILL;
+                for (var i = 0; i < decoders.length; i++) {
+                    buffers[i].put(bytes[offset]);
+                    assertEquals(expected, decoders[i].process(buffers[i]));
+                }
+            }
+            for (var decoder : decoders) {
+                assertSameFrame(frame, decoder.get());
+            }
+        }
+    }
+
+    @Test
+    public void resetInTheMiddleOfAFrameTest() {
+        var decoder = new FrameDecoder();
+        var bytes = encode(frames().get(0));
+        var buffer = ByteBuffer.allocate(bytes.length).put(bytes, 0, bytes.length / 2);
+        assertEquals(Reader.ProcessStatus.REFILL, decoder.process(buffer));
+
+        decoder.reset();
+        for (var frame : frames()) {
+            assertSameFrame(frame, read(decoder, encode(frame), 7));
+            decoder.reset();
+        }
+    }
+
+    @Test
+    public void consecutiveFramesTest() {
+        var frames = frames();
+        var buffer = ByteBuffer.allocate(frames.stream().mapToInt(Frame::encodedSize).sum() + 3);
+        frames.forEach(frame -> frame.encodeTo(buffer));
+        buffer.put(new byte[] { 8, 0, 0 });
+
+        var decoder = new FrameDecoder();
+        for (var frame : frames) {
+            assertEquals(Reader.ProcessStatus.DONE, decoder.process(buffer));
+            assertSameFrame(frame, decoder.get());
+            decoder.reset();
+        }
+        assertEquals(Reader.ProcessStatus.REFILL, decoder.process(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    // the decoder compacts the buffer it processes, so the buffer is left untouched
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.allocate(buffer.capacity()).put(buffer.array(), 0, buffer.position());
+    }
+
+    @Test
+    public void malformedFramesTest() {
+        var malformed = List.of(
+            ByteBuffer.allocate(1).put((byte) 1),
+            ByteBuffer.allocate(8).put(FrameOpcode.ANONYMOUS_LOGIN.value()).putInt(-1),
+            ByteBuffer.allocate(8).put(FrameOpcode.LOGIN_ACCEPTED.value()).putInt(Sizes.MAX_MESSAGE_SIZE + 1),
+            ByteBuffer.allocate(16).put(FrameOpcode.FUSION_REQUEST.value()).put((byte) 5).put(new byte[5]).putInt(1),
+            ByteBuffer.allocate(16).put(FrameOpcode.FUSION_REQUEST.value()).put((byte) 4).putInt(0).putInt(70_000),
+            ByteBuffer.allocate(16).put(FrameOpcode.FUSION_REQUEST.value())
+                .put((byte) 0).putInt(3).put(new byte[] { 'a', 0, 'b' }),
+            ByteBuffer.allocate(32).put(FrameOpcode.FUSION_INIT_OK.value())
+                .putInt(1).put((byte) 'a')
+                .put((byte) 4).putInt(0).putInt(80)
+                .putInt(-1),
+            ByteBuffer.allocate(32).put(FrameOpcode.TRACED_PUBLIC_MESSAGE.value())
+                .putInt(0).putInt(0).putInt(0).putLong(0).putInt(-1),
+            ByteBuffer.allocate(32).put(FrameOpcode.FILE_BLOCK.value()).putLong(1).putLong(-1).putInt(0),
+            ByteBuffer.allocate(40).put(FrameOpcode.FILE_OPEN.value())
+                .putInt(0).putInt(0).putInt(0).putInt(0).putLong(1).putInt(0).putInt(0),
+            ByteBuffer.allocate(16).put(FrameOpcode.DIRECTORY_UPDATE.value()).putInt(1).put((byte) 'a').putInt(0)
+        );
+        for (var buffer : malformed) {
+            assertEquals(
+                Reader.ProcessStatus.ERROR,
+                new FrameDecoder().process(copy(buffer)),
+                Arrays.toString(buffer.array())
+            );
+        }
+    }
+
+    @Test
+    public void fileBlockTooLongTest() {
+        var buffer = ByteBuffer.allocate(32)
+            .put(FrameOpcode.FILE_BLOCK.value())
+            .putLong(1)
+            .putLong(0)
+            .putInt(Sizes.MAX_FILE_BLOCK_SIZE + 1);
+        assertEquals(Reader.ProcessStatus.ERROR, new FrameDecoder().process(buffer));
+    }
+}
@@ -0,0 +1,138 @@
+package fr.uge.chatfusion.core.frame;
+
+import fr.uge.chatfusion.core.base.EncodedString;
+import fr.uge.chatfusion.core.reader.Reader;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public final class FrameTest {
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        var copy = buffer.duplicate().flip();
+        var bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    private static Frame read(ByteBuffer buffer) {
+        var reader = Frame.reader();
+        assertEquals(Reader.ProcessStatus.DONE, reader.process(buffer));
+        return reader.get();
+    }
+
+    @Test
+    public void directMessageRoundTripTest() {
+        var buffer = Frame.DirectMessage.buffer("srv1", "alice", "srv2", "bob", "hello \u00e9");
+        var expected = bytes(buffer);
+        var frame = (Frame.DirectMessage) read(buffer);
+
+        assertEquals(new Frame.DirectMessage("srv1", "alice", "srv2", "bob", "hello \u00e9"), frame);
+        assertArrayEquals(expected, bytes(frame.buffer()));
+        assertEquals("srv2", frame.destinationServer());
+        assertEquals("hello \u00e9".getBytes(StandardCharsets.UTF_8).length, frame.messageSize());
+    }
+
+    @Test
+    public void fileTransferRoundTripTest() {
+        var open = Frame.FileOpen.buffer("srv1", "alice", "srv2", "bob", 42L, "file.txt", 3);
+        var expectedOpen = bytes(open);
+        var fileOpen = (Frame.FileOpen) read(open);
+
+        assertEquals(new Frame.FileOpen("srv1", "alice", "srv2", "bob", 42L, "file.txt", 3), fileOpen);
+        assertArrayEquals(expectedOpen, bytes(fileOpen.buffer()));
+
+        var block = ByteBuffer.allocate(10).put(new byte[] { 1, 2, 3 });
+        var fileBlock = (Frame.FileBlock) read(Frame.FileBlock.buffer(42L, 6L, block));
+
+        assertEquals(42L, fileBlock.fileId());
+        assertEquals(6L, fileBlock.offset());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, bytes(fileBlock.block()));
+    }
+
+    @Test
+    public void preEncodedIdentityTest() {
+        var server = EncodedString.of("srv1");
+        var user = EncodedString.of("alice");
+
+        var publicMessage = Frame.PublicMessage.buffer(server, user, "hi");
+        assertFalse(publicMessage.hasRemaining());
+        assertArrayEquals(bytes(Frame.PublicMessage.buffer("srv1", "alice", "hi")), bytes(publicMessage));
+
+        var directMessage = Frame.DirectMessage.buffer(server, user, "srv2", "bob", "hi");
+        assertFalse(directMessage.hasRemaining());
+        assertArrayEquals(bytes(Frame.DirectMessage.buffer("srv1", "alice", "srv2", "bob", "hi")), bytes(directMessage));
+
+        assertArrayEquals(bytes(Frame.LoginAccepted.buffer("srv1")), bytes(Frame.LoginAccepted.buffer(server)));
+    }
+
+    @Test
+    public void encodedSizeTest() {
+        var text = "a\u00e9\u20ac\ud83d\ude00!";
+        var address = new InetSocketAddress("127.0.0.1", 7777);
+        var frames = List.<Frame>of(
+            new Frame.AnonymousLogin(text),
+            new Frame.LoginRefused(),
+            new Frame.FusionInit(text, address, List.of("srv2", text)),
+            new Frame.FusionChangeLeader(text, address),
+            new Frame.PublicMessage("srv1", "alice", text),
+            new Frame.DirectMessage("srv1", "alice", "srv2", "bob", text),
+            new Frame.FileBlock(1, 0, ByteBuffer.allocate(10).put(new byte[10]))
+        );
+
+        for (var frame : frames) {
+            var buffer = ByteBuffer.allocate(frame.encodedSize());
+            frame.encodeTo(buffer);
+            assertFalse(buffer.hasRemaining());
+            assertEquals(frame, read(buffer.flip().compact()));
+        }
+        // unpaired surrogates are replaced as String.getBytes does
+        var invalid = "\ud83d!\ude00";
+        var expected = invalid.getBytes(StandardCharsets.UTF_8);
+        var buffer = Frame.AnonymousLogin.buffer(invalid);
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(expected, Arrays.copyOfRange(bytes(buffer), 5, 5 + expected.length));
+    }
+
+    @Test
+    public void encodeToAppendsTest() {
+        var block = ByteBuffer.allocate(8).put(new byte[] {1, 2, 3});
+        var frame = new Frame.FileBlock(42, 0, block);
+        var buffer = ByteBuffer.allocate(64).put((byte) 9);
+        frame.encodeTo(buffer);
+
+        assertEquals(1 + frame.encodedSize(), buffer.position());
+        assertEquals(3, block.position());
+        buffer.flip();
+        assertEquals(9, buffer.get());
+        assertArrayEquals(bytes(frame.buffer()), bytes(buffer.compact()));
+    }
+
+    @Test
+    public void tracedPublicMessageTest() {
+        var untraced = new Frame.PublicMessage("srv1", "alice", "hi");
+        var traced = untraced.withTrace(new Trace(123_456_789L, 2));
+        assertEquals(FrameOpcode.PUBLIC_MESSAGE, untraced.opcode());
+        assertEquals(FrameOpcode.TRACED_PUBLIC_MESSAGE, traced.opcode());
+        assertEquals(untraced.encodedSize() + Long.BYTES + Integer.BYTES, traced.encodedSize());
+
+        assertEquals(traced, read(traced.buffer()));
+        assertEquals(untraced, read(traced.withTrace(null).buffer()));
+        assertEquals(3, traced.withTrace(traced.trace().nextHop()).trace().hopCount());
+    }
+
+    @Test
+    public void traceNextHopSaturatesTest() {
+        var trace = new Trace(123_456_789L, Integer.MAX_VALUE);
+        assertEquals(trace, trace.nextHop());
+        assertEquals(new Trace(123_456_789L, 1), new Trace(123_456_789L, 0).nextHop());
+    }
+}
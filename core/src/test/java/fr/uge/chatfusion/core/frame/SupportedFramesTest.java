@@ -0,0 +1,69 @@
+package fr.uge.chatfusion.core.frame;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SupportedFramesTest {
+
+    private static class MessageVisitor implements FrameVisitor {
+        @Override
+        public void visit(Frame.PublicMessage frame) {
+        }
+    }
+
+    private static final class LoginVisitor extends MessageVisitor {
+        @Override
+        public void visit(Frame.AnonymousLogin frame) {
+        }
+    }
+
+    @Test
+    public void overriddenMethodsTest() {
+        var supported = SupportedFrames.of(new MessageVisitor());
+
+        // the traced messages are visited as public messages
+        assertTrue(supported.contains(FrameOpcode.PUBLIC_MESSAGE));
+        assertTrue(supported.contains(FrameOpcode.TRACED_PUBLIC_MESSAGE));
+        assertFalse(supported.contains(FrameOpcode.ANONYMOUS_LOGIN));
+        assertFalse(supported.contains(FrameOpcode.DIRECT_MESSAGE));
+    }
+
+    @Test
+    public void inheritedMethodsTest() {
+        var supported = SupportedFrames.of(new LoginVisitor());
+
+        assertTrue(supported.contains(FrameOpcode.PUBLIC_MESSAGE));
+        assertTrue(supported.contains(FrameOpcode.ANONYMOUS_LOGIN));
+        assertFalse(supported.contains(FrameOpcode.FILE_BLOCK));
+    }
+
+    @Test
+    public void defaultVisitorTest() {
+        var supported = SupportedFrames.of(new FrameVisitor() {
+        });
+
+        for (var opcode : FrameOpcode.values()) {
+            assertFalse(supported.contains(opcode));
+        }
+    }
+
+    @Test
+    public void cachedByClassTest() {
+        assertSame(SupportedFrames.of(new MessageVisitor()), SupportedFrames.of(new MessageVisitor()));
+    }
+
+    @Test
+    public void opcodeLookupTest() {
+        for (var opcode : FrameOpcode.values()) {
+            assertSame(opcode, FrameOpcode.lookup(opcode.value()));
+            assertEquals(opcode, FrameOpcode.get(opcode.value()));
+        }
+        assertNull(FrameOpcode.lookup((byte) 0x7F));
+        assertNull(FrameOpcode.lookup((byte) -1));
+    }
+}
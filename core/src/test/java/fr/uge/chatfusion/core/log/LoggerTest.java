@@ -0,0 +1,73 @@
+package fr.uge.chatfusion.core.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class LoggerTest {
+
+    @Test
+    public void structuredFieldsTest() {
+        var lines = Collections.synchronizedList(new ArrayList<String>());
+        var appender = new AsyncAppender(16, lines::add);
+        var logger = new Logger("Test", appender);
+        logger.log(Level.WARNING, "Message too long", "sender", "bob", "remote", "a b");
+        logger.log(Level.SEVERE, () -> "built " + 42);
+        assertTrue(appender.flush(1_000));
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(" WARNING Test: Message too long sender=bob remote=\"a b\""));
+        assertTrue(lines.get(1).endsWith(" SEVERE Test: built 42"));
+    }
+
+    @Test
+    public void disabledLevelTest() {
+        var lines = Collections.synchronizedList(new ArrayList<String>());
+        var appender = new AsyncAppender(16, lines::add);
+        var logger = new Logger("Test", appender);
+        logger.log(Level.FINE, "ignored");
+        logger.log(Level.FINE, () -> {
+            throw new AssertionError("the supplier of a disabled level must not be called");
+        });
+        assertFalse(logger.isLoggable(Level.FINE));
+        assertTrue(appender.flush(1_000));
+        assertEquals(List.of(), lines);
+    }
+
+    @Test
+    public void fullBufferDropsTest() throws InterruptedException {
+        var lines = Collections.synchronizedList(new ArrayList<String>());
+        var blocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var appender = new AsyncAppender(4, line -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            lines.add(line);
+        });
+        var logger = new Logger("Test", appender);
+        logger.log(Level.INFO, "first");
+        blocked.await();
+        for (var i = 0; i < 10; i++) {
+            logger.log(Level.INFO, "entry", "index", i);
+        }
+        release.countDown();
+        assertTrue(appender.flush(1_000));
+        logger.log(Level.INFO, "last");
+        assertTrue(appender.flush(1_000));
+
+        assertEquals(7, lines.size());
+        assertTrue(lines.get(5).endsWith("6 log entries dropped"));
+        assertTrue(lines.get(6).endsWith("last"));
+    }
+}
@@ -0,0 +1,84 @@
+package fr.uge.chatfusion.core.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class MetricsRegistryTest {
+
+    @Test
+    public void sameNameSameMetricTest() {
+        var registry = new MetricsRegistry();
+        assertSame(registry.counter("a"), registry.counter("a"));
+        assertSame(registry.gauge("a"), registry.gauge("a"));
+        assertSame(registry.histogram("a", 1, 2), registry.histogram("a", 5));
+    }
+
+    @Test
+    public void histogramBucketsTest() {
+        var histogram = new MetricsRegistry().histogram("h", Histogram.exponentialBounds(3));
+        for (var value : new long[] {0, 1, 2, 3, 4, 5, 100}) {
+            histogram.record(value);
+        }
+
+        var snapshot = histogram.snapshot();
+        assertArrayEquals(new long[] {1, 2, 4}, snapshot.bounds());
+        assertArrayEquals(new long[] {2, 1, 2, 2}, snapshot.counts());
+        assertEquals(7L, snapshot.count());
+        assertEquals(115L, snapshot.sum());
+    }
+
+    @Test
+    public void snapshotTest() {
+        var registry = new MetricsRegistry();
+        registry.counter("b").add(3);
+        registry.counter("a").increment();
+        var gauge = registry.gauge("g");
+        gauge.add(5);
+        gauge.decrement();
+
+        var snapshot = registry.snapshot();
+        assertEquals("a", snapshot.counters().keySet().iterator().next());
+        assertEquals(3L, snapshot.counters().get("b"));
+        assertEquals(4L, snapshot.gauges().get("g"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("b").add(-1));
+    }
+
+    @Test
+    public void latencyPercentilesTest() {
+        var latency = new MetricsRegistry().latency("l");
+        for (var i = 1; i <= 1_000; i++) {
+            latency.record(i);
+        }
+        latency.record(1_000_000);
+
+        var snapshot = latency.snapshot();
+        assertEquals(1_001L, snapshot.count());
+        // the values are known with a relative error below 1/32
+        assertTrue(Math.abs(snapshot.p50() - 501) <= 501 / 32);
+        assertTrue(Math.abs(snapshot.p99() - 991) <= 991 / 32);
+        assertTrue(snapshot.p999() >= 1_000 && snapshot.p999() <= 1_000 + 1_000 / 32);
+        assertTrue(snapshot.max() >= 1_000_000 && snapshot.max() <= 1_000_000 + 1_000_000 / 32);
+    }
+
+    @Test
+    public void prometheusFormatTest() {
+        var registry = new MetricsRegistry();
+        registry.counter("connection.bytes.in").add(12);
+        var histogram = registry.histogram("fan.out", 1, 4);
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(9);
+
+        var text = registry.snapshot().formatPrometheus();
+        assertTrue(text.contains("# TYPE connection_bytes_in counter\nconnection_bytes_in 12\n"));
+        assertTrue(text.contains("fan_out_bucket{le=\"1\"} 1\n"));
+        assertTrue(text.contains("fan_out_bucket{le=\"4\"} 2\n"));
+        assertTrue(text.contains("fan_out_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("fan_out_sum 13\nfan_out_count 3\n"));
+    }
+}
@@ -0,0 +1,222 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.FrameVisitor;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class LoopbackTest {
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 40_000);
+    private static final InetSocketAddress SERVER = new InetSocketAddress("127.0.0.1", 7_777);
+
+    private static final class Recorder implements FrameVisitor {
+        private final List<String> received = new ArrayList<>();
+
+        @Override
+        public void visit(Frame.PublicMessage frame) {
+            received.add(frame.message());
+        }
+
+        @Override
+        public void visit(Frame.LoginAccepted frame) {
+            received.add("accepted " + frame.serverName());
+        }
+    }
+
+    private static void send(LoopbackController controller, int count) {
+        for (var i = 0; i < count; i++) {
+            controller.queueFrame(new Frame.PublicMessage("srv", "bob", "m" + i));
+        }
+    }
+
+    @Test
+    public void framesHandedOverTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var recorder = new Recorder();
+        link.second().setVisitor(recorder);
+
+        assertEquals(SERVER, link.first().remoteAddress());
+        assertEquals(CLIENT, link.second().remoteAddress());
+        send(link.first(), 2);
+        link.first().queueData(Frame.LoginAccepted.buffer("srv"));
+        assertTrue(recorder.received.isEmpty());
+
+        assertEquals(1, loopback.run());
+        assertEquals(List.of("m0", "m1", "accepted srv"), recorder.received);
+        assertEquals(3, loopback.dispatched());
+        assertTrue(loopback.isIdle());
+    }
+
+    @Test
+    public void echoTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var client = new Recorder();
+        link.first().setVisitor(client);
+        link.second().setVisitor(new FrameVisitor() {
+            @Override
+            public void visit(Frame.PublicMessage frame) {
+                link.second().queueFrame(frame);
+            }
+        });
+
+        send(link.first(), 3);
+        assertEquals(2, loopback.run());
+        assertEquals(List.of("m0", "m1", "m2"), client.received);
+    }
+
+    @Test
+    public void readBudgetTest() {
+        var loopback = new Loopback();
+        var busy = loopback.link(CLIENT, SERVER);
+        var quiet = loopback.link(CLIENT, SERVER);
+        var busyRecorder = new Recorder();
+        var quietRecorder = new Recorder();
+        busy.second().setVisitor(busyRecorder);
+        quiet.second().setVisitor(quietRecorder);
+
+        send(busy.first(), 100);
+        send(quiet.first(), 1);
+        assertTrue(loopback.step());
+
+        // the quiet connection does not wait for the busy one to dispatch all its frames
+        assertEquals(64, busyRecorder.received.size());
+        assertEquals(1, quietRecorder.received.size());
+        assertEquals(1, loopback.run());
+        assertEquals(100, busyRecorder.received.size());
+    }
+
+    @Test
+    public void closeAfterFramesSentTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var recorder = new Recorder();
+        var closed = new ArrayList<String>();
+        link.first().setOnClose(() -> closed.add("first"));
+        link.second().setOnClose(() -> closed.add("second"));
+        link.second().setVisitor(recorder);
+
+        send(link.first(), 2);
+        link.first().closeWhenAllSent();
+        assertEquals(List.of("first"), closed);
+        assertThrows(IllegalStateException.class, () -> send(link.first(), 1));
+
+        loopback.run();
+        assertEquals(List.of("m0", "m1"), recorder.received);
+        assertEquals(List.of("first", "second"), closed);
+
+        // a closed connection is closed once
+        link.second().close();
+        assertEquals(List.of("first", "second"), closed);
+    }
+
+    @Test
+    public void closeDropsFramesNotDispatchedTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var recorder = new Recorder();
+        link.second().setVisitor(recorder);
+
+        send(link.first(), 2);
+        link.second().close();
+        loopback.run();
+        assertTrue(recorder.received.isEmpty());
+
+        // the frames sent to a closed peer are lost, as with a socket closed remotely
+        var closed = new boolean[1];
+        var other = loopback.link(CLIENT, SERVER);
+        other.first().setOnClose(() -> closed[0] = true);
+        other.second().close();
+        send(other.first(), 1);
+        loopback.run();
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void pausedReadsTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var recorder = new Recorder();
+        link.second().setVisitor(new FrameVisitor() {
+            @Override
+            public void visit(Frame.PublicMessage frame) {
+                recorder.visit(frame);
+                link.second().pauseReads();
+            }
+        });
+
+        send(link.first(), 3);
+        loopback.run();
+        assertEquals(List.of("m0"), recorder.received);
+        assertTrue(loopback.isIdle());
+
+        link.second().resumeReads();
+        loopback.run();
+        assertEquals(List.of("m0", "m1"), recorder.received);
+    }
+
+    @Test
+    public void unsupportedFrameClosesTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var recorder = new Recorder();
+        var closed = new boolean[1];
+        link.second().setVisitor(recorder);
+        link.second().setOnClose(() -> closed[0] = true);
+
+        link.first().queueFrame(new Frame.FusionMerge("srv"));
+        send(link.first(), 1);
+        loopback.run();
+        assertTrue(closed[0]);
+        assertTrue(recorder.received.isEmpty());
+    }
+
+    // each peer reads the block through its own position, the sender and the other peers keep theirs
+    @Test
+    public void buffersNotSharedTest() {
+        var loopback = new Loopback();
+        var first = loopback.link(CLIENT, SERVER);
+        var second = loopback.link(CLIENT, SERVER);
+        var positions = new ArrayList<Integer>();
+        var reader = new FrameVisitor() {
+            @Override
+            public void visit(Frame.FileBlock frame) {
+                var block = frame.block().flip();
+                positions.add(block.remaining());
+                block.position(block.limit());
+            }
+        };
+        first.second().setVisitor(reader);
+        second.second().setVisitor(reader);
+
+        var block = ByteBuffer.allocate(16).put(new byte[] { 1, 2, 3 });
+        var fileBlock = new Frame.FileBlock(1, 0, block);
+        first.first().queueFrame(fileBlock);
+        second.first().queueFrame(fileBlock);
+        loopback.run();
+        assertEquals(List.of(3, 3), positions);
+        assertEquals(3, block.position());
+        assertEquals(16, block.limit());
+    }
+
+    @Test
+    public void partialDataTest() {
+        var loopback = new Loopback();
+        var link = loopback.link(CLIENT, SERVER);
+        var data = Frame.LoginAccepted.buffer("srv");
+        data.position(data.position() - 1);
+
+        assertThrows(IllegalArgumentException.class, () -> link.first().queueData(data));
+        assertFalse(loopback.step());
+    }
+}
@@ -0,0 +1,111 @@
+package fr.uge.chatfusion.core.selection;
+
+import fr.uge.chatfusion.core.frame.FrameOpcode;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class OutputLanesTest {
+    private static final int SIZE = 1_024;
+
+    private static void queue(OutputLanes lanes, FrameOpcode opcode, ConnectionMetrics metrics) {
+        var chunk = lanes.chunkFor(OutputLanes.Lane.of(opcode), SIZE, metrics);
+        chunk.put(opcode.value());
+        chunk.put(new byte[SIZE - 1]);
+    }
+
+    private static void drainOnce(OutputLanes lanes, ConnectionMetrics metrics, ByteBuffer out) {
+        var bufferOut = ByteBuffer.allocate(300);
+        lanes.drainTo(bufferOut, metrics);
+        out.put(bufferOut.flip());
+    }
+
+    // the lanes of the frames of the output, every frame being SIZE bytes long
+    private static String drain(OutputLanes lanes, ConnectionMetrics metrics, ByteBuffer out) {
+        while (!lanes.isEmpty()) {
+            drainOnce(lanes, metrics, out);
+        }
+        out.flip();
+        var opcodes = new StringBuilder();
+        for (var i = 0; i < out.limit(); i += SIZE) {
+            opcodes.append(OutputLanes.Lane.of(out.get(i)).name().charAt(0));
+        }
+        return opcodes.toString();
+    }
+
+    @Test
+    public void laneOfOpcodeTest() {
+        assertEquals(OutputLanes.Lane.CONTROL, OutputLanes.Lane.of(FrameOpcode.FUSION_INIT));
+        assertEquals(OutputLanes.Lane.CONTROL, OutputLanes.Lane.of(FrameOpcode.LOGIN_ACCEPTED.value()));
+        assertEquals(OutputLanes.Lane.INTERACTIVE, OutputLanes.Lane.of(FrameOpcode.DIRECT_MESSAGE));
+        assertEquals(OutputLanes.Lane.INTERACTIVE, OutputLanes.Lane.of(FrameOpcode.UNKNOWN_RECIPIENT));
+        assertEquals(OutputLanes.Lane.INTERACTIVE, OutputLanes.Lane.of(FrameOpcode.FILE_REFUSED));
+        assertEquals(OutputLanes.Lane.CONTROL, OutputLanes.Lane.of(FrameOpcode.DIRECTORY_UPDATE));
+        assertEquals(OutputLanes.Lane.BULK, OutputLanes.Lane.of(FrameOpcode.FILE_BLOCK.value()));
+        assertEquals(OutputLanes.Lane.CONTROL, OutputLanes.Lane.of((byte) -1));
+    }
+
+    @Test
+    public void controlOvertakesBulkTest() {
+        var metrics = new ConnectionMetrics(new MetricsRegistry());
+        var lanes = new OutputLanes(SIZE);
+        for (var i = 0; i < 4; i++) {
+            queue(lanes, FrameOpcode.FILE_BLOCK, metrics);
+        }
+        var out = ByteBuffer.allocate(100 * SIZE);
+        drainOnce(lanes, metrics, out);
+
+        // the block being moved is finished before the control frame
+        queue(lanes, FrameOpcode.FUSION_REQUEST, metrics);
+        assertEquals("BCBBB", drain(lanes, metrics, out));
+    }
+
+    @Test
+    public void weightedDrainTest() {
+        var metrics = new ConnectionMetrics(new MetricsRegistry());
+        var lanes = new OutputLanes(SIZE);
+        for (var i = 0; i < 12; i++) {
+            queue(lanes, FrameOpcode.FILE_BLOCK, metrics);
+            queue(lanes, FrameOpcode.PUBLIC_MESSAGE, metrics);
+        }
+        assertEquals("IIIIBIIIIBIIIIBBBBBBBBBB", drain(lanes, metrics, ByteBuffer.allocate(100 * SIZE)));
+    }
+
+    @Test
+    public void chunkHoldsWholeFramesTest() {
+        var metrics = new ConnectionMetrics(new MetricsRegistry());
+        var lanes = new OutputLanes(2 * SIZE);
+        var first = lanes.chunkFor(OutputLanes.Lane.BULK, SIZE, metrics);
+        first.position(SIZE + 1);
+        var second = lanes.chunkFor(OutputLanes.Lane.BULK, SIZE, metrics);
+        assertNotSame(first, second);
+        assertEquals(2, lanes.depth(OutputLanes.Lane.BULK));
+        assertTrue(lanes.chunkFor(OutputLanes.Lane.BULK, 3 * SIZE, metrics).capacity() >= 3 * SIZE);
+    }
+
+    @Test
+    public void laneMetricsTest() {
+        var registry = new MetricsRegistry();
+        var metrics = new ConnectionMetrics(registry);
+        var lanes = new OutputLanes(SIZE);
+        queue(lanes, FrameOpcode.FILE_BLOCK, metrics);
+        queue(lanes, FrameOpcode.FILE_BLOCK, metrics);
+        queue(lanes, FrameOpcode.FUSION_MERGE, metrics);
+        assertEquals(2, registry.gauge("connection.queue.bulk.chunks").value());
+        assertEquals(1, registry.gauge("connection.queue.control.chunks").value());
+
+        lanes.drainTo(ByteBuffer.allocate(SIZE + 1), metrics);
+        assertEquals(0, registry.gauge("connection.queue.control.chunks").value());
+        assertEquals(2, registry.gauge("connection.queue.bulk.chunks").value());
+
+        lanes.clear(metrics);
+        assertTrue(lanes.isEmpty());
+        assertEquals(0, registry.gauge("connection.queue.bulk.chunks").value());
+        assertEquals(0, registry.gauge("connection.queue.chunks").value());
+    }
+}
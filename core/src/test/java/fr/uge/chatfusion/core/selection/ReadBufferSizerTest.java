@@ -0,0 +1,52 @@
+package fr.uge.chatfusion.core.selection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ReadBufferSizerTest {
+
+    @Test
+    public void growsWhenFilledTest() {
+        var sizer = new ReadBufferSizer(ReadBufferSizer.MIN_SIZE);
+        assertEquals(1_024, sizer.record(512, true));
+        assertEquals(2_048, sizer.record(1_024, true));
+        assertEquals(4_096, sizer.record(2_048, true));
+        for (var i = 0; i < 10; i++) {
+            sizer.record(sizer.size(), true);
+        }
+        assertEquals(ReadBufferSizer.MAX_SIZE, sizer.size());
+    }
+
+    @Test
+    public void shrinksAfterSmallReadsTest() {
+        var sizer = new ReadBufferSizer(4_096);
+        for (var i = 1; i < ReadBufferSizer.SHRINK_AFTER; i++) {
+            assertEquals(4_096, sizer.record(100, false));
+        }
+        assertEquals(2_048, sizer.record(100, false));
+        for (var i = 0; i < 10 * ReadBufferSizer.SHRINK_AFTER; i++) {
+            sizer.record(0, false);
+        }
+        assertEquals(ReadBufferSizer.MIN_SIZE, sizer.size());
+    }
+
+    @Test
+    public void largeReadResetsShrinkTest() {
+        var sizer = new ReadBufferSizer(4_096);
+        for (var i = 1; i < ReadBufferSizer.SHRINK_AFTER; i++) {
+            sizer.record(100, false);
+        }
+        sizer.record(3_000, false);
+        for (var i = 1; i < ReadBufferSizer.SHRINK_AFTER; i++) {
+            assertEquals(4_096, sizer.record(100, false));
+        }
+    }
+
+    @Test
+    public void invalidInitialSizeTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ReadBufferSizer(ReadBufferSizer.MIN_SIZE - 1));
+        assertThrows(IllegalArgumentException.class, () -> new ReadBufferSizer(ReadBufferSizer.MAX_SIZE + 1));
+    }
+}
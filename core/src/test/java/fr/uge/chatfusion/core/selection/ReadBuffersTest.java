@@ -0,0 +1,47 @@
+package fr.uge.chatfusion.core.selection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class ReadBuffersTest {
+
+    @Test
+    public void stashKeepsRemainderTest() {
+        var buffers = ReadBuffers.current();
+        var shared = buffers.shared();
+        shared.put(new byte[] {1, 2, 3});
+
+        var stash = buffers.stash(shared);
+        assertEquals(0, shared.position());
+        assertEquals(3, stash.position());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), stash.flip());
+    }
+
+    @Test
+    public void stashIsPooledTest() {
+        var buffers = ReadBuffers.current();
+        var stash = buffers.stash(ByteBuffer.allocate(16).put((byte) 1));
+        buffers.release(stash);
+        assertSame(stash, buffers.stash(ByteBuffer.allocate(16).put((byte) 2)));
+
+        var large = buffers.stash(ByteBuffer.allocate(4_096).position(ReadBuffers.STASH_SIZE + 1));
+        assertEquals(ReadBuffers.STASH_SIZE + 1, large.capacity());
+        buffers.release(large);
+        assertNotSame(large, buffers.stash(ByteBuffer.allocate(16).put((byte) 3)));
+    }
+
+    @Test
+    public void sharedPerThreadTest() throws InterruptedException {
+        var other = new ReadBuffers[1];
+        var thread = new Thread(() -> other[0] = ReadBuffers.current());
+        thread.start();
+        thread.join();
+        assertSame(ReadBuffers.current(), ReadBuffers.current());
+        assertNotSame(ReadBuffers.current(), other[0]);
+    }
+}
@@ -0,0 +1,26 @@
+package fr.uge.chatfusion.loadgen;
+
+import java.io.IOException;
+
+public final class Application {
+    private Application() {
+        throw new AssertionError("No instances.");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(LoadConfig.USAGE);
+            return;
+        }
+
+        try {
+            new LoadGenerator(config).launch();
+        } catch (IOException e) {
+            System.err.println("Error while creating the load generator");
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package fr.uge.chatfusion.loadgen;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Starts servers as child processes on loopback ports, fuses them following a scenario through their admin endpoint
+ * and measures the time the group takes to converge, then runs a load on the fused group. The CPU time of each
+ * server is read from the operating system, which gives the share of the work done by the leader.
+ */
+public final class FusionHarness {
+    private static final long POLL_MILLIS = 50;
+    private static final long RETRY_MILLIS = 500;
+
+    private final HarnessConfig config;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final InetAddress host;
+
+    private FusionHarness(HarnessConfig config) throws IOException {
+        this.config = config;
+        this.host = InetAddress.getLocalHost();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        HarnessConfig config;
+        try {
+            config = HarnessConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(HarnessConfig.USAGE);
+            return;
+        }
+        System.out.println("Server logs in " + config.logs());
+        var harness = new FusionHarness(config);
+        for (var scenario : config.scenarios()) {
+            harness.run(scenario);
+        }
+    }
+
+    enum Scenario {
+        /**
+         * Each server fuses with the previous one, the group grows one server at a time.
+         */
+        CHAIN,
+        /**
+         * Every server asks the first one at the same time, the rejected ones retry until the group is complete.
+         */
+        SIMULTANEOUS,
+        /**
+         * Two groups of half the servers are built, then merged.
+         */
+        GROUPS
+    }
+
+    private void run(Scenario scenario) throws IOException, InterruptedException {
+        System.out.println();
+        System.out.println("== " + scenario.name().toLowerCase() + ", " + config.servers() + " servers");
+        var servers = start();
+        try {
+            var cpu = cpuTimes(servers);
+            var start = System.nanoTime();
+            switch (scenario) {
+                case CHAIN -> chain(servers);
+                case SIMULTANEOUS -> simultaneous(servers);
+                case GROUPS -> groups(servers);
+            }
+            var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            var leader = leaderIndex(servers);
+            System.out.printf(
+                "Converged in %d ms, leader %s used %.0f%% of the CPU of the servers%n",
+                elapsed,
+                servers.get(leader).name(),
+                leaderShare(servers, cpu, leader)
+            );
+
+            if (config.users() > 0) {
+                load(servers, leader);
+            }
+        } finally {
+            for (var server : servers) {
+                server.shutdown();
+            }
+        }
+    }
+
+    private List<ServerProcess> start() throws IOException, InterruptedException {
+        var servers = new ArrayList<ServerProcess>();
+        try {
+            for (var i = 0; i < config.servers(); i++) {
+                servers.add(ServerProcess.start(
+                    "h" + i,
+                    new InetSocketAddress(host, config.port(i)),
+                    config.adminPort(i),
+                    config.classpath(),
+                    config.jvmOptions(),
+                    config.logs(),
+                    client
+                ));
+            }
+            for (var server : servers) {
+                server.awaitReady(TimeUnit.SECONDS.toMillis(30));
+            }
+        } catch (IOException | InterruptedException e) {
+            servers.forEach(ServerProcess::destroy);
+            throw e;
+        }
+        return servers;
+    }
+
+    private void chain(List<ServerProcess> servers) throws IOException, InterruptedException {
+        var slowest = 0L;
+        for (var i = 1; i < servers.size(); i++) {
+            var start = System.nanoTime();
+            servers.get(i).fusion(servers.get(i - 1).address());
+            awaitConvergence(servers.subList(0, i + 1), () -> {
+            });
+            slowest = Math.max(slowest, System.nanoTime() - start);
+        }
+        System.out.println("Slowest fusion: " + TimeUnit.NANOSECONDS.toMillis(slowest) + " ms");
+    }
+
+    private void simultaneous(List<ServerProcess> servers) throws IOException, InterruptedException {
+        var first = servers.get(0).address();
+        for (var server : servers.subList(1, servers.size())) {
+            server.fusion(first);
+        }
+        var retries = new int[1];
+        awaitConvergence(servers, () -> {
+            // every leader outside of the group of the first server asks again
+            var main = servers.get(0).topology().leaderName();
+            for (var server : servers.subList(1, servers.size())) {
+                var topology = server.topology();
+                if (topology.isLeader() && !topology.fusing() && !topology.name().equals(main)) {
+                    server.fusion(first);
+                    retries[0]++;
+                }
+            }
+        });
+        System.out.println("Fusion requests retried: " + retries[0]);
+    }
+
+    private void groups(List<ServerProcess> servers) throws IOException, InterruptedException {
+        var half = servers.size() / 2;
+        var first = servers.subList(0, half);
+        var second = servers.subList(half, servers.size());
+        var start = System.nanoTime();
+        for (var i = 1; i < second.size(); i++) {
+            if (i < first.size()) {
+                first.get(i).fusion(first.get(i - 1).address());
+            }
+            second.get(i).fusion(second.get(i - 1).address());
+            awaitConvergence(first.subList(0, Math.min(i + 1, first.size())), () -> {
+            });
+            awaitConvergence(second.subList(0, i + 1), () -> {
+            });
+        }
+        System.out.println(
+            "Groups of " + first.size() + " and " + second.size() + " built in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"
+        );
+
+        start = System.nanoTime();
+        second.get(0).fusion(first.get(0).address());
+        awaitConvergence(servers, () -> {
+        });
+        System.out.println("Groups merged in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private void load(List<ServerProcess> servers, int leader) throws IOException, InterruptedException {
+        var addresses = servers.stream().map(ServerProcess::address).toList();
+        var load = new LoadConfig(
+            addresses,
+            config.users(),
+            2,
+            config.rate(),
+            config.durationSeconds(),
+            5,
+            90,
+            9,
+            1,
+            64,
+            4
+        );
+        var cpu = cpuTimes(servers);
+        new LoadGenerator(load).launch();
+        System.out.printf(
+            "Leader %s used %.0f%% of the CPU of the servers during the load%n",
+            servers.get(leader).name(),
+            leaderShare(servers, cpu, leader)
+        );
+    }
+
+    /*
+     * The group has converged when it has a single leader, that every other server knows, and that no fusion is in
+     * progress anywhere in the group.
+     */
+    private void awaitConvergence(List<ServerProcess> group, Retry retry) throws IOException, InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.timeoutSeconds());
+        var nextRetry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS);
+        while (!isConverged(group)) {
+            if (System.nanoTime() > deadline) {
+                var state = new StringBuilder();
+                for (var server : group) {
+                    state.append("\n  ").append(server.topology());
+                }
+                throw new IOException("The group did not converge in " + config.timeoutSeconds() + " s:" + state);
+            }
+            if (System.nanoTime() > nextRetry) {
+                retry.run();
+                nextRetry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS);
+            }
+            TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+        }
+    }
+
+    private static boolean isConverged(List<ServerProcess> group) throws IOException, InterruptedException {
+        var topologies = new ArrayList<ServerProcess.Topology>();
+        for (var server : group) {
+            topologies.add(server.topology());
+        }
+        var leaders = topologies.stream().filter(ServerProcess.Topology::isLeader).toList();
+        if (leaders.size() != 1 || leaders.get(0).memberCount() != group.size() - 1) {
+            return false;
+        }
+        var leader = leaders.get(0).name();
+        return topologies.stream().allMatch(topology -> !topology.fusing() && topology.leaderName().equals(leader));
+    }
+
+    private static int leaderIndex(List<ServerProcess> servers) throws IOException, InterruptedException {
+        for (var i = 0; i < servers.size(); i++) {
+            if (servers.get(i).topology().isLeader()) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No leader");
+    }
+
+    private static Duration[] cpuTimes(List<ServerProcess> servers) {
+        return servers.stream().map(ServerProcess::cpuTime).toArray(Duration[]::new);
+    }
+
+    private static double leaderShare(List<ServerProcess> servers, Duration[] before, int leader) {
+        Objects.requireNonNull(before);
+        var total = 0L;
+        var leaderTime = 0L;
+        for (var i = 0; i < servers.size(); i++) {
+            var used = servers.get(i).cpuTime().minus(before[i]).toNanos();
+            total += used;
+            if (i == leader) {
+                leaderTime = used;
+            }
+        }
+        return total == 0 ? 0 : 100.0 * leaderTime / total;
+    }
+
+    @FunctionalInterface
+    private interface Retry {
+        void run() throws IOException, InterruptedException;
+    }
+}
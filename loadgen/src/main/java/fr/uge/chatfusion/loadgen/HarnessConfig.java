@@ -0,0 +1,115 @@
+package fr.uge.chatfusion.loadgen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+record HarnessConfig(
+    int servers,
+    List<FusionHarness.Scenario> scenarios,
+    int basePort,
+    int users,
+    double rate,
+    int durationSeconds,
+    int timeoutSeconds,
+    List<String> jvmOptions,
+    String classpath,
+    Path logs
+) {
+    static final String USAGE = """
+        Usage : ChatFusionFusionHarness [options]
+          --servers <n>          servers to start as child processes (default 8)
+          --scenario <name>      chain, simultaneous, groups or all (default all)
+          --base-port <port>     first chat port, the admin ports follow the chat ports (default 9100)
+          --users <n>            users of the load run on the fused group, 0 to skip it (default 200)
+          --rate <n>             operations per second of the load run (default 500)
+          --duration <s>         duration of the load run, in seconds (default 10)
+          --timeout <s>          maximal time for a scenario to converge (default 120)
+          --jvm-options <opts>   options of the server virtual machines (default "-Xmx64m -Xss512k")
+          --classpath <path>     classpath of the servers (default the classpath of the harness)
+          --logs <dir>           directory of the server logs (default a temporary directory)""";
+
+    HarnessConfig {
+        scenarios = List.copyOf(scenarios);
+        jvmOptions = List.copyOf(jvmOptions);
+        Objects.requireNonNull(classpath);
+        Objects.requireNonNull(logs);
+        if (servers < 2) {
+            throw new IllegalArgumentException("At least two servers are needed");
+        }
+        if (basePort <= 0 || basePort + 2 * servers > 65535) {
+            throw new IllegalArgumentException("Invalid base port: " + basePort);
+        }
+        if (users < 0 || durationSeconds <= 0 || timeoutSeconds <= 0 || !(rate > 0)) {
+            throw new IllegalArgumentException("Invalid load options");
+        }
+    }
+
+    int port(int server) {
+        return basePort + server;
+    }
+
+    int adminPort(int server) {
+        return basePort + servers + server;
+    }
+
+    static HarnessConfig parse(String[] args) throws IOException {
+        Objects.requireNonNull(args);
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        var servers = 8;
+        var scenarios = List.of(FusionHarness.Scenario.values());
+        var basePort = 9_100;
+        var users = 200;
+        var rate = 500.0;
+        var duration = 10;
+        var timeout = 120;
+        var jvmOptions = List.of("-Xmx64m", "-Xss512k");
+        var classpath = System.getProperty("java.class.path");
+        Path logs = null;
+        for (var i = 0; i < args.length; i += 2) {
+            var value = args[i + 1];
+            switch (args[i]) {
+                case "--servers" -> servers = parseInt(value);
+                case "--scenario" -> scenarios = value.equals("all")
+                    ? List.of(FusionHarness.Scenario.values())
+                    : List.of(FusionHarness.Scenario.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "--base-port" -> basePort = parseInt(value);
+                case "--users" -> users = parseInt(value);
+                case "--rate" -> rate = parseDouble(value);
+                case "--duration" -> duration = parseInt(value);
+                case "--timeout" -> timeout = parseInt(value);
+                case "--jvm-options" -> jvmOptions = Arrays.asList(value.trim().split("\\s+"));
+                case "--classpath" -> classpath = value;
+                case "--logs" -> logs = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (logs == null) {
+            logs = Files.createTempDirectory("chatfusion-harness");
+        }
+        return new HarnessConfig(
+            servers, scenarios, basePort, users, rate, duration, timeout, jvmOptions, classpath, logs);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+}
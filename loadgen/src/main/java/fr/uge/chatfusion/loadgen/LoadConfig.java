@@ -0,0 +1,140 @@
+package fr.uge.chatfusion.loadgen;
+
+import fr.uge.chatfusion.core.base.Sizes;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+record LoadConfig(
+    List<InetSocketAddress> servers,
+    int users,
+    int threads,
+    double rate,
+    int durationSeconds,
+    int drainSeconds,
+    int publicWeight,
+    int directWeight,
+    int fileWeight,
+    int messageSize,
+    int fileBlocks
+) {
+    static final String USAGE = """
+        Usage : ChatFusionLoadGen <host:port>[,<host:port>...] [options]
+          --users <n>          simulated users, spread over the servers (default 1000)
+          --threads <n>        selector threads (default 2)
+          --rate <n>           operations per second, over all the users (default 1000)
+          --duration <s>       duration of the load, in seconds (default 30)
+          --drain <s>          time given to the servers to deliver the last messages (default 5)
+          --mix <p>,<d>,<f>    weights of public messages, direct messages and files (default 90,9,1)
+          --message-size <n>   size of the messages, in bytes (default 64)
+          --file-blocks <n>    blocks of each file, a block is the maximal block size (default 4)
+        The servers must belong to the same group, every public message is expected to reach every user.""";
+
+    LoadConfig {
+        servers = List.copyOf(servers);
+        if (servers.isEmpty()) {
+            throw new IllegalArgumentException("At least one server is needed");
+        }
+        positive(users, "users");
+        positive(threads, "threads");
+        positive(durationSeconds, "duration");
+        positive(fileBlocks, "file-blocks");
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        if (drainSeconds < 0) {
+            throw new IllegalArgumentException("drain must not be negative");
+        }
+        if (publicWeight < 0 || directWeight < 0 || fileWeight < 0 || publicWeight + directWeight + fileWeight == 0) {
+            throw new IllegalArgumentException("Invalid mix");
+        }
+        // room for the timestamp, which is the first part of a message
+        if (messageSize < Timestamps.TEXT_SIZE || messageSize > Sizes.MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException(
+                "message-size must be between " + Timestamps.TEXT_SIZE + " and " + Sizes.MAX_MESSAGE_SIZE);
+        }
+    }
+
+    static LoadConfig parse(String[] args) {
+        Objects.requireNonNull(args);
+        if (args.length == 0 || args.length % 2 == 0) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        var servers = new ArrayList<InetSocketAddress>();
+        for (var server : args[0].split(",")) {
+            var index = server.lastIndexOf(':');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Invalid server: " + server);
+            }
+            servers.add(new InetSocketAddress(server.substring(0, index), parseInt(server.substring(index + 1))));
+        }
+
+        var users = 1_000;
+        var threads = 2;
+        var rate = 1_000.0;
+        var duration = 30;
+        var drain = 5;
+        var mix = new int[] {90, 9, 1};
+        var messageSize = 64;
+        var fileBlocks = 4;
+        for (var i = 1; i < args.length; i += 2) {
+            var value = args[i + 1];
+            switch (args[i]) {
+                case "--users" -> users = parseInt(value);
+                case "--threads" -> threads = parseInt(value);
+                case "--rate" -> rate = parseDouble(value);
+                case "--duration" -> duration = parseInt(value);
+                case "--drain" -> drain = parseInt(value);
+                case "--mix" -> mix = parseMix(value);
+                case "--message-size" -> messageSize = parseInt(value);
+                case "--file-blocks" -> fileBlocks = parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return new LoadConfig(
+            servers,
+            users,
+            Math.min(threads, users),
+            rate,
+            duration,
+            drain,
+            mix[0],
+            mix[1],
+            mix[2],
+            messageSize,
+            fileBlocks
+        );
+    }
+
+    private static int[] parseMix(String value) {
+        var parts = value.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid mix: " + value);
+        }
+        return new int[] {parseInt(parts[0]), parseInt(parts[1]), parseInt(parts[2])};
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static void positive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+}
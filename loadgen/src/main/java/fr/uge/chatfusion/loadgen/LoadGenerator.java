@@ -0,0 +1,132 @@
+package fr.uge.chatfusion.loadgen;
+
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+final class LoadGenerator {
+    private static final long LOGIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int RECIPIENT_ATTEMPTS = 8;
+
+    private final LoadConfig config;
+    private final LoadStats stats = new LoadStats(new MetricsRegistry());
+    private final List<SimulatedUser> users;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile long loadStart;
+    private volatile long loadEnd;
+    private volatile boolean stopped;
+
+    LoadGenerator(LoadConfig config) throws IOException {
+        Objects.requireNonNull(config);
+        this.config = config;
+        var run = Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36 * 36), 36);
+        var users = new ArrayList<SimulatedUser>(config.users());
+        for (var i = 0; i < config.users(); i++) {
+            var server = config.servers().get(i % config.servers().size());
+            users.add(new SimulatedUser("lg" + run + "-" + i, server, stats));
+        }
+        this.users = List.copyOf(users);
+
+        var seeds = new SplittableRandom();
+        for (var i = 0; i < config.threads(); i++) {
+            var owned = new ArrayList<SimulatedUser>();
+            for (var j = i; j < users.size(); j += config.threads()) {
+                owned.add(users.get(j));
+            }
+            var reactor = new Reactor(owned, this, config, seeds.nextLong());
+            threads.add(new Thread(reactor, "Load reactor " + i));
+        }
+    }
+
+    void launch() throws InterruptedException {
+        threads.forEach(Thread::start);
+        try {
+            if (!login()) {
+                return;
+            }
+
+            System.out.println("Load started: " + config.rate() + " operations/s for " + config.durationSeconds() + " s");
+            var start = System.nanoTime();
+            loadEnd = start + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+            loadStart = start;
+            var previous = stats.sample();
+            while (System.nanoTime() < loadEnd) {
+                TimeUnit.SECONDS.sleep(1);
+                var current = stats.sample();
+                System.out.println(stats.progress(previous, current));
+                previous = current;
+            }
+
+            System.out.println("Load finished, draining for at most " + config.drainSeconds() + " s...");
+            drain();
+            System.out.println();
+            System.out.print(stats.report(loadEnd - loadStart, config.users()));
+        } finally {
+            stopped = true;
+            for (var thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private boolean login() throws InterruptedException {
+        var deadline = System.nanoTime() + LOGIN_TIMEOUT_NANOS;
+        while (stats.finishedLogins() < config.users() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        System.out.println(stats.loggedInUsers() + "/" + config.users() + " users logged in");
+        if (stats.loggedInUsers() == 0) {
+            System.out.println("No user could log in, aborting.");
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Waits until the deliveries stop progressing, for at most the drain time.
+     */
+    private void drain() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.drainSeconds());
+        var previous = stats.sample().received();
+        while (System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(500);
+            var received = stats.sample().received();
+            if (received == previous) {
+                return;
+            }
+            previous = received;
+        }
+    }
+
+    LoadStats stats() {
+        return stats;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    long loadStart() {
+        return loadStart;
+    }
+
+    long loadEnd() {
+        return loadEnd;
+    }
+
+    SimulatedUser randomRecipient(SplittableRandom random, SimulatedUser sender) {
+        for (var i = 0; i < RECIPIENT_ATTEMPTS; i++) {
+            var recipient = users.get(random.nextInt(users.size()));
+            if (recipient != sender && recipient.serverName() != null) {
+                return recipient;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package fr.uge.chatfusion.loadgen;
+
+import fr.uge.chatfusion.core.metrics.Counter;
+import fr.uge.chatfusion.core.metrics.LatencyHistogram;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Shared by every reactor: the counters and histograms can be updated concurrently without allocating. The latencies
+ * are recorded in microseconds.
+ */
+final class LoadStats {
+    private final AtomicInteger loggedIn = new AtomicInteger();
+    private final AtomicInteger loginFailures = new AtomicInteger();
+    private final Kind publicMessages;
+    private final Kind directMessages;
+    private final Kind fileBlocks;
+    private final Counter failedSends;
+    private final Counter disconnections;
+
+    LoadStats(MetricsRegistry metrics) {
+        Objects.requireNonNull(metrics);
+        publicMessages = new Kind(metrics, "public");
+        directMessages = new Kind(metrics, "direct");
+        fileBlocks = new Kind(metrics, "file_blocks");
+        failedSends = metrics.counter("loadgen.sends.failed");
+        disconnections = metrics.counter("loadgen.disconnections");
+    }
+
+    void loggedIn() {
+        loggedIn.incrementAndGet();
+    }
+
+    void loginFailed() {
+        loginFailures.incrementAndGet();
+    }
+
+    int loggedInUsers() {
+        return loggedIn.get();
+    }
+
+    int finishedLogins() {
+        return loggedIn.get() + loginFailures.get();
+    }
+
+    void disconnected() {
+        disconnections.increment();
+    }
+
+    void sendFailed() {
+        failedSends.increment();
+    }
+
+    Kind publicMessages() {
+        return publicMessages;
+    }
+
+    Kind directMessages() {
+        return directMessages;
+    }
+
+    Kind fileBlocks() {
+        return fileBlocks;
+    }
+
+    Sample sample() {
+        return new Sample(
+            System.nanoTime(),
+            publicMessages.sent.value(),
+            directMessages.sent.value(),
+            fileBlocks.sent.value(),
+            publicMessages.received.value() + directMessages.received.value() + fileBlocks.received.value()
+        );
+    }
+
+    String progress(Sample previous, Sample current) {
+        var seconds = (current.time() - previous.time()) / 1e9;
+        return String.format(
+            "sent %8.0f public/s %7.0f direct/s %7.0f blocks/s | delivered %9.0f/s | public p99 %6d us",
+            (current.publicSent() - previous.publicSent()) / seconds,
+            (current.directSent() - previous.directSent()) / seconds,
+            (current.blocksSent() - previous.blocksSent()) / seconds,
+            (current.received() - previous.received()) / seconds,
+            publicMessages.latency.snapshot().p99()
+        );
+    }
+
+    /*
+     * A public message is expected to reach every logged in user, the sender included.
+     */
+    String report(long loadNanos, int users) {
+        var seconds = loadNanos / 1e9;
+        var builder = new StringBuilder()
+            .append("Users: ").append(loggedIn.get()).append('/').append(users).append(" logged in, ")
+            .append(loginFailures.get()).append(" refused, ")
+            .append(disconnections.value()).append(" disconnected\n")
+            .append(String.format("Load: %.1f s, %d failed sends%n", seconds, failedSends.value()));
+        publicMessages.report(builder, seconds, loggedIn.get());
+        directMessages.report(builder, seconds, 1);
+        fileBlocks.report(builder, seconds, 1);
+        return builder.toString();
+    }
+
+    record Sample(long time, long publicSent, long directSent, long blocksSent, long received) {
+    }
+
+    static final class Kind {
+        private final String name;
+        private final Counter sent;
+        private final Counter received;
+        private final LatencyHistogram latency;
+
+        private Kind(MetricsRegistry metrics, String name) {
+            this.name = name;
+            this.sent = metrics.counter("loadgen." + name + ".sent");
+            this.received = metrics.counter("loadgen." + name + ".received");
+            this.latency = metrics.latency("loadgen." + name + ".latency");
+        }
+
+        void sent() {
+            sent.increment();
+        }
+
+        void received(long sendTime) {
+            received.increment();
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendTime));
+        }
+
+        private void report(StringBuilder builder, double seconds, int deliveriesPerSend) {
+            var sentCount = sent.value();
+            var expected = sentCount * deliveriesPerSend;
+            var receivedCount = received.value();
+            var snapshot = latency.snapshot();
+            builder.append(String.format(
+                "%-12s sent %9d (%9.0f/s) delivered %10d (%10.0f/s) dropped %8d | "
+                    + "latency us p50 %6d p99 %6d p999 %7d max %7d%n",
+                name,
+                sentCount,
+                sentCount / seconds,
+                receivedCount,
+                receivedCount / seconds,
+                Math.max(0, expected - receivedCount),
+                snapshot.p50(),
+                snapshot.p99(),
+                snapshot.p999(),
+                snapshot.max()
+            ));
+        }
+    }
+}
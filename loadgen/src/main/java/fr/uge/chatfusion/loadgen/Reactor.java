@@ -0,0 +1,124 @@
+package fr.uge.chatfusion.loadgen;
+
+import fr.uge.chatfusion.core.selection.ReadyList;
+import fr.uge.chatfusion.core.selection.SelectionKeyController;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/*
+ * A selection loop owning a part of the simulated users. Its users are connected a few at a time, so the servers are
+ * not flooded by connections, then they send messages at the rate of the reactor until the end of the load.
+ */
+final class Reactor implements Runnable {
+    private static final int CONNECTIONS_PER_ROUND = 16;
+
+    private final Selector selector = Selector.open();
+    private final SplittableRandom random;
+    private final List<SimulatedUser> users;
+    private final LoadGenerator generator;
+    private final LoadConfig config;
+    private final double operationsPerNano;
+    private final String padding;
+    private int connected;
+    private long operations;
+
+    Reactor(List<SimulatedUser> users, LoadGenerator generator, LoadConfig config, long seed) throws IOException {
+        Objects.requireNonNull(users);
+        Objects.requireNonNull(generator);
+        Objects.requireNonNull(config);
+        this.users = List.copyOf(users);
+        this.generator = generator;
+        this.config = config;
+        this.random = new SplittableRandom(seed);
+        this.operationsPerNano = config.rate() / config.threads() / 1e9;
+        this.padding = "x".repeat(config.messageSize() - Timestamps.TEXT_SIZE);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!generator.isStopped()) {
+                var ready = ReadyList.current();
+                if (ready.isEmpty()) {
+                    selector.select(this::treatKey, 1);
+                } else {
+                    selector.selectNow(this::treatKey);
+                }
+                ready.serve();
+                connectUsers();
+                sendDueOperations();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            users.forEach(SimulatedUser::close);
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing more can be done
+            }
+        }
+    }
+
+    private void connectUsers() throws IOException {
+        var limit = Math.min(users.size(), connected + CONNECTIONS_PER_ROUND);
+        for (; connected < limit; connected++) {
+            users.get(connected).connect(selector);
+        }
+    }
+
+    private void sendDueOperations() {
+        var start = generator.loadStart();
+        if (start == 0) {
+            return;
+        }
+        var now = Math.min(System.nanoTime(), generator.loadEnd());
+        var due = (long) ((now - start) * operationsPerNano);
+        for (; operations < due; operations++) {
+            sendOperation();
+        }
+    }
+
+    private void sendOperation() {
+        var sender = users.get(random.nextInt(users.size()));
+        var pick = random.nextInt(config.publicWeight() + config.directWeight() + config.fileWeight());
+        if (pick < config.publicWeight()) {
+            sender.sendPublicMessage(Timestamps.text(System.nanoTime(), padding));
+            return;
+        }
+        var recipient = generator.randomRecipient(random, sender);
+        if (recipient == null) {
+            generator.stats().sendFailed();
+            return;
+        }
+        if (pick < config.publicWeight() + config.directWeight()) {
+            sender.sendDirectMessage(recipient, Timestamps.text(System.nanoTime(), padding));
+        } else {
+            sender.sendFile(recipient, random.nextLong(), config.fileBlocks());
+        }
+    }
+
+    private void treatKey(SelectionKey key) {
+        var controller = (SelectionKeyController) key.attachment();
+        try {
+            if (key.isValid() && key.isConnectable()) {
+                controller.doConnect();
+            }
+            if (key.isValid() && key.isWritable()) {
+                controller.doWrite();
+            }
+            if (key.isValid() && key.isReadable()) {
+                controller.doRead();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            controller.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fr.uge.chatfusion.loadgen;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A server started as a child process, driven through its admin endpoint.
+ */
+final class ServerProcess {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final String name;
+    private final InetSocketAddress address;
+    private final int adminPort;
+    private final Process process;
+    private final HttpClient client;
+
+    private ServerProcess(String name, InetSocketAddress address, int adminPort, Process process, HttpClient client) {
+        this.name = name;
+        this.address = address;
+        this.adminPort = adminPort;
+        this.process = process;
+        this.client = client;
+    }
+
+    static ServerProcess start(
+        String name,
+        InetSocketAddress address,
+        int adminPort,
+        String classpath,
+        List<String> jvmOptions,
+        Path logs,
+        HttpClient client
+    ) throws IOException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(address);
+        Objects.requireNonNull(classpath);
+        Objects.requireNonNull(jvmOptions);
+        Objects.requireNonNull(logs);
+        Objects.requireNonNull(client);
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of(
+            "-cp", classpath,
+            "fr.uge.chatfusion.server.Application",
+            name,
+            Integer.toString(address.getPort()),
+            "--admin",
+            Integer.toString(adminPort)
+        ));
+        var process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logs.resolve(name + ".log").toFile())
+            .start();
+        return new ServerProcess(name, address, adminPort, process, client);
+    }
+
+    String name() {
+        return name;
+    }
+
+    InetSocketAddress address() {
+        return address;
+    }
+
+    void awaitReady(long timeoutMillis) throws IOException, InterruptedException {
+        var deadline = System.currentTimeMillis() + timeoutMillis;
+        for (;;) {
+            if (!process.isAlive()) {
+                throw new IOException(name + " exited with status " + process.exitValue());
+            }
+            try {
+                if (send("GET", "/users").statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // the admin endpoint is not started yet
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException(name + " is not ready after " + timeoutMillis + " ms");
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    boolean fusion(InetSocketAddress remote) throws IOException, InterruptedException {
+        var query = "/fusion?host=" + URLEncoder.encode(remote.getHostString(), StandardCharsets.UTF_8)
+            + "&port=" + remote.getPort();
+        return send("POST", query).statusCode() == 202;
+    }
+
+    Topology topology() throws IOException, InterruptedException {
+        var response = send("GET", "/topology");
+        if (response.statusCode() != 200) {
+            throw new IOException(name + " answered " + response.statusCode() + " to /topology");
+        }
+        return Topology.parse(response.body());
+    }
+
+    Duration cpuTime() {
+        return process.info().totalCpuDuration().orElse(Duration.ZERO);
+    }
+
+    void shutdown() throws InterruptedException {
+        try {
+            send("POST", "/shutdown?now=true");
+        } catch (IOException e) {
+            // already stopped, or the process is destroyed below
+        }
+        if (!process.waitFor(5, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+
+    void destroy() {
+        process.destroyForcibly();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + adminPort + path))
+            .timeout(REQUEST_TIMEOUT)
+            .method(method, HttpRequest.BodyPublishers.noBody())
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+     * The part of the /topology answer the harness needs. The names are written by the harness, they never need to
+     * be escaped.
+     */
+    record Topology(String name, String leaderName, boolean isLeader, boolean fusing, int memberCount) {
+        static Topology parse(String json) {
+            var members = json.substring(json.indexOf("\"members\":["));
+            return new Topology(
+                string(json, "\"name\":"),
+                string(json, "\"leader\":{\"name\":"),
+                json.contains("\"isLeader\":true"),
+                json.contains("\"fusing\":true"),
+                members.split("\\{\"name\":", -1).length - 1
+            );
+        }
+
+        private static String string(String json, String prefix) {
+            var start = json.indexOf(prefix) + prefix.length() + 1;
+            return json.substring(start, json.indexOf('"', start));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package fr.uge.chatfusion.loadgen;
+
+import fr.uge.chatfusion.core.base.EncodedString;
+import fr.uge.chatfusion.core.base.Sizes;
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.FrameVisitor;
+import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+final class SimulatedUser implements FrameVisitor {
+    private final String login;
+    private final EncodedString encodedLogin;
+    private final InetSocketAddress server;
+    private final LoadStats stats;
+    private SelectionKeyControllerImpl controller;
+    // written by the reactor of the user, read by the others to address direct messages and files
+    private volatile String serverName;
+    private EncodedString encodedServerName;
+    private boolean closed;
+
+    SimulatedUser(String login, InetSocketAddress server, LoadStats stats) {
+        Objects.requireNonNull(login);
+        Objects.requireNonNull(server);
+        Objects.requireNonNull(stats);
+        this.login = login;
+        this.encodedLogin = EncodedString.of(login);
+        this.server = server;
+        this.stats = stats;
+    }
+
+    void connect(Selector selector) throws IOException {
+        var sc = SocketChannel.open();
+        sc.configureBlocking(false);
+        var connected = sc.connect(server);
+        var key = sc.register(selector, SelectionKey.OP_CONNECT);
+        controller = new SelectionKeyControllerImpl(key, server, connected, false, false);
+        controller.setVisitor(this);
+        controller.setOnClose(this::closed);
+        key.attach(controller);
+        controller.queueData(Frame.AnonymousLogin.buffer(encodedLogin));
+    }
+
+    String login() {
+        return login;
+    }
+
+    String serverName() {
+        return serverName;
+    }
+
+    boolean isReady() {
+        return serverName != null && !closed;
+    }
+
+    void sendPublicMessage(String text) {
+        if (!isReady()) {
+            stats.sendFailed();
+            return;
+        }
+        controller.queueData(Frame.PublicMessage.buffer(encodedServerName, encodedLogin, text));
+        stats.publicMessages().sent();
+    }
+
+    void sendDirectMessage(SimulatedUser recipient, String text) {
+        if (!isReady()) {
+            stats.sendFailed();
+            return;
+        }
+        controller.queueData(Frame.DirectMessage.buffer(
+            encodedServerName,
+            encodedLogin,
+            recipient.serverName(),
+            recipient.login(),
+            text
+        ));
+        stats.directMessages().sent();
+    }
+
+    void sendFile(SimulatedUser recipient, long fileId, int blockCount) {
+        if (!isReady()) {
+            stats.sendFailed();
+            return;
+        }
+        controller.queueData(Frame.FileOpen.buffer(
+            encodedServerName,
+            encodedLogin,
+            recipient.serverName(),
+            recipient.login(),
+            fileId,
+            "loadgen.bin",
+            blockCount
+        ));
+        for (var i = 0; i < blockCount; i++) {
+            var block = ByteBuffer.allocate(Sizes.MAX_FILE_BLOCK_SIZE);
+            Timestamps.write(System.nanoTime(), block);
+            block.position(block.capacity());
+            controller.queueData(Frame.FileBlock.buffer(fileId, (long) i * Sizes.MAX_FILE_BLOCK_SIZE, block));
+            stats.fileBlocks().sent();
+        }
+    }
+
+    void close() {
+        if (controller != null) {
+            controller.close();
+        }
+    }
+
+    private void closed() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (serverName == null) {
+            stats.loginFailed();
+        } else {
+            stats.disconnected();
+        }
+    }
+
+    @Override
+    public void visit(Frame.LoginAccepted frame) {
+        Objects.requireNonNull(frame);
+        encodedServerName = EncodedString.of(frame.serverName());
+        serverName = frame.serverName();
+        stats.loggedIn();
+    }
+
+    @Override
+    public void visit(Frame.LoginRefused frame) {
+        Objects.requireNonNull(frame);
+        controller.close();
+    }
+
+    @Override
+    public void visit(Frame.PublicMessage frame) {
+        Objects.requireNonNull(frame);
+        Timestamps.parse(frame.message()).ifPresent(stats.publicMessages()::received);
+    }
+
+    @Override
+    public void visit(Frame.DirectMessage frame) {
+        Objects.requireNonNull(frame);
+        Timestamps.parse(frame.message()).ifPresent(stats.directMessages()::received);
+    }
+
+    @Override
+    public void visit(Frame.FileOpen frame) {
+        Objects.requireNonNull(frame);
+        // only the blocks are measured
+    }
+
+    @Override
+    public void visit(Frame.FileBlock frame) {
+        Objects.requireNonNull(frame);
+        Timestamps.read(frame.block()).ifPresent(stats.fileBlocks()::received);
+    }
+
+    @Override
+    public void visit(Frame.UnknownRecipient frame) {
+        Objects.requireNonNull(frame);
+        // the recipient logged out, or logged in after the last announce of the users of its server
+        stats.sendFailed();
+    }
+
+    @Override
+    public void visit(Frame.FileRefused frame) {
+        Objects.requireNonNull(frame);
+        stats.sendFailed();
+    }
+}
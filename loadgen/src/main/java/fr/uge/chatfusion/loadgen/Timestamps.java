@@ -0,0 +1,51 @@
+package fr.uge.chatfusion.loadgen;
+
+import java.nio.ByteBuffer;
+import java.util.OptionalLong;
+
+/*
+ * The send time of a message travels in the message itself: as hexadecimal digits at the start of a text message
+ * and as the first long of a file block. The times come from System.nanoTime, they are only meaningful because the
+ * senders and the receivers live in the same virtual machine.
+ */
+final class Timestamps {
+    static final int TEXT_SIZE = 16;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Timestamps() {
+        throw new AssertionError("No instances.");
+    }
+
+    static String text(long timestamp, String padding) {
+        var chars = new char[TEXT_SIZE + padding.length()];
+        for (var i = TEXT_SIZE - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (timestamp & 0xF)];
+            timestamp >>>= 4;
+        }
+        padding.getChars(0, padding.length(), chars, TEXT_SIZE);
+        return new String(chars);
+    }
+
+    static OptionalLong parse(String text) {
+        if (text.length() < TEXT_SIZE) {
+            return OptionalLong.empty();
+        }
+        var timestamp = 0L;
+        for (var i = 0; i < TEXT_SIZE; i++) {
+            var digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) {
+                return OptionalLong.empty();
+            }
+            timestamp = timestamp << 4 | digit;
+        }
+        return OptionalLong.of(timestamp);
+    }
+
+    static void write(long timestamp, ByteBuffer block) {
+        block.putLong(0, timestamp);
+    }
+
+    static OptionalLong read(ByteBuffer block) {
+        return block.capacity() < Long.BYTES ? OptionalLong.empty() : OptionalLong.of(block.getLong(0));
+    }
+}
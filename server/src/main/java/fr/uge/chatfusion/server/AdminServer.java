@@ -0,0 +1,252 @@
+package fr.uge.chatfusion.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+ * The part of every request reading or changing the server state is submitted as a command to the selector thread,
+ * the HTTP thread only parses the request and waits for the result. The server state is therefore never read nor
+ * written concurrently with the selection loop.
+ */
+final class AdminServer {
+    private static final Logger LOGGER = Logger.getLogger(AdminServer.class);
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final HttpServer httpServer;
+    private final Server server;
+
+    public AdminServer(Server server, InetSocketAddress address) throws IOException {
+        Objects.requireNonNull(server);
+        Objects.requireNonNull(address);
+        this.server = server;
+        this.httpServer = HttpServer.create(address, 0);
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "Admin server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        httpServer.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+        httpServer.createContext("/topology", exchange -> handle(exchange, "GET", this::topology));
+        httpServer.createContext("/users", exchange -> handle(exchange, "GET", this::users));
+        httpServer.createContext("/fusion", exchange -> handle(exchange, "POST", this::fusion));
+        httpServer.createContext("/shutdown", exchange -> handle(exchange, "POST", this::shutdown));
+    }
+
+    public void start() {
+        httpServer.start();
+        var address = httpServer.getAddress();
+        LOGGER.log(Level.INFO, "Admin server started", "address", address.getAddress(), "port", address.getPort());
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+    }
+
+    private Response metrics(Map<String, String> parameters) {
+        return onSelectorThread(() -> Response.prometheus(server.prometheusMetrics()));
+    }
+
+    private Response topology(Map<String, String> parameters) {
+        return onSelectorThread(this::topology);
+    }
+
+    private Response topology() {
+        var topology = server.topology();
+        var members = new StringBuilder();
+        topology.members().forEach((name, address) -> {
+            if (!members.isEmpty()) {
+                members.append(',');
+            }
+            members.append("{\"name\":").append(jsonString(name))
+                .append(",\"address\":").append(jsonString(address.toString())).append('}');
+        });
+        return Response.json(200,
+            "{\"name\":" + jsonString(server.name())
+                + ",\"address\":" + jsonString(server.address().toString())
+                + ",\"leader\":{\"name\":" + jsonString(topology.leaderName())
+                + ",\"address\":" + jsonString(topology.leaderAddress().toString()) + '}'
+                + ",\"isLeader\":" + server.isLeader()
+                + ",\"fusing\":" + topology.fusing()
+                + ",\"members\":[" + members + "]}"
+        );
+    }
+
+    private Response users(Map<String, String> parameters) {
+        return onSelectorThread(this::users);
+    }
+
+    private Response users() {
+        var usernames = server.usernames();
+        var names = new StringBuilder();
+        for (var username : usernames) {
+            if (!names.isEmpty()) {
+                names.append(',');
+            }
+            names.append(jsonString(username));
+        }
+        return Response.json(200, "{\"connected\":" + usernames.size() + ",\"users\":[" + names + "]}");
+    }
+
+    private Response fusion(Map<String, String> parameters) {
+        var host = parameters.get("host");
+        var strPort = parameters.get("port");
+        if (host == null || strPort == null) {
+            return Response.error(400, "Usage: POST /fusion?host=<host>&port=<port>");
+        }
+        int port;
+        try {
+            port = Integer.parseInt(strPort);
+        } catch (NumberFormatException e) {
+            return Response.error(400, "Invalid port: " + strPort);
+        }
+        if (port < 0 || port > 65535) {
+            return Response.error(400, "Invalid port: " + strPort);
+        }
+        // resolved here rather than by the selector thread
+        var address = new InetSocketAddress(host, port);
+        return onSelectorThread(() -> server.initFusion(address)
+            ? Response.json(202, "{\"fusion\":\"requested\"}")
+            : Response.error(409, "Server cannot fuse with itself.")
+        );
+    }
+
+    private Response shutdown(Map<String, String> parameters) {
+        if (Boolean.parseBoolean(parameters.get("now"))) {
+            return onSelectorThread(() -> {
+                server.shutdownNow();
+                return Response.json(202, "{\"shutdown\":\"now\"}");
+            });
+        }
+        return onSelectorThread(() -> {
+            server.shutdown();
+            return Response.json(202, "{\"shutdown\":\"graceful\"}");
+        });
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            Response response;
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                response = Response.error(404, "Not found");
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                response = Response.error(405, "Method not allowed");
+            } else {
+                var parameters = parameters(exchange.getRequestURI().getRawQuery());
+                response = parameters == null
+                    ? Response.error(400, "Malformed query")
+                    : handler.handle(parameters);
+            }
+            var body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            exchange.sendResponseHeaders(response.status(), body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private Response onSelectorThread(Supplier<Response> supplier) {
+        var future = new CompletableFuture<Response>();
+        server.submit(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.error(503, "Interrupted");
+        } catch (TimeoutException e) {
+            return Response.error(503, "Server is not responding");
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Admin request failed", e.getCause());
+            return Response.error(500, "Internal error");
+        }
+    }
+
+    // null if the query holds a malformed escape
+    private static Map<String, String> parameters(String query) {
+        var parameters = new HashMap<String, String>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (var parameter : query.split("&")) {
+            var index = parameter.indexOf('=');
+            var key = index < 0 ? parameter : parameter.substring(0, index);
+            var value = index < 0 ? "true" : parameter.substring(index + 1);
+            try {
+                parameters.put(
+                    URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8)
+                );
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return parameters;
+    }
+
+    private static String jsonString(String value) {
+        var builder = new StringBuilder(value.length() + 2).append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private record Response(int status, String contentType, String body) {
+        Response {
+            Objects.requireNonNull(contentType);
+            Objects.requireNonNull(body);
+        }
+
+        static Response json(int status, String body) {
+            return new Response(status, "application/json", body);
+        }
+
+        static Response prometheus(String body) {
+            return new Response(200, "text/plain; version=0.0.4", body);
+        }
+
+        static Response error(int status, String message) {
+            return json(status, "{\"error\":" + jsonString(message) + "}");
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package fr.uge.chatfusion.server;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
 
 final class Application {
     private Application() {
@@ -8,26 +11,97 @@ final class Application {
     }
 
     private static void usage() {
-        System.out.println("Usage : ChatFusionServer <server name> <port>");
+        System.out.println(
+            "Usage : ChatFusionServer <server name> <port> [--trace] [--admin <admin port> [--admin-bind <address>]]"
+                + " [--unix <socket path>] [--limit <scope>.<kind>=<rate>[/<burst>]]...\n"
+                + "  admin: listens on the loopback address only, unless an address to bind is given\n"
+                + "  scope: user, address or link\n"
+                + "  kind: public or direct (messages per second), file (bytes per second)"
+        );
     }
 
     public static void main(String[] args) {
-        if (args.length != 2) {
+        if (args.length < 2) {
             usage();
             return;
         }
 
+        var tracing = false;
+        var adminPort = -1;
+        String adminBind = null;
+        var limits = new RateLimits();
+        Path unixPath = null;
+        var strPort = args[1];
         try {
+            for (var i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--trace" -> tracing = true;
+                    case "--admin" -> {
+                        if (++i == args.length) {
+                            usage();
+                            return;
+                        }
+                        strPort = args[i];
+                        adminPort = Integer.parseInt(strPort);
+                    }
+                    case "--admin-bind" -> {
+                        if (++i == args.length) {
+                            usage();
+                            return;
+                        }
+                        adminBind = args[i];
+                    }
+                    case "--unix" -> {
+                        if (++i == args.length) {
+                            usage();
+                            return;
+                        }
+                        unixPath = Path.of(args[i]);
+                    }
+                    case "--limit" -> {
+                        if (++i == args.length) {
+                            usage();
+                            return;
+                        }
+                        limits.set(args[i]);
+                    }
+                    default -> {
+                        usage();
+                        return;
+                    }
+                }
+            }
+
+            if (adminBind != null && adminPort == -1) {
+                usage();
+                return;
+            }
+
             var serverName = args[0];
-            var port = Integer.parseInt(args[1]);
-            if (port < 0 || port > 65535) {
+            strPort = args[1];
+            var port = Integer.parseInt(strPort);
+            if (port < 0 || port > 65535 || adminPort > 65535 || adminPort < -1) {
                 System.out.println("Invalid port, must be between 0 and 65535.");
                 return;
             }
-            var server = new Server(serverName, port);
+            var server = new Server(serverName, port, tracing);
+            server.limitRates(limits);
+            if (adminBind != null) {
+                server.enableAdmin(InetAddress.getByName(adminBind), adminPort);
+            } else if (adminPort != -1) {
+                server.enableAdmin(adminPort);
+            }
+            if (unixPath != null) {
+                server.listenUnix(unixPath);
+            }
             server.launch();
         } catch (NumberFormatException e) {
-            System.err.println("Invalid port number" + args[1]);
+            System.err.println("Invalid port number " + strPort);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            usage();
+        } catch (UnknownHostException e) {
+            System.err.println("Unknown admin address " + adminBind);
         } catch (IOException e) {
             System.err.println("Error while creating the server");
         }
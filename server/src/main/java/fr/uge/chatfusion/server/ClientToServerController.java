@@ -1,35 +1,46 @@
 package fr.uge.chatfusion.server;
 
-import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.base.Sizes;
 import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+import fr.uge.chatfusion.core.metrics.Counter;
+import fr.uge.chatfusion.core.metrics.Histogram;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
 import fr.uge.chatfusion.core.selection.SelectionKeyController;
 import fr.uge.chatfusion.server.visitor.IdentifiedRemoteInfo;
 import fr.uge.chatfusion.server.visitor.UnknownRemoteInfo;
 import fr.uge.chatfusion.server.visitor.Visitors;
 
-import java.io.Closeable;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.net.SocketAddress;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
-import java.util.function.Supplier;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 final class ClientToServerController {
-    private static final Logger LOGGER = Logger.getLogger(ClientToServerController.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(ClientToServerController.class);
 
     private final HashMap<String, SelectionKeyController> clients = new HashMap<>();
-    private final String serverName;
+    private final FileRoutes fileRoutes = new FileRoutes();
+    private final EncodedString serverName;
     private final Server server;
+    private final Histogram publicFanOut;
+    private final Counter deliveries;
+    private final Counter routingMisses;
 
-    public ClientToServerController(String serverName, Server server) {
+    public ClientToServerController(EncodedString serverName, Server server, MetricsRegistry metrics) {
         Objects.requireNonNull(serverName);
         Objects.requireNonNull(server);
+        Objects.requireNonNull(metrics);
         this.serverName = serverName;
         this.server = server;
+        this.publicFanOut = metrics.histogram("server.clients.public.fanout", Histogram.exponentialBounds(14));
+        this.deliveries = metrics.counter("server.clients.deliveries");
+        this.routingMisses = metrics.counter("server.clients.routing.misses");
     }
 
     public void connectAnonymously(Frame.AnonymousLogin anonymousLogin, UnknownRemoteInfo infos) {
@@ -40,25 +51,38 @@ final class ClientToServerController {
         if (!Sizes.checkUsernameSize(username)) {
             logMessageAndClose(
                 Level.WARNING,
-                "Invalid username size (" + username + ")",
+                "Invalid username size",
+                "username",
+                username,
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
 
         var controller = infos.controller();
         if (clients.putIfAbsent(username, controller) != null) {
-            LOGGER.log(Level.WARNING, "Username already used (" + username + ")");
+            LOGGER.log(Level.WARNING, "Username already used", "username", username);
             controller.queueData(Frame.LoginRefused.buffer());
             controller.closeWhenAllSent();
             return;
         }
 
         // changing the visitor
-        var userInfos = new IdentifiedRemoteInfo(username, infos.connection(), infos.address());
-        controller.setVisitor(Visitors.loggedClientVisitor(server, userInfos));
-        controller.setOnClose(() -> clients.remove(username));
+        var userInfos = new IdentifiedRemoteInfo(username, infos.controller(), infos.address());
+        // the clients of a Unix domain socket are on the host of the server
+        var source = infos.address() instanceof InetSocketAddress inet
+            ? inet.getAddress()
+            : InetAddress.getLoopbackAddress();
+        var throttle = server.throttles().forUser(controller, source);
+        controller.setVisitor(Visitors.loggedClientVisitor(server, userInfos, throttle));
+        controller.setOnClose(() -> {
+            clients.remove(username);
+            server.closeFileRoutes(controller);
+            throttle.close();
+            server.userLoggedOut();
+        });
+        server.userLoggedIn();
 
         // answer to the client
         var data = Frame.LoginAccepted.buffer(serverName);
@@ -68,8 +92,10 @@ final class ClientToServerController {
     public void sendPublicMessage(Frame.PublicMessage message, IdentifiedRemoteInfo remoteInfo) {
         Objects.requireNonNull(message);
         Objects.requireNonNull(remoteInfo);
+        publicFanOut.record(clients.size());
+        deliveries.add(clients.size());
         clients.values()
-            .forEach(client -> client.queueData(message.buffer()));
+            .forEach(client -> client.queueFrame(message));
     }
 
     public String info() {
@@ -83,30 +109,92 @@ final class ClientToServerController {
         return size + " connected client(s):\n-" + connectedList;
     }
 
-    public void sendDirectMessage(Frame.DirectMessage message) {
+    public List<String> usernames() {
+        return clients.keySet().stream().sorted().toList();
+    }
+
+    // false if the recipient is not logged in, the sender has to be told
+    public boolean sendDirectMessage(Frame.DirectMessage message) {
         Objects.requireNonNull(message);
-        sendData(message.recipientUsername(), message::buffer);
+        return sendData(message.recipientUsername(), message);
     }
 
-    public void sendFile(Frame.FileSending fileSending) {
-        Objects.requireNonNull(fileSending);
-        if (!clients.containsKey(fileSending.recipientUsername())) {
-            return;
+    // false if the recipient is not logged in, the sender has to be told
+    public boolean openFile(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos, int maxRoutes) {
+        Objects.requireNonNull(fileOpen);
+        Objects.requireNonNull(infos);
+        var recipient = clients.get(fileOpen.recipientUsername());
+        if (recipient == null) {
+            LOGGER.log(Level.INFO, "Receiver not found", "username", fileOpen.recipientUsername());
+            routingMisses.increment();
+            return false;
+        }
+        if (!fileRoutes.open(fileOpen.fileId(), infos.controller(), recipient, fileOpen.blockCount(), maxRoutes)) {
+            LOGGER.log(Level.WARNING, "File transfer refused", "file", fileOpen.fileId(), "sender", infos.name());
+            server.refuseFile(fileOpen);
+            return true;
+        }
+        deliveries.increment();
+        recipient.queueFrame(fileOpen);
+        return true;
+    }
+
+    // tells a sender that its frame could not be delivered
+    public void sendToSender(String senderUsername, Frame frame) {
+        Objects.requireNonNull(senderUsername);
+        Objects.requireNonNull(frame);
+        // the sender may have logged out meanwhile
+        sendData(senderUsername, frame);
+    }
+
+    public void removeFileRoutes(SelectionKeyController controller) {
+        Objects.requireNonNull(controller);
+        fileRoutes.removeAll(controller);
+    }
+
+    public boolean sendFileBlock(Frame.FileBlock fileBlock, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(fileBlock);
+        Objects.requireNonNull(infos);
+        var recipient = fileRoutes.next(fileBlock.fileId(), infos.controller());
+        if (recipient == null) {
+            return false;
         }
-        sendData(fileSending.recipientUsername(), fileSending::buffer);
+        deliveries.increment();
+        recipient.queueFrame(fileBlock);
+        return true;
     }
 
-    private void sendData(String recipientUsername, Supplier<ByteBuffer> data) {
+    private boolean sendData(String recipientUsername, Frame frame) {
         var recipient = clients.get(recipientUsername);
         if (recipient == null) {
-            LOGGER.log(Level.INFO, "Receiver not found (" + recipientUsername + ")");
-            return;
+            LOGGER.log(Level.INFO, "Receiver not found", "username", recipientUsername);
+            routingMisses.increment();
+            return false;
         }
-        recipient.queueData(data.get());
+        deliveries.increment();
+        recipient.queueFrame(frame);
+        return true;
+    }
+
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address);
+        connection.close();
     }
 
-    private void logMessageAndClose(Level level, String message, InetSocketAddress address, Closeable closeable) {
-        LOGGER.log(level, address + " : " + message);
-        CloseableUtils.silentlyClose(closeable);
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        String key,
+        Object value,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address, key, value);
+        connection.close();
     }
 }
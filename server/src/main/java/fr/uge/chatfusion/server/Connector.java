@@ -0,0 +1,14 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.selection.ConnectionController;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * Opens the connections of the server to other servers, over sockets or in memory.
+ */
+@FunctionalInterface
+interface Connector {
+    ConnectionController connect(SocketAddress remote) throws IOException;
+}
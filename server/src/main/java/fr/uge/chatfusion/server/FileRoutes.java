@@ -0,0 +1,81 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.selection.SelectionKeyController;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+final class FileRoutes {
+    // the transfers a client may have in progress at once, a link carrying the transfers of the clients of its group
+    static final int MAX_USER_ROUTES = 16;
+    static final int MAX_LINK_ROUTES = 1024;
+
+    private final HashMap<Long, Route> routes = new HashMap<>();
+    private final HashMap<SelectionKeyController, Integer> routeCounts = new HashMap<>();
+
+    // false if the id is already used or if the source already has maxRoutes transfers in progress
+    public boolean open(
+        long fileId,
+        SelectionKeyController source,
+        SelectionKeyController destination,
+        int blockCount,
+        int maxRoutes
+    ) {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(destination);
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("blockCount must be positive");
+        }
+        if (routes.containsKey(fileId) || routeCounts.getOrDefault(source, 0) >= maxRoutes) {
+            return false;
+        }
+        routes.put(fileId, new Route(source, destination, blockCount));
+        routeCounts.merge(source, 1, Integer::sum);
+        return true;
+    }
+
+    public SelectionKeyController next(long fileId, SelectionKeyController source) {
+        Objects.requireNonNull(source);
+        var route = routes.get(fileId);
+        if (route == null || route.source != source) {
+            return null;
+        }
+        if (--route.remainingBlocks == 0) {
+            routes.remove(fileId);
+            release(source);
+        }
+        return route.destination;
+    }
+
+    // the transfers from or to a closed connection will never end
+    public void removeAll(SelectionKeyController controller) {
+        Objects.requireNonNull(controller);
+        routes.values().removeIf(r -> {
+            if (r.source != controller && r.destination != controller) {
+                return false;
+            }
+            release(r.source);
+            return true;
+        });
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    private void release(SelectionKeyController source) {
+        routeCounts.computeIfPresent(source, (__, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static final class Route {
+        private final SelectionKeyController source;
+        private final SelectionKeyController destination;
+        private int remainingBlocks;
+
+        private Route(SelectionKeyController source, SelectionKeyController destination, int remainingBlocks) {
+            this.source = source;
+            this.destination = destination;
+            this.remainingBlocks = remainingBlocks;
+        }
+    }
+}
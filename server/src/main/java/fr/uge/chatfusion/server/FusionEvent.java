@@ -0,0 +1,44 @@
+package fr.uge.chatfusion.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("fr.uge.chatfusion.Fusion")
+@Label("Fusion Transition")
+@Category({"ChatFusion", "Fusion"})
+@Description("A step of the fusion of two groups of servers")
+@StackTrace(false)
+final class FusionEvent extends Event {
+    enum Transition {
+        REQUEST_SENT, REQUEST_FORWARDED, REDIRECTED, ACCEPTED, ACCEPTED_BY_REMOTE, REJECTED, STILL_LEADER,
+        LEADER_CHANGED, MEMBER_MERGED, COMPLETED, FAILED
+    }
+
+    @Label("Server")
+    String server;
+
+    @Label("Transition")
+    String transition;
+
+    @Label("Remote")
+    String remote;
+
+    @Label("Fusing")
+    @Description("Whether a fusion is still in progress after the transition")
+    boolean fusing;
+
+    static void emit(String server, Transition transition, Object remote, boolean fusing) {
+        var event = new FusionEvent();
+        if (event.isEnabled()) {
+            event.server = server;
+            event.transition = transition.name();
+            event.remote = String.valueOf(remote);
+            event.fusing = fusing;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.Trace;
+import fr.uge.chatfusion.core.metrics.LatencyHistogram;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+
+import java.util.Objects;
+
+final class PublicMessageTracer {
+    // the messages going through more hops are recorded with the last one
+    private static final int MAX_HOPS = 4;
+
+    private final boolean enabled;
+    private final LatencyHistogram[] hops = new LatencyHistogram[MAX_HOPS];
+    private final LatencyHistogram endToEnd;
+
+    public PublicMessageTracer(boolean enabled, MetricsRegistry metrics) {
+        Objects.requireNonNull(metrics);
+        this.enabled = enabled;
+        for (var i = 0; i < MAX_HOPS; i++) {
+            hops[i] = metrics.latency("server.public.latency.hop." + i);
+        }
+        this.endToEnd = metrics.latency("server.public.latency.end_to_end");
+    }
+
+    public Frame.PublicMessage received(Frame.PublicMessage message, boolean isForwarded) {
+        Objects.requireNonNull(message);
+        var trace = message.trace();
+        if (!isForwarded) {
+            // only the servers stamp the messages, a client could send any time and any hop count
+            if (enabled) {
+                return message.withTrace(Trace.start());
+            }
+            return trace == null ? message : message.withTrace(null);
+        }
+        if (trace == null) {
+            // the other servers trace the messages of their own clients
+            return message;
+        }
+        trace = trace.nextHop();
+        hops[Math.min(trace.hopCount(), MAX_HOPS - 1)].record(trace.elapsedMicros());
+        return message.withTrace(trace);
+    }
+
+    public Frame.PublicMessage delivered(Frame.PublicMessage message) {
+        Objects.requireNonNull(message);
+        var trace = message.trace();
+        if (trace == null) {
+            return message;
+        }
+        endToEnd.record(trace.elapsedMicros());
+        // the clients do not need the trace
+        return message.withTrace(null);
+    }
+}
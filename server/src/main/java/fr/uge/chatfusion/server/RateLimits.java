@@ -0,0 +1,86 @@
+package fr.uge.chatfusion.server;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+ * The limits of the traffic received by the server, for each scope and kind of traffic. The limits of the users and
+ * of the links are given to each connection, while the limits of an address are shared by every client connected from
+ * it. A missing limit means the traffic is not limited.
+ */
+final class RateLimits {
+    enum Scope {
+        USER, ADDRESS, LINK
+    }
+
+    // messages for the public and direct messages, bytes for the files
+    enum Kind {
+        PUBLIC, DIRECT, FILE
+    }
+
+    record Limit(double perSecond, long burst) {
+        Limit {
+            if (!(perSecond > 0) || Double.isInfinite(perSecond)) {
+                throw new IllegalArgumentException("The rate must be positive: " + perSecond);
+            }
+            if (burst <= 0) {
+                throw new IllegalArgumentException("The burst must be positive: " + burst);
+            }
+        }
+    }
+
+    private static final int KINDS = Kind.values().length;
+
+    private final Limit[] limits = new Limit[Scope.values().length * KINDS];
+
+    // <scope>.<kind>=<rate>[/<burst>], the burst being one second of traffic by default
+    void set(String description) {
+        Objects.requireNonNull(description);
+        var equals = description.indexOf('=');
+        var dot = description.indexOf('.');
+        if (equals < 0 || dot < 0 || dot > equals) {
+            throw new IllegalArgumentException("Invalid limit: " + description);
+        }
+        Scope scope;
+        Kind kind;
+        try {
+            scope = Scope.valueOf(description.substring(0, dot).toUpperCase(Locale.ROOT));
+            kind = Kind.valueOf(description.substring(dot + 1, equals).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid limit: " + description);
+        }
+        var value = description.substring(equals + 1);
+        var slash = value.indexOf('/');
+        try {
+            var perSecond = Double.parseDouble(slash < 0 ? value : value.substring(0, slash));
+            var burst = slash < 0 ? Math.max(1, (long) Math.ceil(perSecond)) : Long.parseLong(value.substring(slash + 1));
+            set(scope, kind, new Limit(perSecond, burst));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + description);
+        }
+    }
+
+    void set(Scope scope, Kind kind, Limit limit) {
+        Objects.requireNonNull(scope);
+        Objects.requireNonNull(kind);
+        Objects.requireNonNull(limit);
+        limits[index(scope, kind)] = limit;
+    }
+
+    Limit get(Scope scope, Kind kind) {
+        return limits[index(scope, kind)];
+    }
+
+    boolean has(Scope scope) {
+        for (var kind : Kind.values()) {
+            if (get(scope, kind) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int index(Scope scope, Kind kind) {
+        return scope.ordinal() * KINDS + kind.ordinal();
+    }
+}
@@ -1,44 +1,74 @@
 package fr.uge.chatfusion.server;
 
+import fr.uge.chatfusion.core.base.BloomFilter;
 import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.base.Sizes;
 import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+import fr.uge.chatfusion.core.selection.ConnectionController;
+import fr.uge.chatfusion.core.selection.ConnectionMetrics;
+import fr.uge.chatfusion.core.selection.SelectionKeyController;
+import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
 import fr.uge.chatfusion.server.visitor.*;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.channels.ClosedChannelException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
 
 final class Server implements
     ClientToServerInterface, ServerToServerInterface, DefaultToServerInterface, PendingFusionToServerInterface {
-    private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(Server.class);
+    // the logouts of this period are announced to the group at once
+    private static final long DIRECTORY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
     private final Selector selector = Selector.open();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics(metrics);
     private final ServerSocketChannelController controller;
     private final ClientToServerController serverClient;
     private final ServerToServerController serverServer;
     private final String serverName;
+    private final EncodedString encodedServerName;
     private final InetSocketAddress address;
+    private final PublicMessageTracer tracer;
+    private Throttles throttles;
+    private Connector connector = this::connectSocket;
+    private UnixDomainSocketAddress unixAddress;
+    private AdminServer admin;
+    private boolean directoryScheduled;
+    private boolean loginAnnounceScheduled;
 
     public Server(String serverName, int port) throws IOException {
+        this(serverName, port, false);
+    }
+
+    public Server(String serverName, int port, boolean tracing) throws IOException {
         Objects.requireNonNull(serverName);
         if (port < 0 || port > 65535) {
             throw new IllegalArgumentException("Invalid port: " + port);
         }
         this.serverName = serverName;
+        this.encodedServerName = EncodedString.of(serverName);
         this.address = new InetSocketAddress(InetAddress.getLocalHost(), port);
         this.controller = new ServerSocketChannelController(this, address, selector);
-        this.serverClient = new ClientToServerController(serverName, this);
-        this.serverServer = new ServerToServerController(serverName, this, address);
+        this.serverClient = new ClientToServerController(encodedServerName, this, metrics);
+        this.serverServer = new ServerToServerController(encodedServerName, this, address, metrics);
+        this.tracer = new PublicMessageTracer(tracing, metrics);
+        this.throttles = new Throttles(new RateLimits(), controller, metrics);
     }
 
     public void launch() throws IOException {
@@ -46,8 +76,64 @@ final class Server implements
         console.setDaemon(true);
         console.start();
 
-        LOGGER.log(Level.INFO, "Server started on port " + address.getPort());
-        controller.launch();
+        if (unixAddress == null) {
+            LOGGER.log(Level.INFO, "Server started", "port", address.getPort());
+        } else {
+            LOGGER.log(Level.INFO, "Server started", "port", address.getPort(), "unix", unixAddress.getPath());
+        }
+        if (admin != null) {
+            admin.start();
+        }
+        try {
+            controller.launch();
+        } finally {
+            if (admin != null) {
+                admin.stop();
+            }
+        }
+    }
+
+    // the endpoint is not authenticated, it only listens on the loopback address unless told otherwise
+    public void enableAdmin(int port) throws IOException {
+        enableAdmin(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public void enableAdmin(InetAddress bindAddress, int port) throws IOException {
+        Objects.requireNonNull(bindAddress);
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        if (admin != null) {
+            throw new IllegalStateException("Admin endpoint already enabled");
+        }
+        admin = new AdminServer(this, new InetSocketAddress(bindAddress, port));
+    }
+
+    // the servers and clients of the same host can connect to the socket without going through TCP
+    public void listenUnix(Path path) throws IOException {
+        Objects.requireNonNull(path);
+        if (unixAddress != null) {
+            throw new IllegalStateException("Unix domain socket already enabled");
+        }
+        unixAddress = UnixDomainSocketAddress.of(path);
+        controller.listen(unixAddress);
+    }
+
+    public void limitRates(RateLimits limits) {
+        Objects.requireNonNull(limits);
+        throttles = new Throttles(limits, controller, metrics);
+    }
+
+    // the connections to the other servers are opened over sockets, unless they are in the same process
+    void useConnector(Connector connector) {
+        Objects.requireNonNull(connector);
+        this.connector = connector;
+    }
+
+    void accept(ConnectionController controller) {
+        Objects.requireNonNull(controller);
+        var infos = new UnknownRemoteInfo(controller.remoteAddress(), controller);
+        controller.setVisitor(Visitors.defaultVisitor(this, infos));
     }
 
     @Override
@@ -82,15 +168,28 @@ final class Server implements
         Objects.requireNonNull(fusionInitFwd);
         Objects.requireNonNull(infos);
         var address = fusionInitFwd.leaderAddress();
-        if (address.getAddress().isLoopbackAddress() && address.getPort() == this.address.getPort()) {
+        if (isSelf(address)) {
             LOGGER.log(Level.WARNING, "Server tried to fusion with an other server of the group.");
             return;
         }
+        if (!ServerToServerController.isReachable(address, infos.controller())) {
+            logMessageAndClose(
+                Level.SEVERE,
+                "Unreachable leader address. Closing connection...",
+                "leader",
+                address,
+                infos.address(),
+                infos.controller()
+            );
+            return;
+        }
         logMessageAndClose(
             Level.INFO,
-            "Fusion forwarded to the leader of the remote group (" + address + ")",
+            "Fusion forwarded to the leader of the remote group",
+            "leader",
+            address,
             infos.address(),
-            infos.connection()
+            infos.controller()
         );
         serverServer.forwardedFusion();
         initFusion(address);
@@ -105,46 +204,60 @@ final class Server implements
     public void sendDirectMessage(Frame.DirectMessage message, IdentifiedRemoteInfo infos) {
         Objects.requireNonNull(message);
         Objects.requireNonNull(infos);
-        if (!Sizes.checkMessageSize(message.message())) {
+        if (!Sizes.checkMessageSize(message.messageSize())) {
             logMessageAndClose(
                 Level.WARNING,
-                "Message too long from: "
-                    + message.originServer()
-                    + "/" + message.senderUsername(),
+                "Message too long",
+                "sender",
+                message.senderUsername(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
 
-        if (serverName.equals(message.destinationServer())) {
-            serverClient.sendDirectMessage(message);
-        } else {
-            serverServer.forwardDirectMessage(message, infos);
+        var destinationServer = message.destinationServer();
+        var sent = serverName.equals(destinationServer)
+            ? serverClient.sendDirectMessage(message)
+            : serverServer.forwardDirectMessage(message, infos);
+        if (!sent) {
+            sendToSender(message.originServer(), message.senderUsername(), new Frame.UnknownRecipient(
+                message.originServer(),
+                message.senderUsername(),
+                destinationServer,
+                message.recipientUsername()
+            ));
         }
+    }
 
+    @Override
+    public void openFile(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos) {
+        openFile(fileOpen, infos, FileRoutes.MAX_USER_ROUTES);
     }
 
     @Override
-    public void sendFile(Frame.FileSending fileSending, IdentifiedRemoteInfo infos) {
-        Objects.requireNonNull(fileSending);
+    public void forwardFileOpen(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos) {
+        openFile(fileOpen, infos, FileRoutes.MAX_LINK_ROUTES);
+    }
+
+    @Override
+    public void sendFileBlock(Frame.FileBlock fileBlock, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(fileBlock);
         Objects.requireNonNull(infos);
-        if (fileSending.block().capacity() > Sizes.MAX_FILE_BLOCK_SIZE) {
+        if (fileBlock.block().capacity() > Sizes.MAX_FILE_BLOCK_SIZE) {
             logMessageAndClose(
                 Level.SEVERE,
-                "File block too long from: "
-                    + fileSending.originServer()
-                    + "/" + fileSending.senderUsername(),
+                "File block too long",
+                "sender",
+                infos.name(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
 
-        if (serverName.equals(fileSending.destinationServer())) {
-            serverClient.sendFile(fileSending);
-        } else {
-            serverServer.forwardFileSending(fileSending, infos);
+        if (!serverClient.sendFileBlock(fileBlock, infos) && !serverServer.forwardFileBlock(fileBlock, infos)) {
+            LOGGER.log(Level.INFO, "Unknown file transfer", "file", fileBlock.fileId(), "sender", infos.name());
         }
     }
 
@@ -153,6 +266,27 @@ final class Server implements
         sendPublicMessage(message, infos, true);
     }
 
+    @Override
+    public void updateDirectory(Frame.DirectoryUpdate directoryUpdate, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(directoryUpdate);
+        Objects.requireNonNull(infos);
+        serverServer.updateDirectory(directoryUpdate, infos);
+    }
+
+    @Override
+    public void sendUnknownRecipient(Frame.UnknownRecipient unknownRecipient, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(unknownRecipient);
+        Objects.requireNonNull(infos);
+        sendToSender(unknownRecipient.originServer(), unknownRecipient.senderUsername(), unknownRecipient);
+    }
+
+    @Override
+    public void sendFileRefused(Frame.FileRefused fileRefused, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(fileRefused);
+        Objects.requireNonNull(infos);
+        sendToSender(fileRefused.originServer(), fileRefused.senderUsername(), fileRefused);
+    }
+
     @Override
     public void fusionRequest(Frame.FusionRequest fusionRequest, IdentifiedRemoteInfo infos) {
         Objects.requireNonNull(fusionRequest);
@@ -160,21 +294,38 @@ final class Server implements
         if (!serverServer.isLeader()) {
             logMessageAndClose(
                 Level.SEVERE,
-                "Received fusion request from " + infos.name() + " without being leader",
+                "Received fusion request without being leader",
+                "server",
+                infos.name(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
         var address = fusionRequest.remote();
-        if (address.getAddress().isLoopbackAddress() && address.getPort() == this.address.getPort()) {
+        if (isSelf(address)) {
             LOGGER.log(
                 Level.WARNING,
-                infos.name() + "(" + infos.address() + ") tried to fusion with an other server of the group."
+                "Server tried to fusion with an other server of the group.",
+                "server",
+                infos.name(),
+                "address",
+                infos.address()
             );
             return;
         }
-        LOGGER.log(Level.INFO, "Fusion request from " + infos.address());
+        if (!ServerToServerController.isReachable(address, infos.controller())) {
+            logMessageAndClose(
+                Level.SEVERE,
+                "Unreachable fusion address. Closing connection...",
+                "address",
+                address,
+                infos.address(),
+                infos.controller()
+            );
+            return;
+        }
+        LOGGER.log(Level.INFO, "Fusion request", "remote", infos.address());
         initFusion(fusionRequest.remote());
     }
 
@@ -182,24 +333,18 @@ final class Server implements
     public void changeLeader(Frame.FusionChangeLeader changeLeader, IdentifiedRemoteInfo infos) {
         Objects.requireNonNull(changeLeader);
         Objects.requireNonNull(infos);
-        controller.addCommand(() -> {
-            try {
-                serverServer.changeLeader(changeLeader, infos, this::connectTo);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        });
+        controller.addCommand(() -> serverServer.changeLeader(changeLeader, infos, connector));
     }
 
     private void sendPublicMessage(Frame.PublicMessage message, IdentifiedRemoteInfo infos, boolean isFwd) {
         if (!Sizes.checkMessageSize(message.message())) {
             logMessageAndClose(
                 Level.WARNING,
-                "Message too long from: "
-                    + message.originServer()
-                    + "/" + message.senderUsername(),
+                "Message too long",
+                "sender",
+                message.senderUsername(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
@@ -208,12 +353,39 @@ final class Server implements
             return;
         }
 
+        var traced = tracer.received(message, isFwd);
         if (!isFwd || serverServer.isLeader()) {
-            if (!serverServer.tryForwardPublicMessage(message, infos)) {
+            if (!serverServer.tryForwardPublicMessage(traced, infos)) {
                 return;
             }
         }
-        serverClient.sendPublicMessage(message, infos);
+        serverClient.sendPublicMessage(tracer.delivered(traced), infos);
+    }
+
+    private void openFile(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos, int maxRoutes) {
+        Objects.requireNonNull(fileOpen);
+        Objects.requireNonNull(infos);
+        var destinationServer = fileOpen.destinationServer();
+        var opened = serverName.equals(destinationServer)
+            ? serverClient.openFile(fileOpen, infos, maxRoutes)
+            : serverServer.forwardFileOpen(fileOpen, infos, maxRoutes);
+        if (!opened) {
+            sendToSender(fileOpen.originServer(), fileOpen.senderUsername(), new Frame.UnknownRecipient(
+                fileOpen.originServer(),
+                fileOpen.senderUsername(),
+                destinationServer,
+                fileOpen.recipientUsername()
+            ));
+        }
+    }
+
+    // the sender is told by the first server that knows its frame cannot be delivered
+    private void sendToSender(String originServer, String senderUsername, Frame frame) {
+        if (serverName.equals(originServer)) {
+            serverClient.sendToSender(senderUsername, frame);
+        } else {
+            serverServer.forwardToOrigin(originServer, frame);
+        }
     }
 
     private boolean checkValidForward(String originServer, IdentifiedRemoteInfo infos, boolean isForwarded) {
@@ -221,15 +393,61 @@ final class Server implements
             !isForwarded && !serverName.equals(originServer)) {
             logMessageAndClose(
                 Level.SEVERE,
-                "Invalid origin server and forwarding state: " + originServer,
+                "Invalid origin server and forwarding state",
+                "origin",
+                originServer,
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return false;
         }
         return true;
     }
 
+    // the transfer was not opened, its blocks will be dropped
+    void refuseFile(Frame.FileOpen fileOpen) {
+        Objects.requireNonNull(fileOpen);
+        var originServer = fileOpen.originServer();
+        var senderUsername = fileOpen.senderUsername();
+        var fileRefused = new Frame.FileRefused(originServer, senderUsername, fileOpen.fileId());
+        sendToSender(originServer, senderUsername, fileRefused);
+    }
+
+    // a closed connection is neither the source nor the destination of a transfer anymore
+    void closeFileRoutes(SelectionKeyController controller) {
+        Objects.requireNonNull(controller);
+        serverClient.removeFileRoutes(controller);
+        serverServer.removeFileRoutes(controller);
+    }
+
+    // announced at the end of the selector round, the group must not reject the messages to a user who logged in
+    void userLoggedIn() {
+        if (loginAnnounceScheduled) {
+            return;
+        }
+        loginAnnounceScheduled = true;
+        controller.schedule(0, () -> {
+            loginAnnounceScheduled = false;
+            announceUsers();
+        });
+    }
+
+    // a late logout only lets through messages that this server rejects itself
+    void userLoggedOut() {
+        if (directoryScheduled) {
+            return;
+        }
+        directoryScheduled = true;
+        controller.schedule(DIRECTORY_DELAY_NANOS, () -> {
+            directoryScheduled = false;
+            announceUsers();
+        });
+    }
+
+    private void announceUsers() {
+        serverServer.announceUsers(BloomFilter.of(serverClient.usernames()));
+    }
+
     void shutdown() {
         LOGGER.log(Level.INFO, "Stop accepting new connections");
         controller.shutdown();
@@ -240,18 +458,12 @@ final class Server implements
         CloseableUtils.silentlyClose(selector);
     }
 
-    boolean initFusion(InetSocketAddress remote) {
+    boolean initFusion(SocketAddress remote) {
         Objects.requireNonNull(remote);
-        if (address.getAddress().isLoopbackAddress() && address.getPort() == remote.getPort()) {
+        if (isSelf(remote)) {
             return false;
         }
-        controller.addCommand(() -> {
-            try {
-                serverServer.initFusion(remote, this::connectTo);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        });
+        controller.addCommand(() -> serverServer.initFusion(remote, connector));
         return true;
     }
 
@@ -268,17 +480,105 @@ final class Server implements
         });
     }
 
-    private SelectionKey connectTo(SocketChannel channel) {
+    void metrics() {
+        // the metrics can be read from any thread, there is no need to go through the selector thread
+        System.out.println("Server metrics:\n" + metrics.snapshot().format());
+    }
+
+    void submit(Runnable command) {
+        controller.addCommand(command);
+    }
+
+    // the following methods must only be called by the selector thread, see submit
+
+    String name() {
+        return serverName;
+    }
+
+    InetSocketAddress address() {
+        return address;
+    }
+
+    // a server reached through a Unix domain socket is on the same host, it can reach this server the same way
+    SocketAddress advertisedAddress(SocketAddress remote) {
+        return remote instanceof UnixDomainSocketAddress && unixAddress != null ? unixAddress : address;
+    }
+
+    boolean isLeader() {
+        return serverServer.isLeader();
+    }
+
+    ServerToServerController.Topology topology() {
+        return serverServer.topology();
+    }
+
+    List<String> usernames() {
+        return serverClient.usernames();
+    }
+
+    String prometheusMetrics() {
+        return metrics.snapshot().formatPrometheus();
+    }
+
+    ConnectionMetrics connectionMetrics() {
+        return connectionMetrics;
+    }
+
+    Throttles throttles() {
+        return throttles;
+    }
+
+    // whether the address is one of this server, with which a fusion would never end
+    private boolean isSelf(SocketAddress remote) {
+        if (remote instanceof InetSocketAddress inet) {
+            return !inet.isUnresolved() && inet.getAddress().isLoopbackAddress() && inet.getPort() == address.getPort();
+        }
+        return remote.equals(unixAddress);
+    }
+
+    private ConnectionController connectSocket(SocketAddress remote) throws IOException {
+        var sc = remote instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        boolean connected;
         try {
-            return channel.register(selector, SelectionKey.OP_CONNECT);
-        } catch (ClosedChannelException e) {
-            throw new UncheckedIOException(e);
+            sc.configureBlocking(false);
+            connected = sc.connect(remote);
+        } catch (IOException | UnresolvedAddressException e) {
+            CloseableUtils.silentlyClose(sc);
+            throw e;
         }
+        var key = sc.register(selector, SelectionKey.OP_CONNECT);
+        var controller = new SelectionKeyControllerImpl(key, remote, false, true, false);
+        controller.setMetrics(connectionMetrics);
+        key.attach(controller);
+        if (connected) {
+            // a Unix domain socket is connected right away, the selector will not tell it
+            controller.doConnect();
+        }
+        return controller;
+    }
+
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address);
+        connection.close();
     }
 
-    private void logMessageAndClose(Level level, String message, InetSocketAddress address, Closeable closeable) {
-        LOGGER.log(level, address + " : " + message);
-        CloseableUtils.silentlyClose(closeable);
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        String key,
+        Object value,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address, key, value);
+        connection.close();
     }
 
 }
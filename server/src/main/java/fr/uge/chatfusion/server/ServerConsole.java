@@ -1,6 +1,9 @@
 package fr.uge.chatfusion.server;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.InvalidPathException;
 import java.util.Objects;
 import java.util.Scanner;
 
@@ -20,6 +23,7 @@ final class ServerConsole implements Runnable {
 
                 switch (input) {
                     case "INFO" -> server.info();
+                    case "METRICS" -> server.metrics();
                     case "SHUTDOWN" -> server.shutdown();
                     case "SHUTDOWNNOW" -> {
                         server.shutdownNow();
@@ -39,20 +43,30 @@ final class ServerConsole implements Runnable {
 
     private void fusion(String input) {
         var args = input.split(" ");
-        if (args.length < 3) {
-            System.out.println("Usage: FUSION <host> <port>");
+        if (args.length < 2) {
+            System.out.println("Usage: FUSION <host> <port> or FUSION <socket path>");
             return;
         }
-        var host = args[1];
-        var strPort = args[2];
-        try {
-            var port = Integer.parseInt(strPort);
-            var address = new InetSocketAddress(host, port);
-            if (!server.initFusion(address)) {
-                System.out.println("Server cannot fuse with itself.");
+        SocketAddress address;
+        if (args.length == 2) {
+            try {
+                address = UnixDomainSocketAddress.of(args[1]);
+            } catch (InvalidPathException e) {
+                System.out.println("Invalid socket path: " + args[1]);
+                return;
             }
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid port: " + strPort);
+        } else {
+            var host = args[1];
+            var strPort = args[2];
+            try {
+                address = new InetSocketAddress(host, Integer.parseInt(strPort));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid port: " + strPort);
+                return;
+            }
+        }
+        if (!server.initFusion(address)) {
+            System.out.println("Server cannot fuse with itself.");
         }
     }
 }
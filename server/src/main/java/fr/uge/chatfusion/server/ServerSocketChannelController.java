@@ -1,25 +1,33 @@
 package fr.uge.chatfusion.server;
 
 import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+import fr.uge.chatfusion.core.selection.ReadyList;
 import fr.uge.chatfusion.core.selection.SelectionKeyController;
 import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
-import fr.uge.chatfusion.server.visitor.UnknownRemoteInfo;
-import fr.uge.chatfusion.server.visitor.Visitors;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.*;
+import java.nio.file.Files;
 import java.util.ArrayDeque;
 import java.util.Objects;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 
 final class ServerSocketChannelController {
-    private final Logger LOGGER = Logger.getLogger(ServerSocketChannelController.class.getName());
+    private final Logger LOGGER = Logger.getLogger(ServerSocketChannelController.class);
 
     private final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+    private ServerSocketChannel unixChannel;
+    private UnixDomainSocketAddress unixAddress;
     private final ArrayDeque<Runnable> commands = new ArrayDeque<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long timerSequence;
     private final Selector selector;
     private final Server server;
 
@@ -32,17 +40,47 @@ final class ServerSocketChannelController {
         this.selector = selector;
     }
 
+    // a file left by a server that was not shut down would prevent binding the socket, it is replaced
+    public void listen(UnixDomainSocketAddress address) throws IOException {
+        Objects.requireNonNull(address);
+        if (unixChannel != null) {
+            throw new IllegalStateException("Already listening to a Unix domain socket");
+        }
+        Files.deleteIfExists(address.getPath());
+        var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(address);
+        } catch (IOException e) {
+            CloseableUtils.silentlyClose(channel);
+            throw e;
+        }
+        unixChannel = channel;
+        unixAddress = address;
+    }
+
     public void launch() throws IOException {
         serverSocketChannel.configureBlocking(false);
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        if (unixChannel != null) {
+            unixChannel.configureBlocking(false);
+            unixChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
         while (!Thread.interrupted()) {
             try {
-                selector.select(this::treatKey);
+                var timeout = selectTimeout();
+                if (timeout < 0) {
+                    selector.selectNow(this::treatKey);
+                } else {
+                    selector.select(this::treatKey, timeout);
+                }
                 processCommands();
+                processTimers();
+                ReadyList.current().serve();
             } catch (CancelledKeyException e) {
                 // ignore exception cause by closing
             } catch (ClosedSelectorException e) {
-                // ignore exception caused by server shutdown
+                // ignore exception caused by server shutdown, but do not leave the socket file behind
+                shutdown();
                 break;
             } catch (UncheckedIOException tunneled) {
                 throw tunneled.getCause();
@@ -58,8 +96,22 @@ final class ServerSocketChannelController {
         }
     }
 
+    // must be called by the selector thread, unlike addCommand
+    public void schedule(long delayNanos, Runnable task) {
+        Objects.requireNonNull(task);
+        timers.add(new Timer(System.nanoTime() + delayNanos, timerSequence++, task));
+    }
+
     public void shutdown() {
         CloseableUtils.silentlyClose(serverSocketChannel);
+        if (unixChannel != null) {
+            CloseableUtils.silentlyClose(unixChannel);
+            try {
+                Files.deleteIfExists(unixAddress.getPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unix domain socket not deleted", "path", unixAddress.getPath());
+            }
+        }
     }
 
     private void processCommands() {
@@ -70,6 +122,26 @@ final class ServerSocketChannelController {
         }
     }
 
+    // 0 blocks until a key is selected, a negative timeout means there is work to do right away
+    private long selectTimeout() {
+        if (!ReadyList.current().isEmpty()) {
+            return -1;
+        }
+        var timer = timers.peek();
+        if (timer == null) {
+            return 0;
+        }
+        var delay = timer.deadline() - System.nanoTime();
+        return delay <= 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(delay + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    private void processTimers() {
+        var now = System.nanoTime();
+        while (!timers.isEmpty() && timers.peek().deadline() - now <= 0) {
+            timers.poll().task().run();
+        }
+    }
+
     private void treatKey(SelectionKey key) {
         try {
             if (key.isValid() && key.isAcceptable()) {
@@ -102,7 +174,7 @@ final class ServerSocketChannelController {
 
         sc.configureBlocking(false);
         var skey = sc.register(selector, SelectionKey.OP_READ);
-        var remoteAddress = (InetSocketAddress) sc.getRemoteAddress();
+        var remoteAddress = sc.getRemoteAddress();
         var controller = new SelectionKeyControllerImpl(
             skey,
             remoteAddress,
@@ -110,9 +182,16 @@ final class ServerSocketChannelController {
             true,
             false
         );
-        var infos = new UnknownRemoteInfo(sc, remoteAddress, controller);
-        var visitor = Visitors.defaultVisitor(server, infos);
-        controller.setVisitor(visitor);
+        controller.setMetrics(server.connectionMetrics());
+        server.accept(controller);
         skey.attach(controller);
     }
+
+    private record Timer(long deadline, long sequence, Runnable task) implements Comparable<Timer> {
+        @Override
+        public int compareTo(Timer timer) {
+            var comparison = Long.compare(deadline - timer.deadline, 0);
+            return comparison != 0 ? comparison : Long.compare(sequence, timer.sequence);
+        }
+    }
 }
@@ -1,48 +1,65 @@
 package fr.uge.chatfusion.server;
 
-import fr.uge.chatfusion.core.base.BufferUtils;
-import fr.uge.chatfusion.core.base.CloseableUtils;
+import fr.uge.chatfusion.core.base.BloomFilter;
+import fr.uge.chatfusion.core.base.EncodedString;
 import fr.uge.chatfusion.core.base.Sizes;
 import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.log.Level;
+import fr.uge.chatfusion.core.log.Logger;
+import fr.uge.chatfusion.core.metrics.Counter;
+import fr.uge.chatfusion.core.metrics.Histogram;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+import fr.uge.chatfusion.core.selection.ConnectionController;
 import fr.uge.chatfusion.core.selection.SelectionKeyController;
-import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
 import fr.uge.chatfusion.server.visitor.IdentifiedRemoteInfo;
 import fr.uge.chatfusion.server.visitor.UnknownRemoteInfo;
 import fr.uge.chatfusion.server.visitor.Visitors;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.SocketChannel;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.UnresolvedAddressException;
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Supplier;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 final class ServerToServerController {
-    private static final Logger LOGGER = Logger.getLogger(ServerToServerController.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(ServerToServerController.class);
 
     private HashMap<String, SelectionKeyController> members = new HashMap<>();
     private final String serverName;
+    private final EncodedString encodedServerName;
     private final Server server;
-    private final InetSocketAddress address;
+    private final SocketAddress address;
     private final HashSet<String> futureMembers = new HashSet<>();
+    private final FileRoutes fileRoutes = new FileRoutes();
+    private final UserDirectory directory = new UserDirectory();
+    private final Histogram relayFanOut;
+    private final Counter relays;
+    private final Counter routingMisses;
+    private final Counter earlyRejections;
+    private BloomFilter localUsers = BloomFilter.of(List.of());
     private ServerLeader leader;
     private boolean isFusing;
 
 
-    public ServerToServerController(String serverName, Server server, InetSocketAddress address) {
+    public ServerToServerController(
+        EncodedString serverName,
+        Server server,
+        SocketAddress address,
+        MetricsRegistry metrics
+    ) {
         Objects.requireNonNull(address);
         Objects.requireNonNull(server);
         Objects.requireNonNull(serverName);
+        Objects.requireNonNull(metrics);
         this.address = address;
         this.server = server;
-        this.serverName = serverName;
+        this.serverName = serverName.value();
+        this.encodedServerName = serverName;
+        this.relayFanOut = metrics.histogram("server.servers.public.fanout", Histogram.exponentialBounds(10));
+        this.relays = metrics.counter("server.servers.relays");
+        this.routingMisses = metrics.counter("server.servers.routing.misses");
+        this.earlyRejections = metrics.counter("server.servers.early.rejections");
     }
 
     public void tryFusion(Frame.FusionInit fusionInit, UnknownRemoteInfo infos) {
@@ -53,7 +70,7 @@ final class ServerToServerController {
                 Level.WARNING,
                 "Fusion already in progress",
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return;
         }
@@ -62,6 +79,7 @@ final class ServerToServerController {
         // check if server is the leader
         if (leader != null) {
             LOGGER.log(Level.INFO, "Server is not the leader. Sending leader address...");
+            transition(FusionEvent.Transition.REDIRECTED, infos.address());
             var data = Frame.FusionInitFwd.buffer(leader.infos().address());
             ctx.queueData(data);
             ctx.closeWhenAllSent();
@@ -69,41 +87,45 @@ final class ServerToServerController {
         }
 
         // check if provided information are valid and compatible
-        if (!checkFusion(fusionInit.serverName(), fusionInit.members(), infos)) {
+        if (!checkFusion(fusionInit.serverName(), fusionInit.serverAddress(), fusionInit.members(), infos)) {
             return;
         }
 
         // accept the fusion
-        var data = Frame.FusionInitOk.buffer(serverName, address, new ArrayList<>(members.keySet()));
+        var advertised = server.advertisedAddress(infos.address());
+        var data = Frame.FusionInitOk.buffer(encodedServerName, advertised, new ArrayList<>(members.keySet()));
         ctx.queueData(data);
 
         // proceed to the fusion
         LOGGER.log(
             Level.INFO,
-            "Fusion accepted with "
-                + fusionInit.serverName()
-                + " ("
-                + fusionInit.serverAddress()
-                + ")"
+            "Fusion accepted",
+            "server",
+            fusionInit.serverName(),
+            "address",
+            fusionInit.serverAddress()
         );
         isFusing = true;
+        transition(FusionEvent.Transition.ACCEPTED, fusionInit.serverName());
         fuse(fusionInit.serverName(), fusionInit.members(), fusionInit.serverAddress(), infos);
     }
 
     public void acceptFusion(Frame.FusionInitOk fusionInitOk, UnknownRemoteInfo infos) {
         Objects.requireNonNull(fusionInitOk);
         Objects.requireNonNull(infos);
-        if (!checkFusion(fusionInitOk.serverName(), fusionInitOk.members(), infos)) {
+        if (!checkFusion(fusionInitOk.serverName(), fusionInitOk.serverAddress(), fusionInitOk.members(), infos)) {
             return;
         }
 
-        LOGGER.log(Level.INFO,
-            "Fusion accepted by distant server "
-                + fusionInitOk.serverName()
-                + "("
-                + fusionInitOk.serverAddress()
-                + ")"
+        LOGGER.log(
+            Level.INFO,
+            "Fusion accepted by distant server",
+            "server",
+            fusionInitOk.serverName(),
+            "address",
+            fusionInitOk.serverAddress()
         );
+        transition(FusionEvent.Transition.ACCEPTED_BY_REMOTE, fusionInitOk.serverName());
         fuse(fusionInitOk.serverName(), fusionInitOk.members(), fusionInitOk.serverAddress(), infos);
     }
 
@@ -117,21 +139,27 @@ final class ServerToServerController {
                 Level.SEVERE,
                 "Wrong serverName. Closing connection...",
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
+            return;
         }
         var ctx = infos.controller();
-        var serverInfos = new IdentifiedRemoteInfo(fusionMerge.name(), infos.connection(), infos.address());
-        ctx.setVisitor(Visitors.fusedServerVisitor(server, serverInfos));
+        var serverInfos = new IdentifiedRemoteInfo(fusionMerge.name(), infos.controller(), infos.address());
+        ctx.setVisitor(Visitors.fusedServerVisitor(server, serverInfos, server.throttles().forLink(ctx)));
+        watchLink(ctx, name);
         members.put(name, infos.controller());
+        sendDirectory(ctx, name);
+        transition(FusionEvent.Transition.MEMBER_MERGED, name);
         if (futureMembers.isEmpty()) {
             LOGGER.log(Level.INFO, "Fusion complete");
             isFusing = false;
+            transition(FusionEvent.Transition.COMPLETED, name);
         }
     }
 
     private boolean checkFusion(
         String remoteName,
+        SocketAddress remoteAddress,
         List<String> remoteMembers,
         UnknownRemoteInfo infos
     ) {
@@ -139,9 +167,24 @@ final class ServerToServerController {
         if (!Sizes.checkServerNameSize(remoteName) || serverName.equals(remoteName)) {
             logMessageAndClose(
                 Level.SEVERE,
-                "Invalid leader serverName (" + remoteName + "). Closing connection...",
+                "Invalid leader serverName. Closing connection...",
+                "server",
+                remoteName,
                 infos.address(),
-                infos.connection()
+                infos.controller()
+            );
+            return false;
+        }
+
+        // checking leader's address
+        if (!isReachable(remoteAddress, infos.controller())) {
+            logMessageAndClose(
+                Level.SEVERE,
+                "Unreachable leader address. Closing connection...",
+                "address",
+                remoteAddress,
+                infos.address(),
+                infos.controller()
             );
             return false;
         }
@@ -153,13 +196,11 @@ final class ServerToServerController {
         if (invalidServer.isPresent()) {
             logMessageAndClose(
                 Level.SEVERE,
-                "Invalid member (leader= "
-                    + remoteName
-                    + ") serverName ("
-                    + invalidServer.get()
-                    + "). Closing connection...",
+                "Invalid member serverName. Closing connection...",
+                "member",
+                invalidServer.get(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return false;
         }
@@ -171,7 +212,7 @@ final class ServerToServerController {
     private void fuse(
         String remoteName,
         List<String> remoteMembers,
-        InetSocketAddress remoteAddress,
+        SocketAddress remoteAddress,
         UnknownRemoteInfo infos
     ) {
         if (!isFusing) {
@@ -179,84 +220,92 @@ final class ServerToServerController {
         }
 
         var other = infos.controller();
-        var otherInfos = new IdentifiedRemoteInfo(remoteName, infos.connection(), remoteAddress);
-        other.setVisitor(Visitors.fusedServerVisitor(server, otherInfos));
+        var otherInfos = new IdentifiedRemoteInfo(remoteName, infos.controller(), remoteAddress);
+        other.setVisitor(Visitors.fusedServerVisitor(server, otherInfos, server.throttles().forLink(other)));
+        watchLink(other, remoteName);
 
         isFusing = false;
 
         var stillLeader = serverName.compareTo(remoteName) < 0;
         if (stillLeader) {
             LOGGER.log(Level.INFO, "Still leader");
+            transition(FusionEvent.Transition.STILL_LEADER, remoteName);
             members.put(remoteName, other);
             futureMembers.addAll(remoteMembers);
+            sendDirectory(other, remoteName);
             return;
         }
 
-        LOGGER.log(Level.INFO, remoteName + "(" + remoteAddress + ") is the new leader");
+        LOGGER.log(Level.INFO, "New leader", "server", remoteName, "address", remoteAddress);
         leader = new ServerLeader(other, otherInfos);
+        other.queueFrame(new Frame.DirectoryUpdate(serverName, localUsers));
+        transition(FusionEvent.Transition.LEADER_CHANGED, remoteName);
 
-        var buffer = Frame.FusionChangeLeader.buffer(remoteName, remoteAddress);
+        // queueData consumes its buffer, each member encodes the frame on its own
+        var changeLeader = new Frame.FusionChangeLeader(remoteName, remoteAddress);
         this.members.values().forEach(c -> {
-            c.queueData(buffer);
+            c.queueFrame(changeLeader);
             c.closeWhenAllSent();
         });
         this.members = new HashMap<>();
     }
 
-    public void sendToAllExcept(ByteBuffer data, String originServer) {
-        Objects.requireNonNull(data);
+    public void sendToAllExcept(Frame frame, String originServer) {
+        Objects.requireNonNull(frame);
         Objects.requireNonNull(originServer);
-        members.forEach((key, value) -> {
-            if (originServer.equals(key)) return;
-            value.queueData(BufferUtils.copy(data));
-        });
+        var fanOut = 0;
+        for (var member : members.entrySet()) {
+            if (originServer.equals(member.getKey())) continue;
+            member.getValue().queueFrame(frame);
+            fanOut++;
+        }
+        relayFanOut.record(fanOut);
+        relays.add(fanOut);
     }
 
-    public void initFusion(
-        InetSocketAddress remote,
-        Function<SocketChannel, SelectionKey> factory
-    ) throws IOException {
+    public void initFusion(SocketAddress remote, Connector connector) {
         Objects.requireNonNull(remote);
-        Objects.requireNonNull(factory);
+        Objects.requireNonNull(connector);
         if (isFusing) {
             LOGGER.log(Level.WARNING, "Already fusing, ignoring...");
             return;
         }
-        isFusing = true;
-
         if (leader != null) {
+            // the fusion is driven by the leader, nothing tells a member when it ends
             LOGGER.log(Level.INFO, "Forwarding fusion request to leader");
+            transition(FusionEvent.Transition.REQUEST_FORWARDED, remote);
             var data = Frame.FusionRequest.buffer(remote);
             leader.controller().queueData(data);
         } else {
-            sendRequest(remote, factory);
+            isFusing = true;
+            sendRequest(remote, connector);
         }
     }
 
-    private void sendRequest(InetSocketAddress remote, Function<SocketChannel, SelectionKey> factory)
-        throws IOException {
+    private void sendRequest(SocketAddress remote, Connector connector) {
         LOGGER.log(Level.INFO, "Sending fusion request...");
-        var sc = SocketChannel.open();
-        sc.configureBlocking(false);
+        ConnectionController ctx;
         try {
-            sc.connect(remote);
-        } catch (UnresolvedAddressException e) {
-            LOGGER.log(Level.INFO, "Unknown address: " + remote);
+            ctx = connector.connect(remote);
+        } catch (IOException | UnresolvedAddressException e) {
+            // a Unix domain socket without listener is refused right away
+            LOGGER.log(Level.INFO, "Cannot connect", "address", remote, "error", e);
             isFusing = false;
+            transition(FusionEvent.Transition.FAILED, remote);
             return;
         }
-        var key = factory.apply(sc);
-        var ctx = new SelectionKeyControllerImpl(key, remote, false, true, false);
-        var infos = new UnknownRemoteInfo(sc, remote, ctx);
+        var infos = new UnknownRemoteInfo(remote, ctx);
         ctx.setVisitor(Visitors.pendingFusionVisitor(server, infos));
         ctx.setOnClose(() -> {
             LOGGER.log(Level.SEVERE, "Failed to connect to leader");
             isFusing = false;
+            transition(FusionEvent.Transition.FAILED, remote);
         });
-        key.attach(ctx);
 
-        var data = Frame.FusionInit.buffer(serverName, address, new ArrayList<>(members.keySet()));
+        var advertised = server.advertisedAddress(remote);
+        var data = Frame.FusionInit.buffer(encodedServerName, advertised, new ArrayList<>(members.keySet()));
         ctx.queueData(data);
+        transition(FusionEvent.Transition.REQUEST_SENT, remote);
     }
 
     public String info() {
@@ -275,38 +324,78 @@ final class ServerToServerController {
         return leaderInfo + size + " fused member(s):\n-" + connectedList;
     }
 
+    public Topology topology() {
+        var memberAddresses = new TreeMap<String, SocketAddress>();
+        members.forEach((name, controller) -> memberAddresses.put(name, controller.remoteAddress()));
+        return new Topology(
+            leader != null ? leader.infos().name() : serverName,
+            leader != null ? leader.infos().address() : address,
+            memberAddresses,
+            isFusing
+        );
+    }
+
     public void changeLeader(
         Frame.FusionChangeLeader newLeader,
         IdentifiedRemoteInfo infos,
-        Function<SocketChannel, SelectionKey> factory
-    ) throws IOException {
+        Connector connector
+    ) {
         Objects.requireNonNull(newLeader);
         Objects.requireNonNull(infos);
-        Objects.requireNonNull(factory);
+        Objects.requireNonNull(connector);
         if (leader == null || !leader.infos().address().equals(infos.address())) {
-            logMessageAndClose(Level.SEVERE, "Change leader without being leader", address, infos.connection());
+            logMessageAndClose(Level.SEVERE, "Change leader without being leader", address, infos.controller());
+            return;
+        }
+
+        if (!isReachable(newLeader.leaderAddress(), infos.controller())) {
+            logMessageAndClose(
+                Level.SEVERE,
+                "Unreachable leader address. Closing connection...",
+                "address",
+                newLeader.leaderAddress(),
+                infos.address(),
+                infos.controller()
+            );
             return;
         }
 
         LOGGER.log(
             Level.INFO,
-            "Change leader to " + newLeader.leaderName() + "(" + newLeader.leaderAddress() + ")"
+            "Change leader",
+            "server",
+            newLeader.leaderName(),
+            "address",
+            newLeader.leaderAddress()
         );
 
-        var sc = SocketChannel.open();
-        sc.configureBlocking(false);
-        sc.connect(newLeader.leaderAddress());
-        var key = factory.apply(sc);
-
         // creating the context and setting it as leader
-        var ctx = new SelectionKeyControllerImpl(key, newLeader.leaderAddress(), false, true, false);
-        var leaderInfos = new IdentifiedRemoteInfo(newLeader.leaderName(), sc, newLeader.leaderAddress());
-        ctx.setVisitor(Visitors.fusedServerVisitor(server, leaderInfos));
-        key.attach(ctx);
+        ConnectionController ctx;
+        try {
+            ctx = connector.connect(newLeader.leaderAddress());
+        } catch (IOException | UnresolvedAddressException e) {
+            // the old leader closes the link, this server is left on its own
+            LOGGER.log(
+                Level.SEVERE,
+                "Cannot connect to the new leader",
+                "address",
+                newLeader.leaderAddress(),
+                "error",
+                e
+            );
+            leader = null;
+            transition(FusionEvent.Transition.FAILED, newLeader.leaderName());
+            return;
+        }
+        var leaderInfos = new IdentifiedRemoteInfo(newLeader.leaderName(), ctx, newLeader.leaderAddress());
+        ctx.setVisitor(Visitors.fusedServerVisitor(server, leaderInfos, server.throttles().forLink(ctx)));
+        watchLink(ctx, newLeader.leaderName());
         leader = new ServerLeader(ctx, leaderInfos);
+        transition(FusionEvent.Transition.LEADER_CHANGED, newLeader.leaderName());
 
-        var data = Frame.FusionMerge.buffer(serverName);
+        var data = Frame.FusionMerge.buffer(encodedServerName);
         ctx.queueData(data);
+        ctx.queueFrame(new Frame.DirectoryUpdate(serverName, localUsers));
     }
 
     public void rejectFusion(Frame.FusionInitKo fusionInitKo, UnknownRemoteInfo infos) {
@@ -314,11 +403,12 @@ final class ServerToServerController {
         Objects.requireNonNull(infos);
         logMessageAndClose(
             Level.INFO,
-            "Reject fusion request from " + infos.address(),
+            "Fusion request rejected",
             infos.address(),
-            infos.connection()
+            infos.controller()
         );
         isFusing = false;
+        transition(FusionEvent.Transition.REJECTED, infos.address());
     }
 
     public boolean tryForwardPublicMessage(Frame.PublicMessage message, IdentifiedRemoteInfo infos) {
@@ -331,12 +421,11 @@ final class ServerToServerController {
         ) {
             logMessageAndClose(
                 Level.WARNING,
-                "Received public message from "
-                    + message.originServer()
-                    + " but leader is "
-                    + leader.infos().name(),
+                "Received public message from another server than the leader",
+                "origin",
+                message.originServer(),
                 infos.address(),
-                infos.connection()
+                infos.controller()
             );
             return false;
         }
@@ -346,9 +435,10 @@ final class ServerToServerController {
         }
 
         if (leader == null) {
-            sendToAllExcept(message.buffer(), message.originServer());
+            sendToAllExcept(message, message.originServer());
         } else {
-            leader.controller().queueData(message.buffer());
+            relays.increment();
+            leader.controller().queueFrame(message);
         }
         return true;
     }
@@ -361,38 +451,195 @@ final class ServerToServerController {
         return leader == null;
     }
 
-    public void forwardDirectMessage(Frame.DirectMessage message, IdentifiedRemoteInfo infos) {
+    // false if the recipient cannot be reached, the sender has to be told
+    public boolean forwardDirectMessage(Frame.DirectMessage message, IdentifiedRemoteInfo infos) {
         Objects.requireNonNull(message);
         Objects.requireNonNull(infos);
 
         var destinationServer = message.destinationServer();
-        forwardData(destinationServer, message::buffer);
+        if (!mightBeLoggedIn(destinationServer, message.recipientUsername())) {
+            return false;
+        }
+        var recipient = recipientOf(destinationServer);
+        if (recipient == null) {
+            return false;
+        }
+        relays.increment();
+        recipient.queueFrame(message);
+        return true;
     }
 
-    public void forwardFileSending(Frame.FileSending fileSending, IdentifiedRemoteInfo infos) {
-        Objects.requireNonNull(fileSending);
+    // false if the recipient cannot be reached, the sender has to be told and the blocks are dropped on arrival
+    public boolean forwardFileOpen(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos, int maxRoutes) {
+        Objects.requireNonNull(fileOpen);
         Objects.requireNonNull(infos);
 
-        var destinationServer = fileSending.destinationServer();
-        forwardData(destinationServer, fileSending::buffer);
+        var destinationServer = fileOpen.destinationServer();
+        if (!mightBeLoggedIn(destinationServer, fileOpen.recipientUsername())) {
+            return false;
+        }
+        var recipient = recipientOf(destinationServer);
+        if (recipient == null) {
+            return false;
+        }
+        if (!fileRoutes.open(fileOpen.fileId(), infos.controller(), recipient, fileOpen.blockCount(), maxRoutes)) {
+            LOGGER.log(Level.WARNING, "File transfer refused", "file", fileOpen.fileId(), "sender", infos.name());
+            server.refuseFile(fileOpen);
+            return true;
+        }
+        relays.increment();
+        recipient.queueFrame(fileOpen);
+        return true;
+    }
+
+    // routes back a frame telling a sender that its frame could not be delivered
+    public void forwardToOrigin(String originServer, Frame frame) {
+        Objects.requireNonNull(originServer);
+        Objects.requireNonNull(frame);
+        var recipient = recipientOf(originServer);
+        if (recipient == null) {
+            return;
+        }
+        relays.increment();
+        recipient.queueFrame(frame);
+    }
+
+    public void removeFileRoutes(SelectionKeyController controller) {
+        Objects.requireNonNull(controller);
+        fileRoutes.removeAll(controller);
     }
 
-    private void forwardData(String destinationServer, Supplier<ByteBuffer> data) {
+    // the filter of the users of this server, announced to the group
+    public void announceUsers(BloomFilter users) {
+        Objects.requireNonNull(users);
+        localUsers = users;
+        var update = new Frame.DirectoryUpdate(serverName, users);
+        if (leader != null) {
+            leader.controller().queueFrame(update);
+        } else {
+            members.values().forEach(member -> member.queueFrame(update));
+        }
+    }
+
+    public void updateDirectory(Frame.DirectoryUpdate update, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(update);
+        Objects.requireNonNull(infos);
+        var name = update.serverName();
+        if (serverName.equals(name)) {
+            LOGGER.log(Level.WARNING, "Directory update of this server received", "server", infos.name());
+            return;
+        }
+        directory.update(name, update.users());
         if (leader != null) {
-            leader.controller().queueData(data.get());
             return;
         }
+        // the leader is the only link between its members
+        for (var member : members.entrySet()) {
+            if (infos.name().equals(member.getKey())) continue;
+            member.getValue().queueFrame(update);
+        }
+    }
+
+    public boolean forwardFileBlock(Frame.FileBlock fileBlock, IdentifiedRemoteInfo infos) {
+        Objects.requireNonNull(fileBlock);
+        Objects.requireNonNull(infos);
+
+        var recipient = fileRoutes.next(fileBlock.fileId(), infos.controller());
+        if (recipient == null) {
+            routingMisses.increment();
+            return false;
+        }
+        relays.increment();
+        recipient.queueFrame(fileBlock);
+        return true;
+    }
+
+    // a new member gets the users of the leader and of the other members, it announces its own
+    private void sendDirectory(SelectionKeyController member, String memberName) {
+        member.queueFrame(new Frame.DirectoryUpdate(serverName, localUsers));
+        directory.forEach((name, users) -> {
+            if (!name.equals(memberName)) {
+                member.queueFrame(new Frame.DirectoryUpdate(name, users));
+            }
+        });
+    }
+
+    // the transfers going through a closed link will never end, and the users announced through it are not known
+    private void watchLink(ConnectionController link, String remoteName) {
+        link.setOnClose(() -> {
+            server.closeFileRoutes(link);
+            if (leader != null && leader.controller() == link) {
+                // the leader relayed the users of the whole group
+                directory.clear();
+            } else {
+                directory.remove(remoteName);
+            }
+        });
+    }
+
+    private boolean mightBeLoggedIn(String destinationServer, String recipientUsername) {
+        if (directory.mightBeLoggedIn(destinationServer, recipientUsername)) {
+            return true;
+        }
+        LOGGER.log(Level.INFO, "Recipient not logged in", "server", destinationServer, "username", recipientUsername);
+        earlyRejections.increment();
+        return false;
+    }
+
+    private SelectionKeyController recipientOf(String destinationServer) {
+        if (leader != null) {
+            return leader.controller();
+        }
         var recipient = members.get(destinationServer);
         if (recipient == null) {
-            LOGGER.log(Level.INFO, "Direct message destination server (" + destinationServer + ") not found");
-            return;
+            LOGGER.log(Level.INFO, "Destination server not found", "server", destinationServer);
+            routingMisses.increment();
         }
-        recipient.queueData(data.get());
+        return recipient;
     }
 
-    private void logMessageAndClose(Level level, String message, InetSocketAddress address, Closeable closeable) {
-        LOGGER.log(level, address + " : " + message);
-        CloseableUtils.silentlyClose(closeable);
+    private void transition(FusionEvent.Transition transition, Object remote) {
+        FusionEvent.emit(serverName, transition, remote, isFusing);
+    }
+
+    // a Unix domain socket address only means something on the host it came from, that is over a Unix domain socket
+    static boolean isReachable(SocketAddress address, ConnectionController link) {
+        return !(address instanceof UnixDomainSocketAddress) || link.remoteAddress() instanceof UnixDomainSocketAddress;
+    }
+
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address);
+        connection.close();
+    }
+
+    private void logMessageAndClose(
+        Level level,
+        String message,
+        String key,
+        Object value,
+        SocketAddress address,
+        SelectionKeyController connection
+    ) {
+        LOGGER.log(level, message, "remote", address, key, value);
+        connection.close();
+    }
+
+    record Topology(
+        String leaderName,
+        SocketAddress leaderAddress,
+        Map<String, SocketAddress> members,
+        boolean fusing
+    ) {
+        Topology {
+            Objects.requireNonNull(leaderName);
+            Objects.requireNonNull(leaderAddress);
+            members = Collections.unmodifiableMap(new TreeMap<>(members));
+        }
     }
 
     private record ServerLeader(SelectionKeyController controller, IdentifiedRemoteInfo infos) {
@@ -0,0 +1,146 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.base.TokenBucket;
+import fr.uge.chatfusion.core.metrics.Counter;
+import fr.uge.chatfusion.core.metrics.Gauge;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+import fr.uge.chatfusion.core.selection.ConnectionController;
+import fr.uge.chatfusion.server.visitor.Throttle;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Objects;
+
+/*
+ * Creates the throttles of the connections from the rate limits of the server. A connection exceeding a limit has its
+ * reads paused until its buckets are out of debt, the frame that exceeded the limit being still delivered. The
+ * buckets are looked up when the throttle is created, so accounting for a frame only reads the clock and updates at
+ * most two buckets.
+ *
+ * Every method must be called by the selector thread.
+ */
+final class Throttles {
+    private static final RateLimits.Kind[] KINDS = RateLimits.Kind.values();
+
+    private final RateLimits limits;
+    private final ServerSocketChannelController scheduler;
+    private final HashMap<InetAddress, AddressBuckets> addresses = new HashMap<>();
+    private final Counter pauses;
+    private final Gauge paused;
+
+    Throttles(RateLimits limits, ServerSocketChannelController scheduler, MetricsRegistry metrics) {
+        Objects.requireNonNull(limits);
+        Objects.requireNonNull(scheduler);
+        Objects.requireNonNull(metrics);
+        this.limits = limits;
+        this.scheduler = scheduler;
+        this.pauses = metrics.counter("server.throttle.pauses");
+        this.paused = metrics.gauge("server.throttle.paused");
+    }
+
+    ConnectionThrottle forUser(ConnectionController controller, InetAddress address) {
+        Objects.requireNonNull(controller);
+        Objects.requireNonNull(address);
+        AddressBuckets shared = null;
+        if (limits.has(RateLimits.Scope.ADDRESS)) {
+            shared = addresses.computeIfAbsent(address, __ -> new AddressBuckets(address));
+            shared.connections++;
+        }
+        return new ConnectionThrottle(controller, buckets(RateLimits.Scope.USER), shared);
+    }
+
+    ConnectionThrottle forLink(ConnectionController controller) {
+        Objects.requireNonNull(controller);
+        return new ConnectionThrottle(controller, buckets(RateLimits.Scope.LINK), null);
+    }
+
+    private TokenBucket[] buckets(RateLimits.Scope scope) {
+        var now = System.nanoTime();
+        var buckets = new TokenBucket[KINDS.length];
+        for (var kind : KINDS) {
+            var limit = limits.get(scope, kind);
+            if (limit != null) {
+                buckets[kind.ordinal()] = new TokenBucket(limit.perSecond(), limit.burst(), now);
+            }
+        }
+        return buckets;
+    }
+
+    private final class AddressBuckets {
+        private final InetAddress address;
+        private final TokenBucket[] buckets = buckets(RateLimits.Scope.ADDRESS);
+        private int connections;
+
+        private AddressBuckets(InetAddress address) {
+            this.address = address;
+        }
+    }
+
+    final class ConnectionThrottle implements Throttle {
+        private final ConnectionController controller;
+        private final TokenBucket[] own;
+        private final AddressBuckets shared;
+        private final Runnable resume = this::resume;
+        private boolean isPaused;
+        private boolean closed;
+
+        private ConnectionThrottle(ConnectionController controller, TokenBucket[] own, AddressBuckets shared) {
+            this.controller = controller;
+            this.own = own;
+            this.shared = shared;
+        }
+
+        @Override
+        public void publicMessage() {
+            take(RateLimits.Kind.PUBLIC, 1);
+        }
+
+        @Override
+        public void directMessage() {
+            take(RateLimits.Kind.DIRECT, 1);
+        }
+
+        @Override
+        public void fileBytes(int count) {
+            take(RateLimits.Kind.FILE, count);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (shared != null && --shared.connections == 0) {
+                addresses.remove(shared.address);
+            }
+        }
+
+        private void take(RateLimits.Kind kind, long count) {
+            var ownBucket = own[kind.ordinal()];
+            var sharedBucket = shared == null ? null : shared.buckets[kind.ordinal()];
+            if (ownBucket == null && sharedBucket == null) {
+                return;
+            }
+            var now = System.nanoTime();
+            var wait = ownBucket == null ? 0 : ownBucket.take(count, now);
+            if (sharedBucket != null) {
+                wait = Math.max(wait, sharedBucket.take(count, now));
+            }
+            if (wait > 0 && !isPaused) {
+                isPaused = true;
+                pauses.increment();
+                paused.increment();
+                controller.pauseReads();
+                scheduler.schedule(wait, resume);
+            }
+        }
+
+        private void resume() {
+            isPaused = false;
+            paused.decrement();
+            if (!closed) {
+                controller.resumeReads();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.base.BloomFilter;
+
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/*
+ * The users logged in on the other servers of the group, as the Bloom filters the servers announce. A filter never
+ * misses a user it was built from, so a recipient it does not contain is not logged in, unless the user logged in
+ * since the last announce of its server. A server that has not announced its users yet may have any of them.
+ */
+final class UserDirectory {
+    private final HashMap<String, BloomFilter> filters = new HashMap<>();
+
+    public void update(String serverName, BloomFilter users) {
+        Objects.requireNonNull(serverName);
+        Objects.requireNonNull(users);
+        filters.put(serverName, users);
+    }
+
+    public void remove(String serverName) {
+        Objects.requireNonNull(serverName);
+        filters.remove(serverName);
+    }
+
+    public void clear() {
+        filters.clear();
+    }
+
+    public boolean mightBeLoggedIn(String serverName, String username) {
+        Objects.requireNonNull(serverName);
+        Objects.requireNonNull(username);
+        var users = filters.get(serverName);
+        return users == null || users.mightContain(username);
+    }
+
+    public void forEach(BiConsumer<String, BloomFilter> action) {
+        Objects.requireNonNull(action);
+        filters.forEach(action);
+    }
+}
@@ -8,5 +8,7 @@ public interface ClientToServerInterface {
 
     void sendDirectMessage(Frame.DirectMessage message, IdentifiedRemoteInfo infos);
 
-    void sendFile(Frame.FileSending file, IdentifiedRemoteInfo infos);
+    void openFile(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos);
+
+    void sendFileBlock(Frame.FileBlock fileBlock, IdentifiedRemoteInfo infos);
 }
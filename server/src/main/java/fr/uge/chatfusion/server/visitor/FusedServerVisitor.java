@@ -8,24 +8,27 @@ import java.util.Objects;
 final class FusedServerVisitor implements FrameVisitor {
     private final ServerToServerInterface server;
     private final IdentifiedRemoteInfo infos;
+    private final Throttle throttle;
 
-    FusedServerVisitor(ServerToServerInterface server, IdentifiedRemoteInfo infos) {
+    FusedServerVisitor(ServerToServerInterface server, IdentifiedRemoteInfo infos, Throttle throttle) {
         Objects.requireNonNull(server);
         Objects.requireNonNull(infos);
+        Objects.requireNonNull(throttle);
         this.server = server;
         this.infos = infos;
+        this.throttle = throttle;
     }
 
     @Override
     public void visit(Frame.PublicMessage frame) {
         Objects.requireNonNull(frame);
+        throttle.publicMessage();
         server.forwardPublicMessage(frame, infos);
     }
 
     @Override
     public void visit(Frame.FusionRequest frame) {
         Objects.requireNonNull(frame);
-        System.out.println(frame.remote());
         server.fusionRequest(frame, infos);
     }
 
@@ -38,12 +41,38 @@ final class FusedServerVisitor implements FrameVisitor {
     @Override
     public void visit(Frame.DirectMessage frame) {
         Objects.requireNonNull(frame);
+        throttle.directMessage();
         server.sendDirectMessage(frame, infos);
     }
 
     @Override
-    public void visit(Frame.FileSending frame) {
+    public void visit(Frame.FileOpen frame) {
         Objects.requireNonNull(frame);
-        server.sendFile(frame, infos);
+        server.forwardFileOpen(frame, infos);
+    }
+
+    @Override
+    public void visit(Frame.FileBlock frame) {
+        Objects.requireNonNull(frame);
+        throttle.fileBytes(frame.block().capacity());
+        server.sendFileBlock(frame, infos);
+    }
+
+    @Override
+    public void visit(Frame.DirectoryUpdate frame) {
+        Objects.requireNonNull(frame);
+        server.updateDirectory(frame, infos);
+    }
+
+    @Override
+    public void visit(Frame.UnknownRecipient frame) {
+        Objects.requireNonNull(frame);
+        server.sendUnknownRecipient(frame, infos);
+    }
+
+    @Override
+    public void visit(Frame.FileRefused frame) {
+        Objects.requireNonNull(frame);
+        server.sendFileRefused(frame, infos);
     }
 }
@@ -1,13 +1,14 @@
 package fr.uge.chatfusion.server.visitor;
 
-import java.net.InetSocketAddress;
-import java.nio.channels.SocketChannel;
+import fr.uge.chatfusion.core.selection.ConnectionController;
+
+import java.net.SocketAddress;
 import java.util.Objects;
 
-public record IdentifiedRemoteInfo(String name, SocketChannel connection, InetSocketAddress address) {
+public record IdentifiedRemoteInfo(String name, ConnectionController controller, SocketAddress address) {
     public IdentifiedRemoteInfo {
         Objects.requireNonNull(name);
-        Objects.requireNonNull(connection);
+        Objects.requireNonNull(controller);
         Objects.requireNonNull(address);
     }
 }
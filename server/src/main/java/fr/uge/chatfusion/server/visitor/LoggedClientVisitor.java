@@ -8,32 +8,45 @@ import java.util.Objects;
 final class LoggedClientVisitor implements FrameVisitor {
     private final ClientToServerInterface server;
     private final IdentifiedRemoteInfo infos;
+    private final Throttle throttle;
 
     public LoggedClientVisitor(
         ClientToServerInterface server,
-        IdentifiedRemoteInfo infos
+        IdentifiedRemoteInfo infos,
+        Throttle throttle
     ) {
         Objects.requireNonNull(server);
         Objects.requireNonNull(infos);
+        Objects.requireNonNull(throttle);
         this.server = server;
         this.infos = infos;
+        this.throttle = throttle;
     }
 
     @Override
     public void visit(Frame.PublicMessage frame) {
         Objects.requireNonNull(frame);
+        throttle.publicMessage();
         server.sendPublicMessage(frame, infos);
     }
 
     @Override
     public void visit(Frame.DirectMessage frame) {
         Objects.requireNonNull(frame);
+        throttle.directMessage();
         server.sendDirectMessage(frame, infos);
     }
 
     @Override
-    public void visit(Frame.FileSending frame) {
+    public void visit(Frame.FileOpen frame) {
         Objects.requireNonNull(frame);
-        server.sendFile(frame, infos);
+        server.openFile(frame, infos);
+    }
+
+    @Override
+    public void visit(Frame.FileBlock frame) {
+        Objects.requireNonNull(frame);
+        throttle.fileBytes(frame.block().capacity());
+        server.sendFileBlock(frame, infos);
     }
 }
@@ -11,5 +11,13 @@ public interface ServerToServerInterface {
 
     void changeLeader(Frame.FusionChangeLeader changeLeader, IdentifiedRemoteInfo infos);
 
-    void sendFile(Frame.FileSending fileSending, IdentifiedRemoteInfo infos);
+    void forwardFileOpen(Frame.FileOpen fileOpen, IdentifiedRemoteInfo infos);
+
+    void sendFileBlock(Frame.FileBlock fileBlock, IdentifiedRemoteInfo infos);
+
+    void updateDirectory(Frame.DirectoryUpdate directoryUpdate, IdentifiedRemoteInfo infos);
+
+    void sendUnknownRecipient(Frame.UnknownRecipient unknownRecipient, IdentifiedRemoteInfo infos);
+
+    void sendFileRefused(Frame.FileRefused fileRefused, IdentifiedRemoteInfo infos);
 }
@@ -0,0 +1,29 @@
+package fr.uge.chatfusion.server.visitor;
+
+/**
+ * Accounts for the traffic received from a connection, slowing the connection down when it exceeds its limits.
+ */
+public interface Throttle {
+    /**
+     * A throttle that never limits anything.
+     */
+    Throttle NONE = new Throttle() {
+        @Override
+        public void publicMessage() {
+        }
+
+        @Override
+        public void directMessage() {
+        }
+
+        @Override
+        public void fileBytes(int count) {
+        }
+    };
+
+    void publicMessage();
+
+    void directMessage();
+
+    void fileBytes(int count);
+}
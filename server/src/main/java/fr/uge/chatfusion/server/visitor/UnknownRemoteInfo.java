@@ -1,18 +1,12 @@
 package fr.uge.chatfusion.server.visitor;
 
-import fr.uge.chatfusion.core.selection.SelectionKeyControllerImpl;
+import fr.uge.chatfusion.core.selection.ConnectionController;
 
-import java.net.InetSocketAddress;
-import java.nio.channels.SocketChannel;
+import java.net.SocketAddress;
 import java.util.Objects;
 
-public record UnknownRemoteInfo(
-    SocketChannel connection,
-    InetSocketAddress address,
-    SelectionKeyControllerImpl controller
-) {
+public record UnknownRemoteInfo(SocketAddress address, ConnectionController controller) {
     public UnknownRemoteInfo {
-        Objects.requireNonNull(connection);
         Objects.requireNonNull(address);
         Objects.requireNonNull(controller);
     }
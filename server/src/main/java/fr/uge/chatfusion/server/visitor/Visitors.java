@@ -9,16 +9,26 @@ public final class Visitors {
         throw new AssertionError("No instances.");
     }
 
-    public static FrameVisitor loggedClientVisitor(ClientToServerInterface server, IdentifiedRemoteInfo infos) {
+    public static FrameVisitor loggedClientVisitor(
+        ClientToServerInterface server,
+        IdentifiedRemoteInfo infos,
+        Throttle throttle
+    ) {
         Objects.requireNonNull(server);
         Objects.requireNonNull(infos);
-        return new LoggedClientVisitor(server, infos);
+        Objects.requireNonNull(throttle);
+        return new LoggedClientVisitor(server, infos, throttle);
     }
 
-    public static FrameVisitor fusedServerVisitor(ServerToServerInterface server, IdentifiedRemoteInfo infos) {
+    public static FrameVisitor fusedServerVisitor(
+        ServerToServerInterface server,
+        IdentifiedRemoteInfo infos,
+        Throttle throttle
+    ) {
         Objects.requireNonNull(server);
         Objects.requireNonNull(infos);
-        return new FusedServerVisitor(server, infos);
+        Objects.requireNonNull(throttle);
+        return new FusedServerVisitor(server, infos, throttle);
     }
 
     public static FrameVisitor defaultVisitor(DefaultToServerInterface server, UnknownRemoteInfo infos) {
@@ -0,0 +1,40 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.Trace;
+import fr.uge.chatfusion.core.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PublicMessageTracerTest {
+    private static final Frame.PublicMessage MESSAGE = new Frame.PublicMessage("s1", "alice", "hello");
+
+    @Test
+    public void clientTraceReplacedTest() {
+        var forged = MESSAGE.withTrace(new Trace(0, Integer.MAX_VALUE));
+
+        var before = Trace.currentTimeMicros();
+        var trace = new PublicMessageTracer(true, new MetricsRegistry()).received(forged, false).trace();
+        assertEquals(0, trace.hopCount());
+        assertTrue(trace.sendTimestamp() >= before);
+
+        // a server which does not trace does not let the trace of a client through either
+        assertNull(new PublicMessageTracer(false, new MetricsRegistry()).received(forged, false).trace());
+        assertEquals(MESSAGE, new PublicMessageTracer(false, new MetricsRegistry()).received(MESSAGE, false));
+    }
+
+    @Test
+    public void forwardedTraceTest() {
+        var tracer = new PublicMessageTracer(false, new MetricsRegistry());
+        var trace = new Trace(Trace.currentTimeMicros(), 1);
+        assertEquals(2, tracer.received(MESSAGE.withTrace(trace), true).trace().hopCount());
+        assertEquals(MESSAGE, tracer.received(MESSAGE, true));
+
+        // a trace at the last hop count stays there instead of overflowing
+        var last = new Trace(trace.sendTimestamp(), Integer.MAX_VALUE);
+        assertEquals(last, tracer.received(MESSAGE.withTrace(last), true).trace());
+    }
+}
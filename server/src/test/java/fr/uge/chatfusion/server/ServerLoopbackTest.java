@@ -0,0 +1,232 @@
+package fr.uge.chatfusion.server;
+
+import fr.uge.chatfusion.core.base.BloomFilter;
+import fr.uge.chatfusion.core.frame.Frame;
+import fr.uge.chatfusion.core.frame.FrameVisitor;
+import fr.uge.chatfusion.core.selection.Loopback;
+import fr.uge.chatfusion.core.selection.LoopbackController;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Runs a server whose clients and fused servers are linked by a Loopback, the test thread playing the role of the
+ * selector thread. The server still binds a port, which is never used.
+ */
+public final class ServerLoopbackTest {
+
+    private static final class Recorder implements FrameVisitor {
+        private final List<Frame> received = new ArrayList<>();
+
+        @Override
+        public void visit(Frame.LoginAccepted frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.PublicMessage frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.DirectMessage frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.FileOpen frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.FileBlock frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.UnknownRecipient frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.FusionInitOk frame) {
+            received.add(frame);
+        }
+
+        @Override
+        public void visit(Frame.DirectoryUpdate frame) {
+            received.add(frame);
+        }
+
+        private <F extends Frame> List<F> received(Class<F> type) {
+            return received.stream().filter(type::isInstance).map(type::cast).toList();
+        }
+    }
+
+    private static LoopbackController connect(Loopback loopback, Server server, int port, Recorder recorder) {
+        var link = loopback.link(new InetSocketAddress("127.0.0.1", port), server.address());
+        link.first().setVisitor(recorder);
+        server.accept(link.second());
+        return link.first();
+    }
+
+    private static LoopbackController login(
+        Loopback loopback,
+        Server server,
+        int port,
+        String username,
+        Recorder recorder
+    ) {
+        var client = connect(loopback, server, port, recorder);
+        client.queueFrame(new Frame.AnonymousLogin(username));
+        loopback.run();
+        assertEquals(List.of(new Frame.LoginAccepted("s1")), recorder.received);
+        recorder.received.clear();
+        return client;
+    }
+
+    private static void close(Server server) {
+        server.shutdown();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void publicMessageFanOutTest() throws IOException {
+        var server = new Server("s1", 0);
+        try {
+            var loopback = new Loopback();
+            var recorders = List.of(new Recorder(), new Recorder(), new Recorder());
+            var alice = login(loopback, server, 40_001, "alice", recorders.get(0));
+            login(loopback, server, 40_002, "bob", recorders.get(1));
+            login(loopback, server, 40_003, "carol", recorders.get(2));
+
+            var message = new Frame.PublicMessage("s1", "alice", "hello");
+            alice.queueFrame(message);
+            loopback.run();
+            for (var recorder : recorders) {
+                assertEquals(List.of(message), recorder.received);
+            }
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void fileTransferTest() throws IOException {
+        var server = new Server("s1", 0);
+        try {
+            var loopback = new Loopback();
+            var aliceRecorder = new Recorder();
+            var bobRecorder = new Recorder();
+            var alice = login(loopback, server, 40_001, "alice", aliceRecorder);
+            login(loopback, server, 40_002, "bob", bobRecorder);
+
+            var block = ByteBuffer.allocate(16).put(new byte[] { 1, 2, 3 });
+            alice.queueFrame(new Frame.FileOpen("s1", "alice", "s1", "bob", 7, "file", 1));
+            alice.queueFrame(new Frame.FileBlock(7, 0, block));
+            alice.queueFrame(new Frame.DirectMessage("s1", "alice", "s1", "nobody", "hi"));
+            loopback.run();
+
+            assertEquals(1, bobRecorder.received(Frame.FileOpen.class).size());
+            var received = bobRecorder.received(Frame.FileBlock.class);
+            assertEquals(1, received.size());
+            assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), received.get(0).block().flip());
+            assertEquals(3, block.position());
+            assertEquals(
+                List.of(new Frame.UnknownRecipient("s1", "alice", "s1", "nobody")),
+                aliceRecorder.received
+            );
+        } finally {
+            close(server);
+        }
+    }
+
+    // the test plays a server s2 fusing with s1, which stays the leader of the group
+    @Test
+    public void fusionTest() throws IOException {
+        var server = new Server("s1", 0);
+        try {
+            var loopback = new Loopback();
+            var aliceRecorder = new Recorder();
+            var alice = login(loopback, server, 40_001, "alice", aliceRecorder);
+            var remote = new Recorder();
+            var s2 = connect(loopback, server, 7_778, remote);
+
+            s2.queueFrame(new Frame.FusionInit("s2", new InetSocketAddress("127.0.0.1", 7_778), List.of()));
+            loopback.run();
+            assertEquals(1, remote.received(Frame.FusionInitOk.class).size());
+            assertTrue(server.isLeader());
+            assertEquals(List.of("s2"), List.copyOf(server.topology().members().keySet()));
+
+            var message = new Frame.PublicMessage("s1", "alice", "hello");
+            alice.queueFrame(message);
+            alice.queueFrame(new Frame.DirectMessage("s1", "alice", "s2", "bob", "hi"));
+            loopback.run();
+            assertEquals(List.of(message), remote.received(Frame.PublicMessage.class));
+            assertEquals(1, remote.received(Frame.DirectMessage.class).size());
+
+            // once s2 announced its users, the messages to the others are rejected by s1
+            s2.queueFrame(new Frame.DirectoryUpdate("s2", BloomFilter.of(List.of("bob"))));
+            alice.queueFrame(new Frame.DirectMessage("s1", "alice", "s2", "carol", "hi"));
+            loopback.run();
+            assertEquals(1, remote.received(Frame.DirectMessage.class).size());
+            assertEquals(
+                List.of(new Frame.UnknownRecipient("s1", "alice", "s2", "carol")),
+                aliceRecorder.received(Frame.UnknownRecipient.class)
+            );
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void unixAddressOverTcpTest() throws IOException {
+        var server = new Server("s1", 0);
+        try {
+            var loopback = new Loopback();
+            var remote = new Recorder();
+            var s2 = connect(loopback, server, 7_778, remote);
+            var closed = new boolean[1];
+            s2.setOnClose(() -> closed[0] = true);
+
+            // the path would be looked up on the host of s1, not of s2
+            s2.queueFrame(new Frame.FusionInit("s2", UnixDomainSocketAddress.of("/tmp/s2.sock"), List.of()));
+            loopback.run();
+            assertTrue(closed[0]);
+            assertEquals(List.of(), remote.received);
+            assertFalse(server.topology().members().containsKey("s2"));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void unexpectedMergeTest() throws IOException {
+        var server = new Server("s1", 0);
+        try {
+            var loopback = new Loopback();
+            var remote = new Recorder();
+            var s3 = connect(loopback, server, 7_779, remote);
+            var closed = new boolean[1];
+            s3.setOnClose(() -> closed[0] = true);
+
+            // s1 expects no server to join its group
+            s3.queueFrame(new Frame.FusionMerge("s3"));
+            loopback.run();
+            assertTrue(closed[0]);
+            assertEquals(List.of(), remote.received);
+            assertFalse(server.topology().members().containsKey("s3"));
+        } finally {
+            close(server);
+        }
+    }
+}
@@ -1,3 +1,3 @@
 rootProject.name = "Chatfusion"
 
-include("core", "client", "server")
+include("core", "client", "server", "loadgen")